@@ -0,0 +1,42 @@
+package com.openclassrooms.starterjwt.repository;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.openclassrooms.starterjwt.unit.models.RefreshToken;
+
+@Repository
+public interface RefreshTokenRepository extends JpaRepository<RefreshToken, Long> {
+  Optional<RefreshToken> findByTokenHash(String tokenHash);
+
+  /**
+   * Marks the token as used unless it already was: of two concurrent refreshes with the same token,
+   * exactly one gets 1.
+   */
+  @Modifying
+  @Transactional
+  @Query("update RefreshToken r set r.usedAt = :now where r.id = :id and r.usedAt is null and r.revokedAt is null")
+  int markUsed(@Param("id") Long id, @Param("now") LocalDateTime now);
+
+  @Modifying
+  @Transactional
+  @Query("update RefreshToken r set r.revokedAt = :now where r.familyId = :familyId and r.revokedAt is null")
+  int revokeFamily(@Param("familyId") String familyId, @Param("now") LocalDateTime now);
+
+  @Modifying
+  @Transactional
+  @Query("update RefreshToken r set r.revokedAt = :now where r.userId = :userId and r.revokedAt is null")
+  int revokeUser(@Param("userId") Long userId, @Param("now") LocalDateTime now);
+
+  @Modifying
+  @Transactional
+  @Query("delete from RefreshToken r where r.expiresAt <= :now")
+  int deleteExpired(@Param("now") LocalDateTime now);
+}
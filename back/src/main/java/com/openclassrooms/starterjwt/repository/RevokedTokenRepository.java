@@ -0,0 +1,24 @@
+package com.openclassrooms.starterjwt.repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.openclassrooms.starterjwt.unit.models.RevokedToken;
+
+@Repository
+public interface RevokedTokenRepository extends JpaRepository<RevokedToken, String> {
+  @Query("select r.jti from RevokedToken r where r.expiresAt > :now")
+  List<String> findActiveJtis(@Param("now") LocalDateTime now);
+
+  @Modifying
+  @Transactional
+  @Query("delete from RevokedToken r where r.expiresAt <= :now")
+  int deleteExpired(@Param("now") LocalDateTime now);
+}
@@ -1,9 +1,133 @@
 package com.openclassrooms.starterjwt.repository;
 
 import com.openclassrooms.starterjwt.unit.models.Session;
+import com.openclassrooms.starterjwt.unit.models.SessionSummary;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.QueryHint;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
-public interface SessionRepository  extends JpaRepository<Session, Long> {
+public interface SessionRepository  extends JpaRepository<Session, Long>, SessionRepositoryCustom {
+    /**
+     * Loads the full aggregate, participants included, for the few callers that really need the {@code User} entities.
+     */
+    @Override
+    @EntityGraph(attributePaths = {"teacher", "users"})
+    Optional<Session> findById(Long id);
+
+    @Query("select new com.openclassrooms.starterjwt.unit.models.SessionSummary("
+            + "s.id, s.name, s.date, s.description, s.teacher.id, s.capacity, size(s.users), s.createdAt, s.updatedAt) "
+            + "from Session s order by s.id")
+    List<SessionSummary> findAllSummaries();
+
+    /**
+     * Same rows as {@link #findAllSummaries()}, read through a cursor; the caller must close the stream
+     * inside a transaction.
+     */
+    @QueryHints({
+            @QueryHint(name = org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = org.hibernate.jpa.QueryHints.HINT_READONLY, value = "true"),
+    })
+    @Query("select new com.openclassrooms.starterjwt.unit.models.SessionSummary("
+            + "s.id, s.name, s.date, s.description, s.teacher.id, s.capacity, size(s.users), s.createdAt, s.updatedAt) "
+            + "from Session s order by s.id")
+    Stream<SessionSummary> streamAllSummaries();
+
+    @Query("select new com.openclassrooms.starterjwt.unit.models.SessionSummary("
+            + "s.id, s.name, s.date, s.description, s.teacher.id, s.capacity, size(s.users), s.createdAt, s.updatedAt) "
+            + "from Session s where s.id = :id")
+    Optional<SessionSummary> findSummaryById(@Param("id") Long id);
+
+    @Query("select s.id as id, s.revision as revision, s.updatedAt as updatedAt from Session s where s.id = :id")
+    Optional<SessionVersion> findVersionById(@Param("id") Long id);
+
+    @Query("select count(s) as count, max(s.id) as maxId, sum(s.revision) as revisions, max(s.updatedAt) as lastModified"
+            + " from Session s")
+    SessionsVersion findCollectionVersion();
+
+    /**
+     * Bumps {@code revision} and {@code updatedAt} after any change of the session or its participants,
+     * so conditional GETs see it.
+     */
+    @Modifying
+    @Transactional
+    @Query("update Session s set s.revision = s.revision + 1, s.updatedAt = :now where s.id = :id")
+    int touch(@Param("id") Long id, @Param("now") LocalDateTime now);
+
+    @Query("select s.id as id, s.capacity as capacity from Session s where s.id = :id")
+    Optional<SessionCapacity> findCapacityById(@Param("id") Long id);
+
+    @Query(value = "SELECT COUNT(*) FROM PARTICIPATE WHERE session_id = :sessionId", nativeQuery = true)
+    int countParticipants(@Param("sessionId") Long sessionId);
+
+    @Query(value = "SELECT COUNT(*) FROM PARTICIPATE WHERE session_id = :sessionId AND user_id = :userId", nativeQuery = true)
+    int countParticipation(@Param("sessionId") Long sessionId, @Param("userId") Long userId);
+
+    /**
+     * Raw (session_id, user_id) pairs read from the join table only; USERS is never touched.
+     */
+    @Query(value = "SELECT session_id, user_id FROM PARTICIPATE WHERE session_id IN (:sessionIds)", nativeQuery = true)
+    List<Object[]> findParticipantPairs(@Param("sessionIds") Collection<Long> sessionIds);
+
+    /**
+     * Books a user with a single INSERT; a second booking of the same pair violates the PARTICIPATE primary key.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO PARTICIPATE (session_id, user_id) VALUES (:sessionId, :userId)", nativeQuery = true)
+    int addParticipant(@Param("sessionId") Long sessionId, @Param("userId") Long userId);
+
+    /**
+     * @return 1 when the user was booked, 0 when already booked or deleted (no constraint violation is raised)
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO PARTICIPATE (session_id, user_id) SELECT :sessionId, u.id FROM USERS u WHERE u.id = :userId"
+            + " AND NOT EXISTS (SELECT 1 FROM PARTICIPATE p WHERE p.session_id = :sessionId AND p.user_id = :userId)",
+            nativeQuery = true)
+    int addParticipantIfAbsent(@Param("sessionId") Long sessionId, @Param("userId") Long userId);
+
+    /**
+     * @return the number of deleted rows, 0 when the user was not booked on the session
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "DELETE FROM PARTICIPATE WHERE session_id = :sessionId AND user_id = :userId", nativeQuery = true)
+    int removeParticipant(@Param("sessionId") Long sessionId, @Param("userId") Long userId);
+
+    interface SessionCapacity {
+        Long getId();
+
+        Integer getCapacity();
+    }
+
+    interface SessionVersion {
+        Long getId();
+
+        long getRevision();
+
+        LocalDateTime getUpdatedAt();
+    }
+
+    interface SessionsVersion {
+        long getCount();
+
+        Long getMaxId();
+
+        Long getRevisions();
+
+        LocalDateTime getLastModified();
+    }
 }
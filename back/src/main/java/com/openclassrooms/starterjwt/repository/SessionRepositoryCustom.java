@@ -0,0 +1,15 @@
+package com.openclassrooms.starterjwt.repository;
+
+import com.openclassrooms.starterjwt.unit.models.SessionSummary;
+import com.openclassrooms.starterjwt.unit.payload.request.SessionSearchRequest;
+import com.openclassrooms.starterjwt.unit.services.SessionCursor;
+
+import java.util.List;
+
+public interface SessionRepositoryCustom {
+    /**
+     * Keyset read ordered by (date, id): returns at most {@code limit} session summaries strictly after {@code after}
+     * (or from the start when {@code after} is null) matching the filters of {@code search}.
+     */
+    List<SessionSummary> findPage(SessionSearchRequest search, SessionCursor after, int limit);
+}
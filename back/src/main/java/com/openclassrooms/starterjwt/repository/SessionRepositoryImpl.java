@@ -0,0 +1,72 @@
+package com.openclassrooms.starterjwt.repository;
+
+import com.openclassrooms.starterjwt.unit.models.Session;
+import com.openclassrooms.starterjwt.unit.models.SessionSummary;
+import com.openclassrooms.starterjwt.unit.models.User;
+import com.openclassrooms.starterjwt.unit.payload.request.SessionSearchRequest;
+import com.openclassrooms.starterjwt.unit.services.SessionCursor;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.criteria.*;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+public class SessionRepositoryImpl implements SessionRepositoryCustom {
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<SessionSummary> findPage(SessionSearchRequest search, SessionCursor after, int limit) {
+        CriteriaBuilder cb = this.entityManager.getCriteriaBuilder();
+        CriteriaQuery<SessionSummary> query = cb.createQuery(SessionSummary.class);
+        Root<Session> session = query.from(Session.class);
+        Path<Date> date = session.get("date");
+        Path<Long> id = session.get("id");
+
+        List<Predicate> predicates = new ArrayList<>();
+        if (search.getFrom() != null) {
+            predicates.add(cb.greaterThanOrEqualTo(date, search.getFrom()));
+        }
+        if (search.getTo() != null) {
+            predicates.add(cb.lessThan(date, search.getTo()));
+        }
+        if (search.getTeacherId() != null) {
+            predicates.add(cb.equal(session.get("teacher").get("id"), search.getTeacherId()));
+        }
+        if (search.getParticipantId() != null) {
+            // Driven by PARTICIPATE(user_id, session_id): only the rows of this user are read.
+            Join<Session, User> participant = session.join("users");
+            predicates.add(cb.equal(participant.get("id"), search.getParticipantId()));
+        }
+        if (Boolean.TRUE.equals(search.getAvailable())) {
+            Path<Integer> capacity = session.get("capacity");
+            predicates.add(cb.or(
+                    cb.isNull(capacity),
+                    cb.greaterThan(capacity, cb.size(session.<List<?>>get("users")))));
+        }
+        if (after != null) {
+            predicates.add(cb.or(
+                    cb.greaterThan(date, after.getDate()),
+                    cb.and(cb.equal(date, after.getDate()), cb.greaterThan(id, after.getId()))));
+        }
+
+        query.select(cb.construct(SessionSummary.class,
+                        id,
+                        session.get("name"),
+                        date,
+                        session.get("description"),
+                        session.get("teacher").get("id"),
+                        session.get("capacity"),
+                        cb.size(session.<List<?>>get("users")),
+                        session.get("createdAt"),
+                        session.get("updatedAt")))
+                .where(predicates.toArray(new Predicate[0]))
+                .orderBy(cb.asc(date), cb.asc(id));
+
+        return this.entityManager.createQuery(query)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+}
@@ -2,8 +2,26 @@ package com.openclassrooms.starterjwt.repository;
 
 import com.openclassrooms.starterjwt.unit.models.Teacher;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
+import java.util.List;
+import java.util.stream.Stream;
+
 @Repository
 public interface TeacherRepository  extends JpaRepository<Teacher, Long> {
+    /**
+     * Every teacher read through a cursor; the caller must close the stream inside a transaction.
+     */
+    @QueryHints({
+            @QueryHint(name = org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = org.hibernate.jpa.QueryHints.HINT_READONLY, value = "true"),
+    })
+    @Query("select t from Teacher t order by t.id")
+    Stream<Teacher> streamAll();
+
+    @Query("select t.id from Teacher t")
+    List<Long> findAllIds();
 }
@@ -1,9 +1,14 @@
 package com.openclassrooms.starterjwt.repository;
 
+import java.util.List;
 import java.util.Optional;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import com.openclassrooms.starterjwt.unit.models.User;
 
@@ -12,4 +17,24 @@ public interface UserRepository extends JpaRepository<User, Long> {
   Optional<User> findByEmail(String email);
 
   Boolean existsByEmail(String email); 
+
+  /**
+   * Users whose tokens were invalidated at least once; everybody else is still at version 0.
+   */
+  @Query("select u.id as id, u.tokenVersion as tokenVersion from User u where u.tokenVersion > 0")
+  List<TokenVersion> findBumpedTokenVersions();
+
+  @Query("select u.tokenVersion from User u where u.id = :id")
+  Optional<Integer> findTokenVersionById(@Param("id") Long id);
+
+  @Modifying
+  @Transactional
+  @Query("update User u set u.tokenVersion = u.tokenVersion + 1 where u.id = :id")
+  int incrementTokenVersion(@Param("id") Long id);
+
+  interface TokenVersion {
+    Long getId();
+
+    int getTokenVersion();
+  }
 }
@@ -0,0 +1,38 @@
+package com.openclassrooms.starterjwt.unit.config;
+
+import java.time.Duration;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+/**
+ * In-process caches for reference data that almost never changes.
+ * The cache names are declared up front so actuator binds their {@code cache.*} metrics at startup.
+ */
+@Configuration
+@EnableCaching
+public class CacheConfig {
+  public static final String TEACHERS = "teachers";
+
+  public static final String TEACHER_LIST = "teacherList";
+
+  @Bean
+  public CacheManager cacheManager(@Value("${oc.app.teacherCache.ttlSeconds:3600}") long ttlSeconds,
+      @Value("${oc.app.teacherCache.maxSize:1000}") long maxSize) {
+    CaffeineCacheManager cacheManager = new CaffeineCacheManager();
+    cacheManager.setCaffeine(Caffeine.newBuilder()
+        .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+        .maximumSize(maxSize)
+        .recordStats());
+    cacheManager.setAllowNullValues(false);
+    cacheManager.setCacheNames(List.of(TEACHERS, TEACHER_LIST));
+    return cacheManager;
+  }
+}
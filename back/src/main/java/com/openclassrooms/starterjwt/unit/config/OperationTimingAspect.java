@@ -0,0 +1,85 @@
+package com.openclassrooms.starterjwt.unit.config;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.annotation.Pointcut;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Times every call of a service, mapper or authentication bean in {@code app.operation}, tagged with its
+ * {@code layer}, {@code class}, {@code method} and {@code exception}.
+ */
+@Aspect
+@Component
+public class OperationTimingAspect {
+  public static final String METRIC_NAME = "app.operation";
+
+  private final MeterRegistry meterRegistry;
+
+  // "class#method" -> timer of the calls that returned normally, the most frequent lookup.
+  private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+
+  public OperationTimingAspect(MeterRegistry meterRegistry) {
+    this.meterRegistry = meterRegistry;
+  }
+
+  @Pointcut("execution(public * com.openclassrooms.starterjwt.unit.services..*(..))")
+  void service() {
+  }
+
+  @Pointcut("execution(public * com.openclassrooms.starterjwt.unit.mapper..*(..))")
+  void mapper() {
+  }
+
+  @Pointcut("execution(public * com.openclassrooms.starterjwt.unit.security.jwt.JwtUtils.*(..))"
+      + " || execution(public * com.openclassrooms.starterjwt.unit.security.services.UserDetailsServiceImpl.*(..))")
+  void auth() {
+  }
+
+  @Around("service()")
+  public Object timeService(ProceedingJoinPoint joinPoint) throws Throwable {
+    return time(joinPoint, "service");
+  }
+
+  @Around("mapper()")
+  public Object timeMapper(ProceedingJoinPoint joinPoint) throws Throwable {
+    return time(joinPoint, "mapper");
+  }
+
+  @Around("auth()")
+  public Object timeAuth(ProceedingJoinPoint joinPoint) throws Throwable {
+    return time(joinPoint, "auth");
+  }
+
+  private Object time(ProceedingJoinPoint joinPoint, String layer) throws Throwable {
+    Timer.Sample sample = Timer.start(this.meterRegistry);
+    String className = joinPoint.getTarget().getClass().getSimpleName();
+    String methodName = joinPoint.getSignature().getName();
+    Object result;
+    try {
+      result = joinPoint.proceed();
+    } catch (Throwable e) {
+      sample.stop(timer(layer, className, methodName, e.getClass().getSimpleName()));
+      throw e;
+    }
+    sample.stop(this.timers.computeIfAbsent(className + '#' + methodName,
+        key -> timer(layer, className, methodName, "none")));
+    return result;
+  }
+
+  private Timer timer(String layer, String className, String methodName, String exception) {
+    return Timer.builder(METRIC_NAME)
+        .tag("layer", layer)
+        .tag("class", className)
+        .tag("method", methodName)
+        .tag("exception", exception)
+        .register(this.meterRegistry);
+  }
+}
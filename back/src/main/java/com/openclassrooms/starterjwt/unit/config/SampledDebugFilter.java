@@ -0,0 +1,39 @@
+package com.openclassrooms.starterjwt.unit.config;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Marker;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+
+/**
+ * Keeps one DEBUG or TRACE event in {@code rate} per logger; INFO and above always pass.
+ */
+public class SampledDebugFilter extends TurboFilter {
+  private final Map<String, AtomicLong> counters = new ConcurrentHashMap<>();
+
+  private int rate = 1;
+
+  public void setRate(int rate) {
+    if (rate < 1) {
+      throw new IllegalArgumentException("rate must be at least 1, got " + rate);
+    }
+    this.rate = rate;
+  }
+
+  @Override
+  public FilterReply decide(Marker marker, Logger logger, Level level, String format, Object[] params, Throwable t) {
+    // isDebugEnabled() calls come with no format: let them answer, the event itself is sampled
+    if (!isStarted() || format == null || this.rate == 1 || level.isGreaterOrEqual(Level.INFO)
+        || !level.isGreaterOrEqual(logger.getEffectiveLevel())) {
+      return FilterReply.NEUTRAL;
+    }
+    long seen = this.counters.computeIfAbsent(logger.getName(), name -> new AtomicLong()).getAndIncrement();
+    return seen % this.rate == 0 ? FilterReply.NEUTRAL : FilterReply.DENY;
+  }
+}
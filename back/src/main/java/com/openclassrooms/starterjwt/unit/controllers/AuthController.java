@@ -2,26 +2,39 @@ package com.openclassrooms.starterjwt.unit.controllers;
 
 import javax.validation.Valid;
 
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.openclassrooms.starterjwt.exception.ServiceUnavailableException;
 import com.openclassrooms.starterjwt.unit.models.User;
 import com.openclassrooms.starterjwt.unit.payload.request.LoginRequest;
+import com.openclassrooms.starterjwt.unit.payload.request.RefreshTokenRequest;
 import com.openclassrooms.starterjwt.unit.payload.request.SignupRequest;
 import com.openclassrooms.starterjwt.unit.payload.response.JwtResponse;
 import com.openclassrooms.starterjwt.unit.payload.response.MessageResponse;
 import com.openclassrooms.starterjwt.repository.UserRepository;
 import com.openclassrooms.starterjwt.unit.security.jwt.JwtUtils;
+import com.openclassrooms.starterjwt.unit.security.services.RefreshTokenService;
+import com.openclassrooms.starterjwt.unit.security.services.TokenRevocationService;
+import com.openclassrooms.starterjwt.unit.security.services.TokenVersionRegistry;
 import com.openclassrooms.starterjwt.unit.security.services.UserDetailsImpl;
+import com.openclassrooms.starterjwt.unit.security.services.UserDetailsServiceImpl;
+
+import io.jsonwebtoken.Claims;
 
 @CrossOrigin(origins = "*", maxAge = 3600)
 @RestController
@@ -31,15 +44,27 @@ public class AuthController {
     private final JwtUtils jwtUtils;
     private final PasswordEncoder passwordEncoder;
     private final UserRepository userRepository;
+    private final TokenRevocationService tokenRevocations;
+    private final RefreshTokenService refreshTokens;
+    private final UserDetailsServiceImpl userDetailsService;
+    private final TokenVersionRegistry tokenVersions;
 
     AuthController(AuthenticationManager authenticationManager,
             PasswordEncoder passwordEncoder,
             JwtUtils jwtUtils,
-            UserRepository userRepository) {
+            UserRepository userRepository,
+            TokenRevocationService tokenRevocations,
+            RefreshTokenService refreshTokens,
+            UserDetailsServiceImpl userDetailsService,
+            TokenVersionRegistry tokenVersions) {
         this.authenticationManager = authenticationManager;
         this.jwtUtils = jwtUtils;
         this.passwordEncoder = passwordEncoder;
         this.userRepository = userRepository;
+        this.tokenRevocations = tokenRevocations;
+        this.refreshTokens = refreshTokens;
+        this.userDetailsService = userDetailsService;
+        this.tokenVersions = tokenVersions;
     }
 
     @PostMapping("/login")
@@ -50,20 +75,45 @@ public class AuthController {
 
         SecurityContextHolder.getContext().setAuthentication(authentication);
         String jwt = jwtUtils.generateJwtToken(authentication);
+        // The principal loaded by UserDetailsServiceImpl already carries everything the response needs.
         UserDetailsImpl userDetails = (UserDetailsImpl) authentication.getPrincipal();
 
-        boolean isAdmin = false;
-        User user = this.userRepository.findByEmail(userDetails.getUsername()).orElse(null);
-        if (user != null) {
-            isAdmin = user.isAdmin();
+        return ResponseEntity.ok(jwtResponse(jwt, refreshTokens.issue(userDetails.getId()), userDetails));
+    }
+
+    /**
+     * Trades a refresh token for a new access token and the next refresh token of the same family.
+     * The presented refresh token cannot be used again.
+     */
+    @PostMapping("/refresh")
+    public ResponseEntity<?> refresh(@Valid @RequestBody RefreshTokenRequest refreshTokenRequest) {
+        RefreshTokenService.Rotation rotation = refreshTokens.rotate(refreshTokenRequest.getRefreshToken());
+        if (rotation == null) {
+            return ResponseEntity
+                    .status(HttpStatus.UNAUTHORIZED)
+                    .body(new MessageResponse("Error: Invalid refresh token!"));
+        }
+
+        UserDetailsImpl userDetails;
+        try {
+            userDetails = userDetailsService.loadUserById(rotation.getUserId());
+        } catch (UsernameNotFoundException e) {
+            return ResponseEntity
+                    .status(HttpStatus.UNAUTHORIZED)
+                    .body(new MessageResponse("Error: Invalid refresh token!"));
         }
 
-        return ResponseEntity.ok(new JwtResponse(jwt,
+        return ResponseEntity.ok(jwtResponse(jwtUtils.generateJwtToken(userDetails), rotation.getRefreshToken(), userDetails));
+    }
+
+    private static JwtResponse jwtResponse(String jwt, String refreshToken, UserDetailsImpl userDetails) {
+        return new JwtResponse(jwt,
+                refreshToken,
                 userDetails.getId(),
                 userDetails.getUsername(),
                 userDetails.getFirstName(),
                 userDetails.getLastName(),
-                isAdmin));
+                Boolean.TRUE.equals(userDetails.getAdmin()));
     }
 
     @PostMapping("/register")
@@ -85,4 +135,61 @@ public class AuthController {
 
         return ResponseEntity.ok(new MessageResponse("User registered successfully!"));
     }
+
+    /**
+     * Revokes the bearer token of the request until it expires, and the refresh token family when one is given.
+     */
+    @PostMapping("/logout")
+    public ResponseEntity<?> logout(@RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String authorization,
+            @RequestBody(required = false) RefreshTokenRequest refreshTokenRequest) {
+        Claims claims = authorization != null && authorization.startsWith("Bearer ")
+                ? jwtUtils.parseClaims(authorization.substring(7))
+                : null;
+        // Tokens issued before the jti claim cannot be revoked one by one.
+        if (claims == null || claims.getId() == null) {
+            return ResponseEntity
+                    .badRequest()
+                    .body(new MessageResponse("Error: No revocable token!"));
+        }
+
+        tokenRevocations.revoke(claims.getId(), claims.get(JwtUtils.CLAIM_ID, Long.class), claims.getExpiration());
+        if (refreshTokenRequest != null && refreshTokenRequest.getRefreshToken() != null) {
+            refreshTokens.revoke(refreshTokenRequest.getRefreshToken());
+        }
+        SecurityContextHolder.clearContext();
+
+        return ResponseEntity.ok(new MessageResponse("Logged out successfully!"));
+    }
+
+    /**
+     * Logs the authenticated user out of every device: the access tokens issued so far stop being accepted
+     * and every refresh token family is revoked.
+     */
+    @PostMapping("/logout-all")
+    public ResponseEntity<?> logoutEverywhere() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !(authentication.getPrincipal() instanceof UserDetailsImpl)) {
+            return ResponseEntity
+                    .status(HttpStatus.UNAUTHORIZED)
+                    .body(new MessageResponse("Error: Unauthorized"));
+        }
+
+        Long userId = ((UserDetailsImpl) authentication.getPrincipal()).getId();
+        tokenVersions.bump(userId);
+        refreshTokens.revokeAll(userId);
+        SecurityContextHolder.clearContext();
+
+        return ResponseEntity.ok(new MessageResponse("Logged out everywhere successfully!"));
+    }
+
+    /**
+     * The password hashing pool is saturated: tell the client when to come back instead of queueing it.
+     */
+    @ExceptionHandler(ServiceUnavailableException.class)
+    public ResponseEntity<MessageResponse> serviceUnavailable(ServiceUnavailableException e) {
+        return ResponseEntity
+                .status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body(new MessageResponse("Error: " + e.getMessage()));
+    }
 }
@@ -0,0 +1,58 @@
+package com.openclassrooms.starterjwt.unit.controllers;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvParser;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+import com.openclassrooms.starterjwt.unit.services.ImportRow;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reads CSV with a header row, converting each record with the application's {@link ObjectMapper}.
+ */
+final class CsvInput<T> extends RowInput<T> {
+    private static final CsvMapper CSV_MAPPER = CsvMapper.builder()
+            .enable(CsvParser.Feature.IGNORE_TRAILING_UNMAPPABLE)
+            .build();
+
+    private final ObjectMapper objectMapper;
+
+    private final Class<T> type;
+
+    private final Set<String> ignoredColumns;
+
+    private final MappingIterator<Map<String, String>> records;
+
+    CsvInput(ObjectMapper objectMapper, Class<T> type, Set<String> ignoredColumns, Reader body) throws IOException {
+        this.objectMapper = objectMapper;
+        this.type = type;
+        this.ignoredColumns = ignoredColumns;
+        this.records = CSV_MAPPER.readerForMapOf(String.class)
+                .with(CsvSchema.emptySchema().withHeader())
+                .readValues(body);
+    }
+
+    @Override
+    protected ImportRow<T> read(long row) throws IOException {
+        if (!this.records.hasNextValue()) {
+            return null;
+        }
+        Map<String, String> record = this.records.nextValue();
+        record.keySet().removeAll(this.ignoredColumns);
+        record.values().removeIf(String::isEmpty);
+
+        try {
+            return ImportRow.of(row, this.objectMapper.convertValue(record, this.type));
+        } catch (IllegalArgumentException e) {
+            return ImportRow.failed(row, e.getCause() instanceof JsonProcessingException
+                    ? ((JsonProcessingException) e.getCause()).getOriginalMessage()
+                    : e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.openclassrooms.starterjwt.unit.controllers;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.openclassrooms.starterjwt.unit.services.ImportRow;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Reads newline-delimited JSON line by line; blank lines are skipped.
+ */
+final class NdjsonInput<T> extends RowInput<T> {
+    private final ObjectReader reader;
+
+    private final BufferedReader lines;
+
+    NdjsonInput(ObjectReader reader, Reader body) {
+        this.reader = reader;
+        this.lines = new BufferedReader(body);
+    }
+
+    @Override
+    protected ImportRow<T> read(long row) throws IOException {
+        String line;
+        do {
+            line = this.lines.readLine();
+            if (line == null) {
+                return null;
+            }
+        } while (line.isBlank());
+
+        try {
+            return ImportRow.of(row, this.reader.readValue(line));
+        } catch (JsonProcessingException e) {
+            return ImportRow.failed(row, e.getOriginalMessage());
+        }
+    }
+}
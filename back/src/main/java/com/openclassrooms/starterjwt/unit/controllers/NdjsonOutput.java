@@ -0,0 +1,40 @@
+package com.openclassrooms.starterjwt.unit.controllers;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * Writes DTOs as newline-delimited JSON, flushing after each chunk.
+ */
+final class NdjsonOutput implements Closeable {
+    private final ObjectWriter writer;
+
+    private final JsonGenerator generator;
+
+    NdjsonOutput(ObjectMapper objectMapper, OutputStream out) throws IOException {
+        this.writer = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        this.generator = objectMapper.getFactory().createGenerator(out)
+                .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        this.generator.setRootValueSeparator(null);
+    }
+
+    void write(List<?> values) throws IOException {
+        for (Object value : values) {
+            this.writer.writeValue(this.generator, value);
+            this.generator.writeRaw('\n');
+        }
+        this.generator.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.generator.close();
+    }
+}
@@ -0,0 +1,51 @@
+package com.openclassrooms.starterjwt.unit.controllers;
+
+import com.openclassrooms.starterjwt.unit.services.ImportRow;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads the records of a request body one at a time; a record that cannot be parsed becomes a failed {@link ImportRow}.
+ */
+abstract class RowInput<T> implements Iterator<ImportRow<T>> {
+    private ImportRow<T> pending;
+
+    private boolean done;
+
+    private long row;
+
+    /**
+     * @return the next record, or {@code null} at the end of the body
+     */
+    protected abstract ImportRow<T> read(long row) throws IOException;
+
+    @Override
+    public boolean hasNext() {
+        if (this.pending == null && !this.done) {
+            try {
+                this.pending = read(this.row + 1);
+            } catch (IOException e) {
+                this.pending = ImportRow.failed(this.row + 1, "unreadable, the rest of the body was skipped: " + e.getMessage());
+                this.done = true;
+            }
+            if (this.pending == null) {
+                this.done = true;
+            } else {
+                this.row++;
+            }
+        }
+        return this.pending != null;
+    }
+
+    @Override
+    public ImportRow<T> next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        ImportRow<T> next = this.pending;
+        this.pending = null;
+        return next;
+    }
+}
@@ -2,63 +2,203 @@ package com.openclassrooms.starterjwt.unit.controllers;
 
 
 import com.openclassrooms.starterjwt.dto.SessionDto;
+import com.openclassrooms.starterjwt.dto.SessionPageDto;
+import com.openclassrooms.starterjwt.exception.BadRequestException;
 import com.openclassrooms.starterjwt.unit.mapper.SessionMapper;
 import com.openclassrooms.starterjwt.unit.models.Session;
+import com.openclassrooms.starterjwt.unit.models.SessionSummary;
+import com.openclassrooms.starterjwt.unit.payload.request.SessionSearchRequest;
+import com.openclassrooms.starterjwt.unit.security.services.UserDetailsImpl;
+import com.openclassrooms.starterjwt.unit.services.Participation;
+import com.openclassrooms.starterjwt.unit.services.ResourceVersion;
+import com.openclassrooms.starterjwt.unit.services.SessionImportReport;
+import com.openclassrooms.starterjwt.unit.services.SessionImportService;
+import com.openclassrooms.starterjwt.unit.services.SessionPage;
 import com.openclassrooms.starterjwt.unit.services.SessionService;
-import lombok.extern.log4j.Log4j2;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.validation.Valid;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
+
+import static net.logstash.logback.argument.StructuredArguments.kv;
 
 @CrossOrigin(origins = "*", maxAge = 3600)
 @RestController
 @RequestMapping("/api/session")
-@Log4j2
+@Slf4j
 public class SessionController {
+    static final String TEXT_CSV_VALUE = "text/csv";
+
+    private static final MediaType TEXT_CSV = MediaType.parseMediaType(TEXT_CSV_VALUE);
+
+    // Columns of the CSV export; the import reads the same header and ignores the generated ones.
+    private static final CsvSchema SESSION_CSV = CsvSchema.builder()
+            .addColumn("id")
+            .addColumn("name")
+            .addColumn("date")
+            .addColumn("teacher_id")
+            .addColumn("description")
+            .addColumn("capacity")
+            .addArrayColumn("users", ";")
+            .addColumn("createdAt")
+            .addColumn("updatedAt")
+            .build();
+
+    private static final Set<String> GENERATED_CSV_COLUMNS = Set.of("id", "users", "createdAt", "updatedAt");
+
     private final SessionMapper sessionMapper;
     private final SessionService sessionService;
+    private final SessionImportService sessionImportService;
+    private final ObjectMapper objectMapper;
 
 
     public SessionController(SessionService sessionService,
-                             SessionMapper sessionMapper) {
+                             SessionMapper sessionMapper,
+                             SessionImportService sessionImportService,
+                             ObjectMapper objectMapper) {
         this.sessionMapper = sessionMapper;
         this.sessionService = sessionService;
+        this.sessionImportService = sessionImportService;
+        this.objectMapper = objectMapper;
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<?> findById(@PathVariable("id") String id) {
+    public ResponseEntity<?> findById(@PathVariable("id") String id, WebRequest request) {
         try {
-            Session session = this.sessionService.getById(Long.valueOf(id));
+            ResourceVersion version = this.sessionService.getVersion(Long.valueOf(id));
+            if (version == null) {
+                return ResponseEntity.notFound().build();
+            }
+            if (request.checkNotModified(version.getEtag(), version.getLastModifiedMillis())) {
+                return null;
+            }
+
+            SessionSummary session = this.sessionService.getSummaryById(Long.valueOf(id));
 
             if (session == null) {
                 return ResponseEntity.notFound().build();
             }
 
-            return ResponseEntity.ok().body(this.sessionMapper.toDto(session));
+            List<SessionSummary> sessions = Collections.singletonList(session);
+            return ResponseEntity.ok().body(this.sessionMapper.toDto(sessions, this.sessionService.findParticipantIds(sessions)).get(0));
         } catch (NumberFormatException e) {
             return ResponseEntity.badRequest().build();
         }
     }
 
     @GetMapping()
-    public ResponseEntity<?> findAll() {
-        List<Session> sessions = this.sessionService.findAll();
+    public ResponseEntity<?> findAll(WebRequest request) {
+        ResourceVersion version = this.sessionService.getCollectionVersion();
+        if (request.checkNotModified(version.getEtag(), version.getLastModifiedMillis())) {
+            return null;
+        }
+
+        List<SessionSummary> sessions = this.sessionService.findAllSummaries();
+
+        return ResponseEntity.ok().body(this.sessionMapper.toDto(sessions, this.sessionService.findParticipantIds(sessions)));
+    }
+
+    /**
+     * All sessions as NDJSON, written while they are read from the database.
+     */
+    @GetMapping(value = "/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAll() {
+        StreamingResponseBody body = out -> {
+            try (NdjsonOutput ndjson = new NdjsonOutput(this.objectMapper, out)) {
+                this.sessionService.streamAllSummaries(sessions ->
+                        ndjson.write(this.sessionMapper.toDto(sessions, this.sessionService.findParticipantIds(sessions))));
+            }
+        };
+
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
 
-        return ResponseEntity.ok().body(this.sessionMapper.toDto(sessions));
+    /**
+     * Imports sessions from NDJSON, or from CSV with the header of {@link #exportCsv}.
+     */
+    @PreAuthorize("hasRole('ADMIN')")
+    @PostMapping(value = "/bulk", consumes = {MediaType.APPLICATION_NDJSON_VALUE, TEXT_CSV_VALUE})
+    public ResponseEntity<SessionImportReport> importAll(@RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType,
+                                                         InputStream body) throws IOException {
+        Reader reader = new InputStreamReader(body,
+                contentType.getCharset() != null ? contentType.getCharset() : StandardCharsets.UTF_8);
+        RowInput<SessionDto> rows = TEXT_CSV.isCompatibleWith(contentType)
+                ? new CsvInput<>(this.objectMapper, SessionDto.class, GENERATED_CSV_COLUMNS, reader)
+                : new NdjsonInput<>(this.objectMapper.readerFor(SessionDto.class), reader);
+
+        SessionImportReport report = this.sessionImportService.importSessions(rows);
+
+        log.info("Sessions imported {} {}", kv("imported", report.getImported()), kv("rejected", report.getRejected()));
+        return ResponseEntity.ok().body(report);
+    }
+
+    @PreAuthorize("hasRole('ADMIN')")
+    @GetMapping(value = "/bulk", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportNdjson() {
+        return streamAll();
+    }
+
+    /**
+     * All sessions as CSV; participants are {@code ;}-separated user ids.
+     */
+    @PreAuthorize("hasRole('ADMIN')")
+    @GetMapping(value = "/bulk", produces = TEXT_CSV_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportCsv() {
+        StreamingResponseBody body = out -> {
+            try (CsvOutput csv = new CsvOutput(SessionDto.class, SESSION_CSV, out)) {
+                this.sessionService.streamAllSummaries(sessions ->
+                        csv.write(this.sessionMapper.toDto(sessions, this.sessionService.findParticipantIds(sessions))));
+            }
+        };
+
+        return ResponseEntity.ok().contentType(TEXT_CSV).body(body);
+    }
+
+    /**
+     * {@code GET /api/session?participant=me}: the page of {@link #findPage} scoped to the sessions of the current user.
+     */
+    @GetMapping(params = "participant")
+    public ResponseEntity<?> findByParticipant(SessionSearchRequest search) {
+        return findPage(search);
     }
 
+    @GetMapping("/page")
+    public ResponseEntity<?> findPage(SessionSearchRequest search) {
+        search.setParticipantId(resolveParticipant(search.getParticipant()));
+        SessionPage page = this.sessionService.findPage(search);
+        List<SessionDto> sessions = this.sessionMapper.toDto(page.getSessions(), this.sessionService.findParticipantIds(page.getSessions()));
+
+        return ResponseEntity.ok().body(new SessionPageDto(sessions, page.getNextCursor()));
+    }
+
+    @PreAuthorize("hasRole('ADMIN')")
     @PostMapping()
     public ResponseEntity<?> create(@Valid @RequestBody SessionDto sessionDto) {
-        log.info(sessionDto);
-
         Session session = this.sessionService.create(this.sessionMapper.toEntity(sessionDto));
 
-        log.info(session);
+        log.info("Session created {} {} {}", kv("sessionId", session.getId()), kv("teacherId", sessionDto.getTeacher_id()),
+                kv("participants", sessionDto.getUsers() != null ? sessionDto.getUsers().size() : 0));
         return ResponseEntity.ok().body(this.sessionMapper.toDto(session));
     }
 
+    @PreAuthorize("hasRole('ADMIN')")
     @PutMapping("{id}")
     public ResponseEntity<?> update(@PathVariable("id") String id, @Valid @RequestBody SessionDto sessionDto) {
         try {
@@ -70,6 +210,7 @@ public class SessionController {
         }
     }
 
+    @PreAuthorize("hasRole('ADMIN')")
     @DeleteMapping("{id}")
     public ResponseEntity<?> save(@PathVariable("id") String id) {
         try {
@@ -89,8 +230,11 @@ public class SessionController {
     @PostMapping("{id}/participate/{userId}")
     public ResponseEntity<?> participate(@PathVariable("id") String id, @PathVariable("userId") String userId) {
         try {
-            this.sessionService.participate(Long.parseLong(id), Long.parseLong(userId));
+            Participation participation = this.sessionService.participate(Long.parseLong(id), Long.parseLong(userId));
 
+            if (participation == Participation.WAITLISTED) {
+                return ResponseEntity.accepted().build();
+            }
             return ResponseEntity.ok().build();
         } catch (NumberFormatException e) {
             return ResponseEntity.badRequest().build();
@@ -107,4 +251,15 @@ public class SessionController {
             return ResponseEntity.badRequest().build();
         }
     }
+
+    private Long resolveParticipant(String participant) {
+        if (participant == null) {
+            return null;
+        }
+        if (!"me".equals(participant)) {
+            throw new BadRequestException();
+        }
+        UserDetailsImpl userDetails = (UserDetailsImpl) SecurityContextHolder.getContext().getAuthentication().getPrincipal();
+        return userDetails.getId();
+    }
 }
@@ -1,10 +1,17 @@
 package com.openclassrooms.starterjwt.unit.controllers;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.openclassrooms.starterjwt.dto.TeacherDto;
 import com.openclassrooms.starterjwt.unit.mapper.TeacherMapper;
-import com.openclassrooms.starterjwt.unit.models.Teacher;
+import com.openclassrooms.starterjwt.unit.services.ResourceVersion;
 import com.openclassrooms.starterjwt.unit.services.TeacherService;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
 import java.util.List;
 
 @CrossOrigin(origins = "*", maxAge = 3600)
@@ -13,33 +20,68 @@ import java.util.List;
 public class TeacherController {
     private final TeacherMapper teacherMapper;
     private final TeacherService teacherService;
+    private final ObjectMapper objectMapper;
 
 
     public TeacherController(TeacherService teacherService,
-                             TeacherMapper teacherMapper) {
+                             TeacherMapper teacherMapper,
+                             ObjectMapper objectMapper) {
         this.teacherMapper = teacherMapper;
         this.teacherService = teacherService;
+        this.objectMapper = objectMapper;
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<?> findById(@PathVariable("id") String id) {
+    public ResponseEntity<?> findById(@PathVariable("id") String id, WebRequest request) {
         try {
-            Teacher teacher = this.teacherService.findById(Long.valueOf(id));
+            TeacherDto teacher = this.teacherService.findById(Long.valueOf(id));
 
             if (teacher == null) {
                 return ResponseEntity.notFound().build();
             }
 
-            return ResponseEntity.ok().body(this.teacherMapper.toDto(teacher));
+            ResourceVersion version = ResourceVersion.ofEntity("teacher", teacher.getId(), teacher.getUpdatedAt());
+            if (request.checkNotModified(version.getEtag(), version.getLastModifiedMillis())) {
+                return null;
+            }
+
+            return ResponseEntity.ok().body(teacher);
         } catch (NumberFormatException e) {
             return ResponseEntity.badRequest().build();
         }
     }
 
     @GetMapping()
-    public ResponseEntity<?> findAll() {
-        List<Teacher> teachers = this.teacherService.findAll();
+    public ResponseEntity<?> findAll(WebRequest request) {
+        List<TeacherDto> teachers = this.teacherService.findAll();
+
+        ResourceVersion version = ResourceVersion.ofCollection("teachers", teachers, TeacherDto::getId, TeacherDto::getUpdatedAt);
+        if (request.checkNotModified(version.getEtag(), version.getLastModifiedMillis())) {
+            return null;
+        }
+
+        return ResponseEntity.ok().body(teachers);
+    }
+
+    @PreAuthorize("hasRole('ADMIN')")
+    @DeleteMapping("/cache")
+    public ResponseEntity<?> evictCache() {
+        this.teacherService.evictCache();
+
+        return ResponseEntity.ok().build();
+    }
+
+    /**
+     * All teachers as NDJSON, written while they are read from the database.
+     */
+    @GetMapping(value = "/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAll() {
+        StreamingResponseBody body = out -> {
+            try (NdjsonOutput ndjson = new NdjsonOutput(this.objectMapper, out)) {
+                this.teacherService.streamAll(teachers -> ndjson.write(this.teacherMapper.toDto(teachers)));
+            }
+        };
 
-        return ResponseEntity.ok().body(this.teacherMapper.toDto(teachers));
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
     }
 }
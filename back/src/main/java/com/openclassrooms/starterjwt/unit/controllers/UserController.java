@@ -1,7 +1,14 @@
 package com.openclassrooms.starterjwt.unit.controllers;
 
+import com.openclassrooms.starterjwt.dto.SessionDto;
+import com.openclassrooms.starterjwt.dto.SessionPageDto;
+import com.openclassrooms.starterjwt.unit.mapper.SessionMapper;
 import com.openclassrooms.starterjwt.unit.mapper.UserMapper;
 import com.openclassrooms.starterjwt.unit.models.User;
+import com.openclassrooms.starterjwt.unit.payload.request.SessionSearchRequest;
+import com.openclassrooms.starterjwt.unit.security.services.UserDetailsImpl;
+import com.openclassrooms.starterjwt.unit.services.SessionPage;
+import com.openclassrooms.starterjwt.unit.services.SessionService;
 import com.openclassrooms.starterjwt.unit.services.UserService;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -9,6 +16,7 @@ import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
 import java.util.Objects;
 
 @CrossOrigin(origins = "*", maxAge = 3600)
@@ -17,12 +25,18 @@ import java.util.Objects;
 public class UserController {
     private final UserMapper userMapper;
     private final UserService userService;
+    private final SessionMapper sessionMapper;
+    private final SessionService sessionService;
 
 
     public UserController(UserService userService,
-                             UserMapper userMapper) {
+                             UserMapper userMapper,
+                             SessionService sessionService,
+                             SessionMapper sessionMapper) {
         this.userMapper = userMapper;
         this.userService = userService;
+        this.sessionService = sessionService;
+        this.sessionMapper = sessionMapper;
     }
 
     @GetMapping("/{id}")
@@ -61,4 +75,28 @@ public class UserController {
             return ResponseEntity.badRequest().build();
         }
     }
+
+    /**
+     * Sessions the user attends, paginated and filtered like {@code GET /api/session/page}.
+     * Only the user themself can list them.
+     */
+    @GetMapping("/{id}/sessions")
+    public ResponseEntity<?> findSessions(@PathVariable("id") String id, SessionSearchRequest search) {
+        try {
+            Long userId = Long.valueOf(id);
+            UserDetailsImpl userDetails = (UserDetailsImpl) SecurityContextHolder.getContext().getAuthentication().getPrincipal();
+
+            if (!Objects.equals(userDetails.getId(), userId)) {
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+            }
+
+            search.setParticipantId(userId);
+            SessionPage page = this.sessionService.findPage(search);
+            List<SessionDto> sessions = this.sessionMapper.toDto(page.getSessions(), this.sessionService.findParticipantIds(page.getSessions()));
+
+            return ResponseEntity.ok().body(new SessionPageDto(sessions, page.getNextCursor()));
+        } catch (NumberFormatException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
 }
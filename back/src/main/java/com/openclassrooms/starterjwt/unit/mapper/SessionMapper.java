@@ -2,9 +2,11 @@ package com.openclassrooms.starterjwt.unit.mapper;
 
 import com.openclassrooms.starterjwt.dto.SessionDto;
 import com.openclassrooms.starterjwt.unit.models.Session;
+import com.openclassrooms.starterjwt.unit.models.SessionSummary;
 import com.openclassrooms.starterjwt.unit.models.User;
 import com.openclassrooms.starterjwt.unit.services.TeacherService;
 import com.openclassrooms.starterjwt.unit.services.UserService;
+import org.mapstruct.Context;
 import org.mapstruct.Mapper;
 import org.mapstruct.Mapping;
 import org.mapstruct.Mappings;
@@ -13,7 +15,11 @@ import org.springframework.stereotype.Component;
 
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Component
@@ -25,12 +31,59 @@ public abstract class SessionMapper implements EntityMapper<SessionDto, Session>
     @Autowired
     UserService userService;
 
+    @Override
+    public Session toEntity(SessionDto sessionDto) {
+        if (sessionDto == null) {
+            return null;
+        }
+        return toEntity(sessionDto, resolveReferences(List.of(sessionDto)));
+    }
+
+    @Override
+    public List<Session> toEntity(List<SessionDto> dtoList) {
+        if (dtoList == null) {
+            return null;
+        }
+        SessionReferences references = resolveReferences(dtoList);
+        return dtoList.stream()
+                .map(sessionDto -> toEntity(sessionDto, references))
+                .collect(Collectors.toList());
+    }
+
     @Mappings({
-            @Mapping(source = "description", target = "description"),
-            @Mapping(target = "teacher", expression = "java(sessionDto.getTeacher_id() != null ? this.teacherService.findById(sessionDto.getTeacher_id()) : null)"),
-            @Mapping(target = "users", expression = "java(Optional.ofNullable(sessionDto.getUsers()).orElseGet(Collections::emptyList).stream().map(user_id -> { User user = this.userService.findById(user_id); if (user != null) { return user; } return null; }).collect(Collectors.toList()))"),
+            @Mapping(source = "sessionDto.description", target = "description"),
+            @Mapping(target = "teacher", expression = "java(references.teacher(sessionDto.getTeacher_id()))"),
+            @Mapping(target = "users", expression = "java(references.users(sessionDto.getUsers()))"),
     })
-    public abstract Session toEntity(SessionDto sessionDto);
+    protected abstract Session toEntity(SessionDto sessionDto, @Context SessionReferences references);
+
+    /**
+     * Loads every user referenced by {@code dtos} in one query; teachers are checked against the teacher cache
+     * and attached as lazy references.
+     *
+     * @throws com.openclassrooms.starterjwt.exception.BadRequestException if an id does not exist
+     */
+    SessionReferences resolveReferences(List<SessionDto> dtos) {
+        Set<Long> teacherIds = new HashSet<>();
+        Set<Long> userIds = new HashSet<>();
+        for (SessionDto dto : dtos) {
+            if (dto.getTeacher_id() != null) {
+                teacherIds.add(dto.getTeacher_id());
+            }
+            if (dto.getUsers() != null) {
+                userIds.addAll(dto.getUsers());
+            }
+        }
+
+        SessionReferences references = new SessionReferences(
+                teacherIds.stream()
+                        .filter(id -> this.teacherService.findById(id) != null)
+                        .map(this.teacherService::getReference)
+                        .collect(Collectors.toList()),
+                userIds.isEmpty() ? Collections.emptyList() : this.userService.findAllById(userIds));
+        references.checkResolved(teacherIds, userIds);
+        return references;
+    }
 
 
     @Mappings({
@@ -39,4 +92,16 @@ public abstract class SessionMapper implements EntityMapper<SessionDto, Session>
             @Mapping(target = "users", expression = "java(Optional.ofNullable(session.getUsers()).orElseGet(Collections::emptyList).stream().map(u -> u.getId()).collect(Collectors.toList()))"),
     })
     public abstract SessionDto toDto(Session session);
+
+    @Mappings({
+            @Mapping(source = "summary.teacherId", target = "teacher_id"),
+            @Mapping(source = "users", target = "users"),
+    })
+    public abstract SessionDto toDto(SessionSummary summary, List<Long> users);
+
+    public List<SessionDto> toDto(List<SessionSummary> summaries, Map<Long, List<Long>> participants) {
+        return summaries.stream()
+                .map(summary -> toDto(summary, participants.getOrDefault(summary.getId(), Collections.emptyList())))
+                .collect(Collectors.toList());
+    }
 }
@@ -0,0 +1,57 @@
+package com.openclassrooms.starterjwt.unit.mapper;
+
+import com.openclassrooms.starterjwt.exception.BadRequestException;
+import com.openclassrooms.starterjwt.unit.models.Teacher;
+import com.openclassrooms.starterjwt.unit.models.User;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Identity map of the teachers and users referenced by the DTOs of one mapping call,
+ * resolved before any DTO is mapped.
+ */
+class SessionReferences {
+    private final Map<Long, Teacher> teachers;
+
+    private final Map<Long, User> users;
+
+    SessionReferences(Collection<Teacher> teachers, Collection<User> users) {
+        this.teachers = teachers.stream().collect(Collectors.toMap(Teacher::getId, Function.identity()));
+        this.users = users.stream().collect(Collectors.toMap(User::getId, Function.identity()));
+    }
+
+    Teacher teacher(Long id) {
+        return id != null ? this.teachers.get(id) : null;
+    }
+
+    /**
+     * Repeated ids are kept once: PARTICIPATE allows a single row per user and session.
+     */
+    List<User> users(List<Long> ids) {
+        return Optional.ofNullable(ids).orElseGet(List::of).stream()
+                .distinct()
+                .map(this.users::get)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * @throws BadRequestException listing every requested id that was not found
+     */
+    void checkResolved(Set<Long> teacherIds, Set<Long> userIds) {
+        Set<Long> unknownTeachers = new TreeSet<>(teacherIds);
+        unknownTeachers.removeAll(this.teachers.keySet());
+        Set<Long> unknownUsers = new TreeSet<>(userIds);
+        unknownUsers.removeAll(this.users.keySet());
+
+        if (!unknownTeachers.isEmpty() || !unknownUsers.isEmpty()) {
+            throw new BadRequestException("Unknown teacher ids " + unknownTeachers + ", unknown user ids " + unknownUsers);
+        }
+    }
+}
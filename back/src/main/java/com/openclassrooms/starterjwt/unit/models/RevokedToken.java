@@ -0,0 +1,31 @@
+package com.openclassrooms.starterjwt.unit.models;
+
+import lombok.*;
+import lombok.experimental.Accessors;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "REVOKED_TOKENS")
+@Data
+@Accessors(chain = true)
+@EqualsAndHashCode(of = {"jti"})
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@ToString(of = {"jti", "userId"})
+public class RevokedToken {
+    @Id
+    @Column(length = 64)
+    private String jti;
+
+    @Column(name = "user_id")
+    private Long userId;
+
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+
+    @Column(name = "revoked_at", nullable = false)
+    private LocalDateTime revokedAt;
+}
@@ -8,6 +8,7 @@ import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 
 import javax.persistence.*;
+import javax.validation.constraints.Min;
 import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Size;
@@ -24,8 +25,9 @@ import java.util.List;
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
-@ToString
+@ToString(onlyExplicitlyIncluded = true)
 public class Session {
+    @ToString.Include
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
@@ -41,11 +43,17 @@ public class Session {
     @Size(max = 2500)
     private String description;
 
+    /**
+     * Maximum number of participants, {@code null} for an unlimited session.
+     */
+    @Min(1)
+    private Integer capacity;
+
     @OneToOne
     @JoinColumn(name = "teacher_id", referencedColumnName = "id")
     private Teacher teacher;
 
-    @ManyToMany(fetch = FetchType.EAGER)
+    @ManyToMany(fetch = FetchType.LAZY)
     @JoinTable(
             name = "PARTICIPATE",
             joinColumns = @JoinColumn( name = "session_id" ),
@@ -59,4 +67,16 @@ public class Session {
     @UpdateTimestamp
     @Column(name = "updated_at")
     private LocalDateTime updatedAt;
+
+    /**
+     * Change counter behind the ETags, only written by {@code SessionRepository.touch}.
+     */
+    @Column(name = "revision", insertable = false, updatable = false)
+    private Long revision;
+
+    // Neither the teacher nor the participants are rendered: the id of a proxy does not load it.
+    @ToString.Include(name = "teacherId")
+    private Long teacherId() {
+        return this.teacher != null ? this.teacher.getId() : null;
+    }
 }
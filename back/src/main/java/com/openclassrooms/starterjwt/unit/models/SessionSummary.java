@@ -0,0 +1,35 @@
+package com.openclassrooms.starterjwt.unit.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.time.LocalDateTime;
+import java.util.Date;
+
+/**
+ * Read-only view of a {@link Session} built directly by JPQL, without hydrating the teacher or the participants.
+ * The participant count comes from a correlated count on PARTICIPATE.
+ */
+@Getter
+@AllArgsConstructor
+@ToString
+public class SessionSummary {
+    private final Long id;
+
+    private final String name;
+
+    private final Date date;
+
+    private final String description;
+
+    private final Long teacherId;
+
+    private final Integer capacity;
+
+    private final int participantCount;
+
+    private final LocalDateTime createdAt;
+
+    private final LocalDateTime updatedAt;
+}
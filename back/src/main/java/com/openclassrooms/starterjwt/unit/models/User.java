@@ -23,8 +23,9 @@ import java.time.LocalDateTime;
 @NoArgsConstructor
 @RequiredArgsConstructor
 @AllArgsConstructor
-@ToString
+@ToString(onlyExplicitlyIncluded = true)
 public class User {
+  @ToString.Include
   @Id
   @GeneratedValue(strategy = GenerationType.IDENTITY)
   private Long id;
@@ -51,6 +52,12 @@ public class User {
   @NonNull
   private boolean admin;
 
+  /**
+   * Version of the claims embedded in the JWTs of this user, see {@code TokenVersionRegistry}.
+   */
+  @Column(name = "token_version")
+  private int tokenVersion;
+
   @CreatedDate
   @Column(name = "created_at", updatable = false)
   private LocalDateTime createdAt;
@@ -0,0 +1,41 @@
+package com.openclassrooms.starterjwt.unit.payload.request;
+
+import lombok.Data;
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.util.Date;
+
+/**
+ * Query parameters of {@code GET /api/session/page}.
+ * Every filter is optional; {@code cursor} is the opaque token returned as {@code nextCursor} by the previous page.
+ */
+@Data
+public class SessionSearchRequest {
+  @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+  private Date from;
+
+  @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+  private Date to;
+
+  private Long teacherId;
+
+  /**
+   * When true, only sessions that still have a free spot (or no capacity at all) are returned.
+   */
+  private Boolean available;
+
+  /**
+   * {@code me} to keep only the sessions the authenticated user attends.
+   */
+  private String participant;
+
+  /**
+   * Resolved from {@code participant} (or the path of {@code GET /api/user/{id}/sessions}) by the controller,
+   * which always overwrites whatever the client sent.
+   */
+  private Long participantId;
+
+  private String cursor;
+
+  private Integer size;
+}
@@ -1,6 +1,12 @@
 package com.openclassrooms.starterjwt.unit.security;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.autoconfigure.security.servlet.EndpointRequest;
+import org.springframework.boot.actuate.metrics.MetricsEndpoint;
+import org.springframework.boot.actuate.metrics.export.prometheus.PrometheusScrapeEndpoint;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -10,14 +16,20 @@ import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter;
 import org.springframework.security.config.http.SessionCreationPolicy;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 
 import com.openclassrooms.starterjwt.unit.security.jwt.AuthEntryPointJwt;
 import com.openclassrooms.starterjwt.unit.security.jwt.AuthTokenFilter;
+import com.openclassrooms.starterjwt.unit.security.services.BoundedPasswordEncoder;
+import com.openclassrooms.starterjwt.unit.security.services.CalibratedBCryptPasswordEncoder;
 import com.openclassrooms.starterjwt.unit.security.services.UserDetailsServiceImpl;
 
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.Map;
+
 @Configuration
 @EnableWebSecurity
 @EnableGlobalMethodSecurity(
@@ -25,12 +37,46 @@ import com.openclassrooms.starterjwt.unit.security.services.UserDetailsServiceIm
     // jsr250Enabled = true,
     prePostEnabled = true)
 public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
+  private static final Logger logger = LoggerFactory.getLogger(WebSecurityConfig.class);
+
+  private static final String BCRYPT_ID = "bcrypt";
+
   @Autowired
   UserDetailsServiceImpl userDetailsService;
 
   @Autowired
   private AuthEntryPointJwt unauthorizedHandler;
 
+  @Autowired
+  private MeterRegistry meterRegistry;
+
+  @Value("${oc.app.hashing.threads:0}")
+  private int hashingThreads = 0;
+
+  @Value("${oc.app.hashing.queueCapacity:64}")
+  private int hashingQueueCapacity = 64;
+
+  @Value("${oc.app.hashing.timeoutMs:5000}")
+  private long hashingTimeoutMs = 5000;
+
+  @Value("${oc.app.hashing.retryAfterSeconds:1}")
+  private long hashingRetryAfterSeconds = 1;
+
+  /**
+   * Fixed BCrypt cost; {@code 0} calibrates it at startup against {@link #bcryptTargetMs}.
+   */
+  @Value("${oc.app.bcrypt.strength:0}")
+  private int bcryptStrength = 0;
+
+  @Value("${oc.app.bcrypt.targetMs:250}")
+  private long bcryptTargetMs = 250;
+
+  @Value("${oc.app.bcrypt.minStrength:10}")
+  private int bcryptMinStrength = 10;
+
+  @Value("${oc.app.bcrypt.maxStrength:16}")
+  private int bcryptMaxStrength = 16;
+
   @Bean
   public AuthTokenFilter authenticationJwtTokenFilter() {
     return new AuthTokenFilter();
@@ -47,9 +93,23 @@ public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
     return super.authenticationManagerBean();
   }
 
+  /**
+   * New hashes are written as {@code {bcrypt}...}; the unprefixed hashes of existing accounts are still
+   * verified as BCrypt and rewritten at their next login, like any hash whose cost differs from the current one.
+   */
   @Bean
   public PasswordEncoder passwordEncoder() {
-    return new BCryptPasswordEncoder();
+    int strength = bcryptStrength > 0
+        ? bcryptStrength
+        : CalibratedBCryptPasswordEncoder.calibrate(bcryptTargetMs, bcryptMinStrength, bcryptMaxStrength);
+    logger.info("BCrypt cost {} ({})", strength, bcryptStrength > 0 ? "configured" : "calibrated for " + bcryptTargetMs + " ms");
+
+    CalibratedBCryptPasswordEncoder bcrypt = new CalibratedBCryptPasswordEncoder(strength, meterRegistry);
+    DelegatingPasswordEncoder delegating = new DelegatingPasswordEncoder(BCRYPT_ID, Map.of(BCRYPT_ID, bcrypt));
+    delegating.setDefaultPasswordEncoderForMatches(bcrypt);
+
+    return new BoundedPasswordEncoder(delegating, hashingThreads, hashingQueueCapacity,
+        hashingTimeoutMs, hashingRetryAfterSeconds, meterRegistry);
   }
 
   @Override
@@ -58,6 +118,9 @@ public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
       .exceptionHandling().authenticationEntryPoint(unauthorizedHandler).and()
       .sessionManagement().sessionCreationPolicy(SessionCreationPolicy.STATELESS).and()
       .authorizeRequests().antMatchers("/api/auth/**").permitAll()
+      // Scraped by a local Prometheus, or read by an admin
+      .requestMatchers(EndpointRequest.to(PrometheusScrapeEndpoint.class, MetricsEndpoint.class))
+        .access("hasIpAddress('127.0.0.1') or hasIpAddress('::1') or hasRole('ADMIN')")
       .antMatchers("/api/**").authenticated()
       .anyRequest().authenticated();
 
@@ -1,6 +1,7 @@
 package com.openclassrooms.starterjwt.unit.security.jwt;
 
 import java.io.IOException;
+import java.util.Objects;
 
 import javax.servlet.FilterChain;
 import javax.servlet.ServletException;
@@ -17,8 +18,14 @@ import org.springframework.security.web.authentication.WebAuthenticationDetailsS
 import org.springframework.util.StringUtils;
 import org.springframework.web.filter.OncePerRequestFilter;
 
+import com.openclassrooms.starterjwt.unit.security.services.PrincipalCache;
+import com.openclassrooms.starterjwt.unit.security.services.TokenRevocationService;
+import com.openclassrooms.starterjwt.unit.security.services.TokenVersionRegistry;
+import com.openclassrooms.starterjwt.unit.security.services.UserDetailsImpl;
 import com.openclassrooms.starterjwt.unit.security.services.UserDetailsServiceImpl;
 
+import io.jsonwebtoken.Claims;
+
 public class AuthTokenFilter extends OncePerRequestFilter {
   @Autowired
   public JwtUtils jwtUtils;
@@ -26,6 +33,15 @@ public class AuthTokenFilter extends OncePerRequestFilter {
   @Autowired
   public UserDetailsServiceImpl userDetailsService;
 
+  @Autowired
+  public PrincipalCache principalCache;
+
+  @Autowired
+  public TokenVersionRegistry tokenVersions;
+
+  @Autowired
+  public TokenRevocationService tokenRevocations;
+
   private static final Logger logger = LoggerFactory.getLogger(AuthTokenFilter.class);
 
   @Override
@@ -33,10 +49,15 @@ public class AuthTokenFilter extends OncePerRequestFilter {
       throws ServletException, IOException {
     try {
       String jwt = parseJwt(request);
-      if (jwt != null && jwtUtils.validateJwtToken(jwt)) {
-        String username = jwtUtils.getUserNameFromJwtToken(jwt);
-
-        UserDetails userDetails = userDetailsService.loadUserByUsername(username);
+      Claims claims = jwt != null ? jwtUtils.parseClaims(jwt) : null;
+      UserDetails userDetails = null;
+      if (claims != null && !tokenRevocations.isRevoked(claims)) {
+        userDetails = principalFromClaims(claims);
+        if (userDetails == null) {
+          userDetails = principalFromDatabase(claims);
+        }
+      }
+      if (userDetails != null) {
         UsernamePasswordAuthenticationToken authentication =
             new UsernamePasswordAuthenticationToken(
                 userDetails,
@@ -53,6 +74,51 @@ public class AuthTokenFilter extends OncePerRequestFilter {
     filterChain.doFilter(request, response);
   }
 
+  /**
+   * The principal described by the token itself, or {@code null} when the token predates the id/admin/version
+   * claims or its version is stale.
+   */
+  private UserDetails principalFromClaims(Claims claims) {
+    Long id = claims.get(JwtUtils.CLAIM_ID, Long.class);
+    Integer version = claims.get(JwtUtils.CLAIM_VERSION, Integer.class);
+    if (id == null || version == null || !tokenVersions.isCurrent(id, version)) {
+      return null;
+    }
+
+    return UserDetailsImpl.builder()
+        .id(id)
+        .username(claims.getSubject())
+        .admin(Boolean.TRUE.equals(claims.get(JwtUtils.CLAIM_ADMIN, Boolean.class)))
+        .tokenVersion(version)
+        .build();
+  }
+
+  /**
+   * The principal as currently stored in USERS (through the principal cache), or {@code null} when the token
+   * was issued before the user's token version was bumped, or to another account that has since been deleted
+   * and re-created with the same email.
+   */
+  private UserDetails principalFromDatabase(Claims claims) {
+    String username = claims.getSubject();
+    UserDetails userDetails = principalCache.get(username, userDetailsService::loadUserByUsername);
+    if (!(userDetails instanceof UserDetailsImpl)) {
+      return userDetails;
+    }
+
+    UserDetailsImpl user = (UserDetailsImpl) userDetails;
+    if (!tokenVersions.isCurrent(user.getId(), user.getTokenVersion())) {
+      principalCache.evict(username);
+      user = (UserDetailsImpl) principalCache.get(username, userDetailsService::loadUserByUsername);
+    }
+
+    Long id = claims.get(JwtUtils.CLAIM_ID, Long.class);
+    Integer version = claims.get(JwtUtils.CLAIM_VERSION, Integer.class);
+    if (version != null && version < user.getTokenVersion()) {
+      return null;
+    }
+    return id == null || Objects.equals(id, user.getId()) ? user : null;
+  }
+
   public String parseJwt(HttpServletRequest request) {
     String headerAuth = request.getHeader("Authorization");
 
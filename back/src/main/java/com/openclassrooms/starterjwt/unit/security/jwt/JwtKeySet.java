@@ -0,0 +1,173 @@
+package com.openclassrooms.starterjwt.unit.security.jwt;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyFactory;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.crypto.spec.SecretKeySpec;
+
+import org.springframework.core.io.Resource;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.SignatureException;
+import io.jsonwebtoken.SigningKeyResolverAdapter;
+import io.jsonwebtoken.impl.TextCodec;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Signing and verification keys indexed by {@code kid}; the {@code active} key, when there is one, signs new tokens.
+ */
+public class JwtKeySet extends SigningKeyResolverAdapter {
+  private final Map<String, JwtKey> keys;
+
+  private final JwtKey activeKey;
+
+  private final JwtKey legacyKey;
+
+  JwtKeySet(Map<String, JwtKey> keys, JwtKey activeKey, JwtKey legacyKey) {
+    this.keys = Collections.unmodifiableMap(keys);
+    this.activeKey = activeKey;
+    this.legacyKey = legacyKey;
+  }
+
+  /**
+   * The single HS512 key of {@code oc.app.jwtSecret}, signing without {@code kid}.
+   */
+  public static JwtKeySet ofSecret(String secret) {
+    if (secret == null || secret.isBlank()) {
+      throw new IllegalArgumentException("Either oc.app.jwtSecret or oc.app.jwtKeys has to be set");
+    }
+    JwtKey key = legacyKey(secret);
+    return new JwtKeySet(Collections.emptyMap(), key, key);
+  }
+
+  /**
+   * @param legacySecret verifies the tokens without {@code kid}; {@code null} or blank rejects them
+   * @throws IllegalArgumentException when the file is not a valid key set
+   */
+  public static JwtKeySet load(Resource resource, String legacySecret) throws IOException {
+    JsonNode root;
+    try (InputStream in = resource.getInputStream()) {
+      root = new ObjectMapper().readTree(in);
+    }
+
+    Map<String, JwtKey> keys = new LinkedHashMap<>();
+    for (JsonNode node : root.path("keys")) {
+      JwtKey key = parse(node);
+      if (keys.put(key.getKid(), key) != null) {
+        throw new IllegalArgumentException("Duplicate kid " + key.getKid() + " in " + resource);
+      }
+    }
+
+    String active = root.path("active").asText(null);
+    JwtKey activeKey = active == null ? null : keys.get(active);
+    if (active != null && (activeKey == null || activeKey.getSigningKey() == null)) {
+      throw new IllegalArgumentException("Active key " + active + " is missing or cannot sign in " + resource);
+    }
+    return new JwtKeySet(keys, activeKey,
+        legacySecret == null || legacySecret.isBlank() ? null : legacyKey(legacySecret));
+  }
+
+  /**
+   * @return the key new tokens are signed with
+   * @throws IllegalStateException when the set has no active key: this node only verifies tokens
+   */
+  public JwtKey getActiveKey() {
+    if (this.activeKey == null) {
+      throw new IllegalStateException("The JWT key set has no active key: this node cannot sign tokens");
+    }
+    return this.activeKey;
+  }
+
+  @Override
+  public Key resolveSigningKey(JwsHeader header, Claims claims) {
+    return verificationKey(header);
+  }
+
+  @Override
+  public Key resolveSigningKey(JwsHeader header, String plaintext) {
+    return verificationKey(header);
+  }
+
+  private Key verificationKey(JwsHeader header) {
+    String kid = header.getKeyId();
+    JwtKey key = kid == null ? this.legacyKey : this.keys.get(kid);
+    if (key == null) {
+      throw new SignatureException("Unknown signing key " + kid);
+    }
+    // The key decides the algorithm, never the token: an RS256 public key must not be accepted as an HMAC secret.
+    if (!key.getAlgorithm().getValue().equals(header.getAlgorithm())) {
+      throw new SignatureException("Signing key " + kid + " does not use " + header.getAlgorithm());
+    }
+    return key.getVerificationKey();
+  }
+
+  private static JwtKey legacyKey(String secret) {
+    Key key = new SecretKeySpec(TextCodec.BASE64.decode(secret), SignatureAlgorithm.HS512.getJcaName());
+    return new JwtKey(null, SignatureAlgorithm.HS512, key, key);
+  }
+
+  private static JwtKey parse(JsonNode node) {
+    String kid = node.path("kid").asText(null);
+    if (kid == null || kid.isBlank()) {
+      throw new IllegalArgumentException("Every key needs a kid");
+    }
+    SignatureAlgorithm algorithm = SignatureAlgorithm.forName(node.path("alg").asText());
+
+    try {
+      if (algorithm.isHmac()) {
+        Key key = new SecretKeySpec(decode(node, "secret", kid), algorithm.getJcaName());
+        return new JwtKey(kid, algorithm, key, key);
+      }
+      if (!algorithm.isRsa() && !algorithm.isEllipticCurve()) {
+        throw new IllegalArgumentException("Key " + kid + " uses unsupported algorithm " + algorithm);
+      }
+
+      KeyFactory keyFactory = KeyFactory.getInstance(algorithm.isRsa() ? "RSA" : "EC");
+      Key publicKey = keyFactory.generatePublic(new X509EncodedKeySpec(decode(node, "publicKey", kid)));
+      Key privateKey = node.hasNonNull("privateKey")
+          ? keyFactory.generatePrivate(new PKCS8EncodedKeySpec(decode(node, "privateKey", kid)))
+          : null;
+      return new JwtKey(kid, algorithm, privateKey, publicKey);
+    } catch (GeneralSecurityException e) {
+      throw new IllegalArgumentException("Key " + kid + " is not a valid " + algorithm + " key", e);
+    }
+  }
+
+  // Base64 DER, PEM armor and line breaks tolerated.
+  private static byte[] decode(JsonNode node, String field, String kid) {
+    String value = node.path(field).asText(null);
+    if (value == null) {
+      throw new IllegalArgumentException("Key " + kid + " has no " + field);
+    }
+    return Base64.getMimeDecoder().decode(value.replaceAll("-----[A-Z ]+-----", ""));
+  }
+
+  @Getter
+  @AllArgsConstructor
+  public static class JwtKey {
+    /** {@code null} for the legacy secret. */
+    private final String kid;
+
+    private final SignatureAlgorithm algorithm;
+
+    /** {@code null} on the nodes that only verify. */
+    private final Key signingKey;
+
+    private final Key verificationKey;
+  }
+}
@@ -1,47 +1,150 @@
 package com.openclassrooms.starterjwt.unit.security.jwt;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
 import java.util.Date;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.DefaultResourceLoader;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Component;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import com.openclassrooms.starterjwt.unit.security.services.UserDetailsImpl;
 
 import io.jsonwebtoken.*;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 
 @Component
 public class JwtUtils {
   private static final Logger logger = LoggerFactory.getLogger(JwtUtils.class);
 
-  @Value("${oc.app.jwtSecret}")
+  public static final String CLAIM_ID = "id";
+
+  public static final String CLAIM_ADMIN = "admin";
+
+  public static final String CLAIM_VERSION = "ver";
+
+  @Value("${oc.app.jwtSecret:}")
   private String jwtSecret;
 
+  // Location of a key set file (see JwtKeySet); when blank, tokens are signed with jwtSecret alone.
+  @Value("${oc.app.jwtKeys:}")
+  private String jwtKeys;
+
   @Value("${oc.app.jwtExpirationMs}")
   private int jwtExpirationMs;
 
-  public String generateJwtToken(Authentication authentication) {
+  @Value("${oc.app.jwtCache.maxSize:10000}")
+  private long verifiedTokenCacheSize = 10000;
+
+  @Autowired(required = false)
+  private MeterRegistry meterRegistry;
+
+  private volatile JwtKeySet keySet;
+
+  // SHA-256 digest of an already verified token -> its claims; null when disabled.
+  private Cache<String, Claims> verifiedTokens;
+
+  @PostConstruct
+  void init() {
+    initVerifiedTokenCache();
+    keySet();
+  }
+
+  void initVerifiedTokenCache() {
+    if (verifiedTokenCacheSize <= 0) {
+      return;
+    }
+
+    this.verifiedTokens = Caffeine.newBuilder()
+        .maximumSize(verifiedTokenCacheSize)
+        .expireAfter(new Expiry<String, Claims>() {
+          @Override
+          public long expireAfterCreate(String digest, Claims claims, long currentTime) {
+            return remainingNanos(claims);
+          }
+
+          @Override
+          public long expireAfterUpdate(String digest, Claims claims, long currentTime, long currentDuration) {
+            return remainingNanos(claims);
+          }
+
+          @Override
+          public long expireAfterRead(String digest, Claims claims, long currentTime, long currentDuration) {
+            return currentDuration;
+          }
+        })
+        .recordStats()
+        .build();
+    if (meterRegistry != null) {
+      CaffeineCacheMetrics.monitor(meterRegistry, this.verifiedTokens, "jwtVerifiedTokens");
+    }
+  }
 
-    UserDetailsImpl userPrincipal = (UserDetailsImpl) authentication.getPrincipal();
+  public String generateJwtToken(Authentication authentication) {
+    return generateJwtToken((UserDetailsImpl) authentication.getPrincipal());
+  }
 
-    return Jwts.builder()
+  public String generateJwtToken(UserDetailsImpl userPrincipal) {
+    JwtKeySet.JwtKey key = keySet().getActiveKey();
+    JwtBuilder builder = Jwts.builder();
+    if (key.getKid() != null) {
+      builder.setHeaderParam(JwsHeader.KEY_ID, key.getKid());
+    }
+    return builder
+        .setId(UUID.randomUUID().toString())
         .setSubject((userPrincipal.getUsername()))
+        .claim(CLAIM_ID, userPrincipal.getId())
+        .claim(CLAIM_ADMIN, Boolean.TRUE.equals(userPrincipal.getAdmin()))
+        .claim(CLAIM_VERSION, userPrincipal.getTokenVersion())
         .setIssuedAt(new Date())
         .setExpiration(new Date((new Date()).getTime() + jwtExpirationMs))
-        .signWith(SignatureAlgorithm.HS512, jwtSecret)
+        .signWith(key.getAlgorithm(), key.getSigningKey())
         .compact();
   }
 
   public String getUserNameFromJwtToken(String token) {
-    return Jwts.parser().setSigningKey(jwtSecret).parseClaimsJws(token).getBody().getSubject();
+    return Jwts.parser().setSigningKeyResolver(keySet()).parseClaimsJws(token).getBody().getSubject();
   }
 
   public boolean validateJwtToken(String authToken) {
+    return parseClaims(authToken) != null;
+  }
+
+  /**
+   * Claims of the token, {@code null} when it is invalid or expired; verified tokens are cached until they expire.
+   */
+  public Claims parseClaims(String authToken) {
+    String digest = null;
+    if (verifiedTokens != null && authToken != null && !authToken.isEmpty()) {
+      digest = digest(authToken);
+      Claims cached = verifiedTokens.getIfPresent(digest);
+      if (cached != null) {
+        return cached;
+      }
+    }
+
     try {
-      Jwts.parser().setSigningKey(jwtSecret).parseClaimsJws(authToken);
-      return true;
+      Claims claims = Jwts.parser().setSigningKeyResolver(keySet()).parseClaimsJws(authToken).getBody();
+      if (digest != null) {
+        verifiedTokens.put(digest, claims);
+      }
+      return claims;
     } catch (SignatureException e) {
       logger.error("Invalid JWT signature: {}", e.getMessage());
     } catch (MalformedJwtException e) {
@@ -54,6 +157,39 @@ public class JwtUtils {
       logger.error("JWT claims string is empty: {}", e.getMessage());
     }
 
-    return false;
+    return null;
+  }
+
+  // Keys are parsed once: jjwt would base64-decode a String secret on every parse.
+  private JwtKeySet keySet() {
+    JwtKeySet keys = this.keySet;
+    if (keys == null) {
+      try {
+        keys = jwtKeys == null || jwtKeys.isBlank()
+            ? JwtKeySet.ofSecret(jwtSecret)
+            : JwtKeySet.load(new DefaultResourceLoader().getResource(jwtKeys), jwtSecret);
+      } catch (IOException e) {
+        throw new UncheckedIOException("Cannot read the JWT key set " + jwtKeys, e);
+      }
+      this.keySet = keys;
+    }
+    return keys;
+  }
+
+  private long remainingNanos(Claims claims) {
+    Date expiration = claims.getExpiration();
+    long remainingMs = expiration != null
+        ? expiration.getTime() - System.currentTimeMillis()
+        : jwtExpirationMs;
+    return TimeUnit.MILLISECONDS.toNanos(Math.max(0, Math.min(remainingMs, jwtExpirationMs)));
+  }
+
+  private static String digest(String token) {
+    try {
+      byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+      return Base64.getEncoder().encodeToString(hash);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
   }
 }
@@ -0,0 +1,99 @@
+package com.openclassrooms.starterjwt.unit.security.services;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * BCrypt encoder with a configurable cost; hashes of any other cost are re-hashed at the next login.
+ */
+public class CalibratedBCryptPasswordEncoder extends BCryptPasswordEncoder {
+  public static final String METRIC_NAME = "auth.bcrypt.matches";
+
+  private static final Pattern BCRYPT_HASH = Pattern.compile("^\\$2[aby]?\\$(\\d\\d)\\$.{53}$");
+
+  private static final int MIN_STRENGTH = 4;
+
+  private static final int MAX_STRENGTH = 31;
+
+  private final int strength;
+
+  private final MeterRegistry meterRegistry;
+
+  private final Map<Integer, Timer> timers = new ConcurrentHashMap<>();
+
+  public CalibratedBCryptPasswordEncoder(int strength, MeterRegistry meterRegistry) {
+    super(strength);
+    this.strength = strength;
+    this.meterRegistry = meterRegistry;
+    Gauge.builder("auth.bcrypt.strength", this, CalibratedBCryptPasswordEncoder::getStrength)
+        .strongReference(true)
+        .register(meterRegistry);
+  }
+
+  /**
+   * Highest cost in {@code [minStrength, maxStrength]} whose hash takes at most {@code targetMs} on this machine.
+   */
+  public static int calibrate(long targetMs, int minStrength, int maxStrength) {
+    BCryptPasswordEncoder probe = new BCryptPasswordEncoder(minStrength);
+    probe.encode("calibration");
+    long best = Long.MAX_VALUE;
+    for (int i = 0; i < 2; i++) {
+      long start = System.nanoTime();
+      probe.encode("calibration");
+      best = Math.min(best, System.nanoTime() - start);
+    }
+
+    int strength = minStrength;
+    double elapsedMs = best / 1_000_000.0;
+    while (strength < maxStrength && elapsedMs * 2 <= targetMs) {
+      strength++;
+      elapsedMs *= 2;
+    }
+    return strength;
+  }
+
+  /**
+   * @return the cost recorded in {@code encodedPassword}, {@code -1} when it is not a BCrypt hash
+   */
+  public static int costOf(String encodedPassword) {
+    if (encodedPassword == null) {
+      return -1;
+    }
+    Matcher matcher = BCRYPT_HASH.matcher(encodedPassword);
+    if (!matcher.matches()) {
+      return -1;
+    }
+    int cost = Integer.parseInt(matcher.group(1));
+    return cost >= MIN_STRENGTH && cost <= MAX_STRENGTH ? cost : -1;
+  }
+
+  public int getStrength() {
+    return this.strength;
+  }
+
+  @Override
+  public boolean matches(CharSequence rawPassword, String encodedPassword) {
+    int cost = costOf(encodedPassword);
+    if (cost < 0) {
+      return super.matches(rawPassword, encodedPassword);
+    }
+    Timer timer = this.timers.computeIfAbsent(cost, c -> Timer.builder(METRIC_NAME)
+        .tag("cost", String.valueOf(c))
+        .register(this.meterRegistry));
+    return timer.record(() -> super.matches(rawPassword, encodedPassword));
+  }
+
+  @Override
+  public boolean upgradeEncoding(String encodedPassword) {
+    int cost = costOf(encodedPassword);
+    return cost >= 0 && cost != this.strength;
+  }
+}
@@ -0,0 +1,67 @@
+package com.openclassrooms.starterjwt.unit.security.services;
+
+import java.time.Duration;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+/**
+ * Bounded, time-limited cache of the principals resolved by {@link com.openclassrooms.starterjwt.unit.security.jwt.AuthTokenFilter}.
+ */
+@Component
+public class PrincipalCache {
+  public static final String CACHE_NAME = "principals";
+
+  private final Cache<String, UserDetails> principals;
+
+  public PrincipalCache(@Value("${oc.app.principalCache.ttlSeconds:300}") long ttlSeconds,
+      @Value("${oc.app.principalCache.maxSize:10000}") long maxSize,
+      MeterRegistry meterRegistry) {
+    this.principals = Caffeine.newBuilder()
+        .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+        .maximumSize(maxSize)
+        .recordStats()
+        .build();
+    CaffeineCacheMetrics.monitor(meterRegistry, this.principals, CACHE_NAME);
+  }
+
+  /**
+   * Returns the cached principal of {@code username}, loading it with {@code loader} on a miss.
+   * Loader exceptions (unknown user) propagate and nothing is cached.
+   */
+  public UserDetails get(String username, Function<String, UserDetails> loader) {
+    return this.principals.get(username, key -> withoutPassword(loader.apply(key)));
+  }
+
+  /**
+   * Must be called whenever the user is deleted or its credentials change.
+   */
+  public void evict(String username) {
+    this.principals.invalidate(username);
+  }
+
+  // Request authentication never needs the hash: don't keep it in memory longer than the login itself.
+  private static UserDetails withoutPassword(UserDetails userDetails) {
+    if (!(userDetails instanceof UserDetailsImpl)) {
+      return userDetails;
+    }
+
+    UserDetailsImpl user = (UserDetailsImpl) userDetails;
+    return UserDetailsImpl.builder()
+        .id(user.getId())
+        .username(user.getUsername())
+        .firstName(user.getFirstName())
+        .lastName(user.getLastName())
+        .admin(user.getAdmin())
+        .tokenVersion(user.getTokenVersion())
+        .build();
+  }
+}
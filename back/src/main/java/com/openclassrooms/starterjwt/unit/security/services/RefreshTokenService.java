@@ -0,0 +1,154 @@
+package com.openclassrooms.starterjwt.unit.security.services;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.UUID;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.openclassrooms.starterjwt.repository.RefreshTokenRepository;
+import com.openclassrooms.starterjwt.unit.models.RefreshToken;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Issues and rotates refresh tokens; presenting a consumed token again revokes its whole family.
+ */
+@Component
+public class RefreshTokenService {
+  private static final Logger logger = LoggerFactory.getLogger(RefreshTokenService.class);
+
+  private static final int TOKEN_BYTES = 32;
+
+  private final RefreshTokenRepository refreshTokenRepository;
+
+  private final long refreshExpirationMs;
+
+  private final SecureRandom random = new SecureRandom();
+
+  private final MeterRegistry meterRegistry;
+
+  public RefreshTokenService(RefreshTokenRepository refreshTokenRepository,
+      @Value("${oc.app.refreshExpirationMs:604800000}") long refreshExpirationMs,
+      MeterRegistry meterRegistry) {
+    this.refreshTokenRepository = refreshTokenRepository;
+    this.refreshExpirationMs = refreshExpirationMs;
+    this.meterRegistry = meterRegistry;
+  }
+
+  /**
+   * Starts a new family for {@code userId}, i.e. a new login.
+   *
+   * @return the refresh token to hand to the client
+   */
+  public String issue(Long userId) {
+    return issue(userId, UUID.randomUUID().toString());
+  }
+
+  /**
+   * Consumes {@code refreshToken} and issues the next one of its family.
+   *
+   * @return the user and the new refresh token, or {@code null} when the token is unknown, expired, revoked
+   *     or was already used
+   */
+  public Rotation rotate(String refreshToken) {
+    RefreshToken stored = this.refreshTokenRepository.findByTokenHash(hash(refreshToken)).orElse(null);
+    LocalDateTime now = LocalDateTime.now();
+    if (stored == null) {
+      return reject("unknown");
+    }
+    if (stored.getRevokedAt() != null) {
+      return reject("revoked");
+    }
+    if (!stored.getExpiresAt().isAfter(now)) {
+      return reject("expired");
+    }
+    if (stored.getUsedAt() != null || this.refreshTokenRepository.markUsed(stored.getId(), now) == 0) {
+      this.refreshTokenRepository.revokeFamily(stored.getFamilyId(), now);
+      logger.warn("Refresh token reused, family {} of user {} revoked", stored.getFamilyId(), stored.getUserId());
+      return reject("reused");
+    }
+
+    count("rotated");
+    return new Rotation(stored.getUserId(), issue(stored.getUserId(), stored.getFamilyId()));
+  }
+
+  /**
+   * Revokes the family of {@code refreshToken} (logout); unknown tokens are ignored.
+   */
+  public void revoke(String refreshToken) {
+    this.refreshTokenRepository.findByTokenHash(hash(refreshToken))
+        .ifPresent(stored -> this.refreshTokenRepository.revokeFamily(stored.getFamilyId(), LocalDateTime.now()));
+  }
+
+  /**
+   * Revokes every family of {@code userId} (log out everywhere).
+   */
+  public void revokeAll(Long userId) {
+    this.refreshTokenRepository.revokeUser(userId, LocalDateTime.now());
+  }
+
+  /**
+   * Used tokens are kept until they expire, so that their reuse is still detected.
+   */
+  @Scheduled(fixedDelayString = "${oc.app.refresh.pruneMs:3600000}", initialDelayString = "${oc.app.refresh.pruneMs:3600000}")
+  public void prune() {
+    int pruned = this.refreshTokenRepository.deleteExpired(LocalDateTime.now());
+    logger.debug("{} expired refresh tokens pruned", pruned);
+  }
+
+  private String issue(Long userId, String familyId) {
+    byte[] bytes = new byte[TOKEN_BYTES];
+    this.random.nextBytes(bytes);
+    String refreshToken = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+
+    LocalDateTime now = LocalDateTime.now();
+    this.refreshTokenRepository.save(RefreshToken.builder()
+        .tokenHash(hash(refreshToken))
+        .familyId(familyId)
+        .userId(userId)
+        .createdAt(now)
+        .expiresAt(now.plus(Duration.ofMillis(this.refreshExpirationMs)))
+        .build());
+    return refreshToken;
+  }
+
+  private Rotation reject(String reason) {
+    count(reason);
+    return null;
+  }
+
+  private void count(String result) {
+    Counter.builder("auth.refresh").tag("result", result).register(this.meterRegistry).increment();
+  }
+
+  static String hash(String refreshToken) {
+    try {
+      byte[] hash = MessageDigest.getInstance("SHA-256").digest(refreshToken.getBytes(StandardCharsets.UTF_8));
+      return String.format("%064x", new BigInteger(1, hash));
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  @Getter
+  @AllArgsConstructor
+  public static class Rotation {
+    private final Long userId;
+
+    private final String refreshToken;
+  }
+}
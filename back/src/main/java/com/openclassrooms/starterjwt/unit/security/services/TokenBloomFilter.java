@@ -0,0 +1,108 @@
+package com.openclassrooms.starterjwt.unit.security.services;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-size, thread-safe Bloom filter over token ids.
+ */
+public class TokenBloomFilter {
+  private final AtomicLongArray bits;
+
+  private final long bitCount;
+
+  private final int hashCount;
+
+  private final AtomicLong setBits = new AtomicLong();
+
+  /**
+   * @param expectedEntries number of ids at which the false positive rate reaches {@code falsePositiveRate}
+   */
+  public TokenBloomFilter(int expectedEntries, double falsePositiveRate) {
+    if (expectedEntries <= 0 || falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+      throw new IllegalArgumentException("expectedEntries must be positive and falsePositiveRate in ]0, 1[");
+    }
+    double ln2 = Math.log(2);
+    long optimalBits = (long) Math.ceil(-expectedEntries * Math.log(falsePositiveRate) / (ln2 * ln2));
+    this.bits = new AtomicLongArray((int) ((optimalBits + 63) / 64));
+    this.bitCount = this.bits.length() * 64L;
+    this.hashCount = Math.max(1, (int) Math.round((double) this.bitCount / expectedEntries * ln2));
+  }
+
+  public void put(String id) {
+    long hash = hash(id);
+    int h1 = (int) hash;
+    int h2 = (int) (hash >>> 32);
+    for (int i = 1; i <= this.hashCount; i++) {
+      long index = Integer.toUnsignedLong(h1 + i * h2) % this.bitCount;
+      if (set(index)) {
+        this.setBits.incrementAndGet();
+      }
+    }
+  }
+
+  public boolean mightContain(String id) {
+    long hash = hash(id);
+    int h1 = (int) hash;
+    int h2 = (int) (hash >>> 32);
+    for (int i = 1; i <= this.hashCount; i++) {
+      long index = Integer.toUnsignedLong(h1 + i * h2) % this.bitCount;
+      if ((this.bits.get((int) (index >>> 6)) & (1L << index)) == 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return the share of bits set, from 0 (empty) to 1 (every lookup is a false positive)
+   */
+  public double saturation() {
+    return (double) this.setBits.get() / this.bitCount;
+  }
+
+  /**
+   * @return the false positive rate at the current saturation
+   */
+  public double expectedFalsePositiveRate() {
+    return Math.pow(saturation(), this.hashCount);
+  }
+
+  long bitSize() {
+    return this.bitCount;
+  }
+
+  int hashCount() {
+    return this.hashCount;
+  }
+
+  // true when this call flipped the bit
+  private boolean set(long index) {
+    int word = (int) (index >>> 6);
+    long mask = 1L << index;
+    long current;
+    do {
+      current = this.bits.get(word);
+      if ((current & mask) != 0) {
+        return false;
+      }
+    } while (!this.bits.compareAndSet(word, current, current | mask));
+    return true;
+  }
+
+  // 64-bit FNV-1a, finalized with the MurmurHash3 mixer so both halves are usable as independent hashes.
+  private static long hash(String id) {
+    long hash = 0xcbf29ce484222325L;
+    for (byte b : id.getBytes(StandardCharsets.UTF_8)) {
+      hash ^= b;
+      hash *= 0x100000001b3L;
+    }
+    hash ^= hash >>> 33;
+    hash *= 0xff51afd7ed558ccdL;
+    hash ^= hash >>> 33;
+    hash *= 0xc4ceb9fe1a85ec53L;
+    hash ^= hash >>> 33;
+    return hash;
+  }
+}
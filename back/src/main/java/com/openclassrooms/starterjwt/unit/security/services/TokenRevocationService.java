@@ -0,0 +1,138 @@
+package com.openclassrooms.starterjwt.unit.security.services;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Date;
+
+import javax.annotation.PostConstruct;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.openclassrooms.starterjwt.repository.RevokedTokenRepository;
+import com.openclassrooms.starterjwt.unit.models.RevokedToken;
+import com.openclassrooms.starterjwt.unit.security.jwt.JwtUtils;
+
+import io.jsonwebtoken.Claims;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Tokens revoked before their expiration, stored in REVOKED_TOKENS; only the positives of a
+ * {@link TokenBloomFilter} are looked up in the table.
+ */
+@Component
+public class TokenRevocationService {
+  private static final Logger logger = LoggerFactory.getLogger(TokenRevocationService.class);
+
+  private static final String USER_KEY_PREFIX = "user:";
+
+  private final RevokedTokenRepository revokedTokenRepository;
+
+  private final int expectedEntries;
+
+  private final double falsePositiveRate;
+
+  private final long jwtExpirationMs;
+
+  private final Counter negatives;
+
+  private final Counter falsePositives;
+
+  private final Counter revoked;
+
+  private volatile TokenBloomFilter filter;
+
+  public TokenRevocationService(RevokedTokenRepository revokedTokenRepository,
+      @Value("${oc.app.revocation.expectedEntries:100000}") int expectedEntries,
+      @Value("${oc.app.revocation.falsePositiveRate:0.001}") double falsePositiveRate,
+      @Value("${oc.app.jwtExpirationMs}") long jwtExpirationMs,
+      MeterRegistry meterRegistry) {
+    this.revokedTokenRepository = revokedTokenRepository;
+    this.expectedEntries = expectedEntries;
+    this.falsePositiveRate = falsePositiveRate;
+    this.jwtExpirationMs = jwtExpirationMs;
+    this.filter = new TokenBloomFilter(expectedEntries, falsePositiveRate);
+
+    this.negatives = checks(meterRegistry, "negative");
+    this.falsePositives = checks(meterRegistry, "false_positive");
+    this.revoked = checks(meterRegistry, "revoked");
+    Gauge.builder("auth.revocation.filter.saturation", this, service -> service.filter.saturation())
+        .register(meterRegistry);
+    Gauge.builder("auth.revocation.filter.fpp", this, service -> service.filter.expectedFalsePositiveRate())
+        .register(meterRegistry);
+  }
+
+  private static Counter checks(MeterRegistry meterRegistry, String result) {
+    return Counter.builder("auth.revocation.checks").tag("result", result).register(meterRegistry);
+  }
+
+  /**
+   * @return whether the token itself, or every token of its user, was revoked
+   */
+  public boolean isRevoked(Claims claims) {
+    Long userId = claims.get(JwtUtils.CLAIM_ID, Long.class);
+    return isRevoked(claims.getId()) || (userId != null && isRevoked(USER_KEY_PREFIX + userId));
+  }
+
+  private boolean isRevoked(String jti) {
+    if (jti == null || !this.filter.mightContain(jti)) {
+      this.negatives.increment();
+      return false;
+    }
+    if (this.revokedTokenRepository.existsById(jti)) {
+      this.revoked.increment();
+      return true;
+    }
+    this.falsePositives.increment();
+    return false;
+  }
+
+  /**
+   * Revokes a single token until {@code expiration}, after which it is rejected anyway.
+   */
+  public synchronized void revoke(String jti, Long userId, Date expiration) {
+    LocalDateTime expiresAt = expiration != null
+        ? LocalDateTime.ofInstant(expiration.toInstant(), ZoneId.systemDefault())
+        : LocalDateTime.now().plus(Duration.ofMillis(this.jwtExpirationMs));
+    save(jti, userId, expiresAt);
+  }
+
+  /**
+   * Revokes every token issued so far to {@code userId}; none of them outlives {@code oc.app.jwtExpirationMs}.
+   */
+  public synchronized void revokeUser(Long userId) {
+    save(USER_KEY_PREFIX + userId, userId, LocalDateTime.now().plus(Duration.ofMillis(this.jwtExpirationMs)));
+  }
+
+  private void save(String jti, Long userId, LocalDateTime expiresAt) {
+    this.revokedTokenRepository.save(RevokedToken.builder()
+        .jti(jti)
+        .userId(userId)
+        .expiresAt(expiresAt)
+        .revokedAt(LocalDateTime.now())
+        .build());
+    this.filter.put(jti);
+  }
+
+  /**
+   * Prunes the expired rows and rebuilds the filter, which also picks up the revocations of other instances.
+   */
+  @PostConstruct
+  @Scheduled(fixedDelayString = "${oc.app.revocation.refreshMs:60000}",
+      initialDelayString = "${oc.app.revocation.refreshMs:60000}")
+  public synchronized void refresh() {
+    LocalDateTime now = LocalDateTime.now();
+    int pruned = this.revokedTokenRepository.deleteExpired(now);
+
+    TokenBloomFilter rebuilt = new TokenBloomFilter(this.expectedEntries, this.falsePositiveRate);
+    this.revokedTokenRepository.findActiveJtis(now).forEach(rebuilt::put);
+    this.filter = rebuilt;
+    logger.debug("Revocation filter rebuilt, {} expired entries pruned, saturation {}", pruned, rebuilt.saturation());
+  }
+}
@@ -0,0 +1,53 @@
+package com.openclassrooms.starterjwt.unit.security.services;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.stereotype.Component;
+
+import com.openclassrooms.starterjwt.repository.UserRepository;
+
+/**
+ * Token version of the users whose tokens were invalidated; users absent from the map are at version 0.
+ */
+@Component
+public class TokenVersionRegistry {
+  private final UserRepository userRepository;
+
+  private final Map<Long, Integer> versions = new ConcurrentHashMap<>();
+
+  public TokenVersionRegistry(UserRepository userRepository) {
+    this.userRepository = userRepository;
+  }
+
+  @PostConstruct
+  void load() {
+    this.userRepository.findBumpedTokenVersions()
+        .forEach(version -> this.versions.put(version.getId(), version.getTokenVersion()));
+  }
+
+  /**
+   * @return whether a token issued with {@code tokenVersion} still reflects the user
+   */
+  public boolean isCurrent(Long userId, int tokenVersion) {
+    return tokenVersion >= this.versions.getOrDefault(userId, 0);
+  }
+
+  /**
+   * Invalidates the tokens issued so far to {@code userId}, e.g. when it logs out everywhere.
+   */
+  public void bump(Long userId) {
+    this.userRepository.incrementTokenVersion(userId);
+    this.userRepository.findTokenVersionById(userId)
+        .ifPresent(version -> this.versions.merge(userId, version, Math::max));
+  }
+
+  /**
+   * The user is gone: none of its tokens may be trusted without checking USERS.
+   */
+  public void revoke(Long userId) {
+    this.versions.put(userId, Integer.MAX_VALUE);
+  }
+}
@@ -5,6 +5,7 @@ import java.util.HashSet;
 import java.util.Objects;
 
 import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
@@ -31,9 +32,21 @@ public class UserDetailsImpl implements UserDetails {
 
   @JsonIgnore
   private String password;  
+
+  /**
+   * {@code User.tokenVersion} when the principal was loaded or its token issued.
+   */
+  @JsonIgnore
+  private int tokenVersion;
   
+  public static final String ROLE_ADMIN = "ROLE_ADMIN";
+
   public Collection<? extends GrantedAuthority> getAuthorities() {        
-      return new HashSet<GrantedAuthority>();
+      HashSet<GrantedAuthority> authorities = new HashSet<GrantedAuthority>();
+      if (Boolean.TRUE.equals(admin)) {
+        authorities.add(new SimpleGrantedAuthority(ROLE_ADMIN));
+      }
+      return authorities;
   }
 
   @Override
@@ -1,6 +1,7 @@
 package com.openclassrooms.starterjwt.unit.security.services;
 
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
@@ -10,11 +11,14 @@ import com.openclassrooms.starterjwt.unit.models.User;
 import com.openclassrooms.starterjwt.repository.UserRepository;
 
 @Service
-public class UserDetailsServiceImpl implements UserDetailsService {
+public class UserDetailsServiceImpl implements UserDetailsService, UserDetailsPasswordService {
   UserRepository userRepository;
 
-  UserDetailsServiceImpl(UserRepository userRepository) {
+  PrincipalCache principalCache;
+
+  UserDetailsServiceImpl(UserRepository userRepository, PrincipalCache principalCache) {
     this.userRepository = userRepository;
+    this.principalCache = principalCache;
   }
 
   @Override
@@ -23,14 +27,46 @@ public class UserDetailsServiceImpl implements UserDetailsService {
     User user = userRepository.findByEmail(username)
         .orElseThrow(() -> new UsernameNotFoundException("User Not Found with email: " + username));
 
+    return toUserDetails(user);
+  }
+
+  /**
+   * The principal of a refreshed session, read again so the new access token reflects the current account.
+   */
+  @Transactional
+  public UserDetailsImpl loadUserById(Long id) throws UsernameNotFoundException {
+    User user = userRepository.findById(id)
+        .orElseThrow(() -> new UsernameNotFoundException("User Not Found with id: " + id));
+
+    return toUserDetails(user);
+  }
+
+  /**
+   * Called by the authentication provider after a successful login when the stored hash does not use the
+   * current encoding (see {@link CalibratedBCryptPasswordEncoder#upgradeEncoding(String)}).
+   */
+  @Override
+  @Transactional
+  public UserDetails updatePassword(UserDetails userDetails, String newPassword) {
+    User user = userRepository.findByEmail(userDetails.getUsername())
+        .orElseThrow(() -> new UsernameNotFoundException("User Not Found with email: " + userDetails.getUsername()));
+    user.setPassword(newPassword);
+    userRepository.save(user);
+    principalCache.evict(user.getEmail());
+
+    return toUserDetails(user);
+  }
+
+  private static UserDetailsImpl toUserDetails(User user) {
     return UserDetailsImpl
             .builder()
             .id(user.getId())
             .username(user.getEmail())
             .lastName(user.getLastName())
             .firstName(user.getFirstName())
+            .admin(user.isAdmin())
             .password(user.getPassword())
+            .tokenVersion(user.getTokenVersion())
             .build();
   }
-
 }
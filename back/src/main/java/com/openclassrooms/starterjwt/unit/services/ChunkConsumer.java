@@ -0,0 +1,34 @@
+package com.openclassrooms.starterjwt.unit.services;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Receives the rows of a database cursor a bounded batch at a time, typically to write them to a response.
+ */
+@FunctionalInterface
+public interface ChunkConsumer<T> {
+
+    void accept(List<T> chunk) throws IOException;
+
+    /**
+     * Feeds {@code stream} to {@code consumer} in chunks of at most {@code chunkSize} elements.
+     */
+    static <T> void drain(Stream<T> stream, int chunkSize, ChunkConsumer<T> consumer) throws IOException {
+        List<T> chunk = new ArrayList<>(chunkSize);
+        Iterator<T> iterator = stream.iterator();
+        while (iterator.hasNext()) {
+            chunk.add(iterator.next());
+            if (chunk.size() == chunkSize) {
+                consumer.accept(chunk);
+                chunk = new ArrayList<>(chunkSize);
+            }
+        }
+        if (!chunk.isEmpty()) {
+            consumer.accept(chunk);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.openclassrooms.starterjwt.unit.services;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * One record of a bulk import body: the parsed value, or why it could not be parsed.
+ */
+@Getter
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public class ImportRow<T> {
+    /**
+     * 1-based position of the record in the body, CSV header excluded.
+     */
+    private final long row;
+
+    private final T value;
+
+    private final String error;
+
+    public static <T> ImportRow<T> of(long row, T value) {
+        return new ImportRow<>(row, value, null);
+    }
+
+    public static <T> ImportRow<T> failed(long row, String error) {
+        return new ImportRow<>(row, null, error);
+    }
+
+    public boolean isFailed() {
+        return this.error != null;
+    }
+}
@@ -0,0 +1,6 @@
+package com.openclassrooms.starterjwt.unit.services;
+
+public enum Participation {
+    BOOKED,
+    WAITLISTED
+}
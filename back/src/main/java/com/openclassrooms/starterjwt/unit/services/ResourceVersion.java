@@ -0,0 +1,63 @@
+package com.openclassrooms.starterjwt.unit.services;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Collection;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * ETag and Last-Modified of a resource for conditional GETs, computed without loading the resource.
+ */
+@Getter
+@ToString
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public class ResourceVersion {
+    private final String etag;
+
+    private final LocalDateTime lastModified;
+
+    public static ResourceVersion ofEntity(String type, Long id, LocalDateTime updatedAt) {
+        return new ResourceVersion(type + "-" + id + "-" + toMillis(updatedAt), updatedAt);
+    }
+
+    public static ResourceVersion ofEntity(String type, Long id, long revision, LocalDateTime updatedAt) {
+        return new ResourceVersion(type + "-" + id + "-r" + revision, updatedAt);
+    }
+
+    public static ResourceVersion ofCollection(String type, long count, Long maxId, LocalDateTime lastModified) {
+        return new ResourceVersion(type + "-" + count + "-" + (maxId != null ? maxId : 0) + "-" + toMillis(lastModified), lastModified);
+    }
+
+    /**
+     * @param revisions sum of the revisions of the rows, which grows with every update
+     */
+    public static ResourceVersion ofCollection(String type, long count, Long maxId, Long revisions, LocalDateTime lastModified) {
+        return new ResourceVersion(type + "-" + count + "-" + (maxId != null ? maxId : 0) + "-r" + (revisions != null ? revisions : 0),
+                lastModified);
+    }
+
+    public static <T> ResourceVersion ofCollection(String type, Collection<T> items,
+                                                   Function<T, Long> id, Function<T, LocalDateTime> updatedAt) {
+        Long maxId = items.stream().map(id).filter(Objects::nonNull).max(Long::compare).orElse(null);
+        LocalDateTime lastModified = items.stream().map(updatedAt).filter(Objects::nonNull)
+                .max(LocalDateTime::compareTo).orElse(null);
+        return ofCollection(type, items.size(), maxId, lastModified);
+    }
+
+    /**
+     * @return epoch millis of {@link #getLastModified()}, -1 when unknown (no Last-Modified header)
+     */
+    public long getLastModifiedMillis() {
+        return this.lastModified != null ? toMillis(this.lastModified) : -1;
+    }
+
+    private static long toMillis(LocalDateTime dateTime) {
+        return dateTime != null ? dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() : 0;
+    }
+}
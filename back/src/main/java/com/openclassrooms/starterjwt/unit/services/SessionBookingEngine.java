@@ -0,0 +1,190 @@
+package com.openclassrooms.starterjwt.unit.services;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntSupplier;
+
+/**
+ * Seat counters, seeded from PARTICIPATE, and FIFO waitlists of capacity-limited sessions.
+ * Both live in this JVM only: the application must run as a single node, and waitlists are lost on restart.
+ */
+@Component
+public class SessionBookingEngine {
+    private final ConcurrentMap<Long, Seats> bookedSeats = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<Long, Waitlist> waitlists = new ConcurrentHashMap<>();
+
+    /**
+     * @param capacity           seats of the session, {@code null} when unlimited
+     * @param bookedInDatabase   current PARTICIPATE count, only called when the counter is not seeded yet
+     * @return true when a seat was reserved; the caller must {@link #confirm} the reservation once the
+     *     PARTICIPATE row is inserted, or {@link #release} it if the booking fails
+     */
+    public boolean tryReserve(Long sessionId, Integer capacity, IntSupplier bookedInDatabase) {
+        if (capacity == null) {
+            return true;
+        }
+
+        Seats seats = this.bookedSeats.get(sessionId);
+        if (seats == null) {
+            // Seed outside of computeIfAbsent so the database round trip never holds a map bin lock.
+            Seats seeded = new Seats(bookedInDatabase.getAsInt());
+            Seats existing = this.bookedSeats.putIfAbsent(sessionId, seeded);
+            seats = existing == null ? seeded : existing;
+        }
+
+        long state;
+        do {
+            state = seats.state.get();
+            if (taken(state) >= capacity) {
+                return false;
+            }
+        } while (!seats.state.compareAndSet(state, state(taken(state) + 1, pending(state) + 1)));
+        return true;
+    }
+
+    /**
+     * The reserved seat is now booked in PARTICIPATE.
+     */
+    public void confirm(Long sessionId) {
+        Seats seats = this.bookedSeats.get(sessionId);
+        if (seats != null) {
+            // Counted before the reservation stops being pending, see resync().
+            seats.confirmed.incrementAndGet();
+            seats.state.updateAndGet(state -> state(taken(state), Math.max(0, pending(state) - 1)));
+        }
+    }
+
+    /**
+     * Gives back a reserved seat whose booking failed.
+     */
+    public void release(Long sessionId) {
+        Seats seats = this.bookedSeats.get(sessionId);
+        if (seats != null) {
+            seats.state.updateAndGet(state -> {
+                int pending = Math.max(0, pending(state) - 1);
+                return state(Math.max(pending, taken(state) - 1), pending);
+            });
+        }
+    }
+
+    /**
+     * Adds {@code seats} (possibly negative) to the booked seats, e.g. when a booking is cancelled.
+     */
+    public void adjust(Long sessionId, int seats) {
+        Seats booked = this.bookedSeats.get(sessionId);
+        if (booked != null) {
+            booked.state.updateAndGet(state -> state(Math.max(pending(state), taken(state) + seats), pending(state)));
+        }
+    }
+
+    /**
+     * @return false when the user was already waiting for this session
+     */
+    public boolean enqueue(Long sessionId, Long userId) {
+        return this.waitlists.computeIfAbsent(sessionId, id -> new Waitlist()).add(userId);
+    }
+
+    public boolean hasWaiting(Long sessionId) {
+        Waitlist waitlist = this.waitlists.get(sessionId);
+        return waitlist != null && !waitlist.isEmpty();
+    }
+
+    /**
+     * Removes and returns the longest waiting user, or {@code null} when nobody is waiting.
+     */
+    public Long nextWaiting(Long sessionId) {
+        Waitlist waitlist = this.waitlists.get(sessionId);
+        return waitlist == null ? null : waitlist.poll();
+    }
+
+    public boolean leaveWaitlist(Long sessionId, Long userId) {
+        Waitlist waitlist = this.waitlists.get(sessionId);
+        return waitlist != null && waitlist.remove(userId);
+    }
+
+    /**
+     * Resets the seat counter to the PARTICIPATE count plus the reservations still in flight. Reservations
+     * confirmed while the database is read are counted too, so the counter never falls below the seats actually
+     * booked; it can only over-count a booking whose row was inserted just before the read.
+     *
+     * @return the seats added to the counter, to {@link #adjust} back if the caller rolls back
+     */
+    public int resync(Long sessionId, IntSupplier bookedInDatabase) {
+        Seats seats = this.bookedSeats.get(sessionId);
+        if (seats == null) {
+            return 0;
+        }
+
+        long confirmedBefore = seats.confirmed.get();
+        int booked = bookedInDatabase.getAsInt();
+        long state;
+        int taken;
+        do {
+            state = seats.state.get();
+            taken = booked + pending(state) + (int) (seats.confirmed.get() - confirmedBefore);
+        } while (!seats.state.compareAndSet(state, state(taken, pending(state))));
+        return taken - taken(state);
+    }
+
+    public void forget(Long sessionId) {
+        this.bookedSeats.remove(sessionId);
+        this.waitlists.remove(sessionId);
+    }
+
+    private static long state(int taken, int pending) {
+        return ((long) taken << 32) | pending;
+    }
+
+    private static int taken(long state) {
+        return (int) (state >>> 32);
+    }
+
+    private static int pending(long state) {
+        return (int) state;
+    }
+
+    private static final class Seats {
+        // Seats taken in the high half, reservations neither confirmed nor released in the low half.
+        private final AtomicLong state;
+
+        private final AtomicLong confirmed = new AtomicLong();
+
+        Seats(int booked) {
+            this.state = new AtomicLong(state(booked, 0));
+        }
+    }
+
+    // FIFO with O(1) removal. Only full sessions have waiting users, so a monitor is enough.
+    private static final class Waitlist {
+        private final Set<Long> members = new LinkedHashSet<>();
+
+        synchronized boolean add(Long userId) {
+            return this.members.add(userId);
+        }
+
+        synchronized Long poll() {
+            Iterator<Long> iterator = this.members.iterator();
+            if (!iterator.hasNext()) {
+                return null;
+            }
+            Long userId = iterator.next();
+            iterator.remove();
+            return userId;
+        }
+
+        synchronized boolean remove(Long userId) {
+            return this.members.remove(userId);
+        }
+
+        synchronized boolean isEmpty() {
+            return this.members.isEmpty();
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.openclassrooms.starterjwt.unit.services;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Outcome of a bulk session import: how many rows were inserted and rejected, and why the first ones were rejected.
+ */
+@Getter
+public class SessionImportReport {
+    private long imported;
+
+    private long rejected;
+
+    private final List<RowError> errors = new ArrayList<>();
+
+    @Getter
+    @AllArgsConstructor
+    public static class RowError {
+        private final long row;
+
+        private final String message;
+    }
+
+    void imported(int count) {
+        this.imported += count;
+    }
+
+    void reject(long row, String message, int maxErrors) {
+        this.rejected++;
+        if (this.errors.size() < maxErrors) {
+            this.errors.add(new RowError(row, message));
+        }
+    }
+}
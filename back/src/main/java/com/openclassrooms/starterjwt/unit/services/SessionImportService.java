@@ -0,0 +1,120 @@
+package com.openclassrooms.starterjwt.unit.services;
+
+import com.openclassrooms.starterjwt.dto.SessionDto;
+import com.openclassrooms.starterjwt.repository.TeacherRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Inserts imported sessions with JDBC batches, one transaction per batch. Participants are not imported.
+ */
+@Service
+public class SessionImportService {
+    static final String INSERT = "INSERT INTO SESSIONS (name, description, date, teacher_id, capacity, created_at, updated_at)"
+            + " VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final TeacherRepository teacherRepository;
+
+    private final Validator validator;
+
+    @Value("${oc.app.session.import.batchSize:1000}")
+    private int batchSize = 1000;
+
+    @Value("${oc.app.session.import.maxErrors:100}")
+    private int maxErrors = 100;
+
+    public SessionImportService(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                                TeacherRepository teacherRepository, Validator validator) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.teacherRepository = teacherRepository;
+        this.validator = validator;
+    }
+
+    public SessionImportReport importSessions(Iterator<ImportRow<SessionDto>> rows) {
+        Set<Long> teacherIds = new HashSet<>(this.teacherRepository.findAllIds());
+        SessionImportReport report = new SessionImportReport();
+        List<ImportRow<SessionDto>> batch = new ArrayList<>(this.batchSize);
+
+        while (rows.hasNext()) {
+            ImportRow<SessionDto> row = rows.next();
+            String error = row.isFailed() ? row.getError() : validate(row.getValue(), teacherIds);
+            if (error != null) {
+                report.reject(row.getRow(), error, this.maxErrors);
+                continue;
+            }
+
+            batch.add(row);
+            if (batch.size() == this.batchSize) {
+                insert(batch, report);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            insert(batch, report);
+        }
+        return report;
+    }
+
+    private String validate(SessionDto session, Set<Long> teacherIds) {
+        Set<ConstraintViolation<SessionDto>> violations = this.validator.validate(session);
+        if (!violations.isEmpty()) {
+            return violations.stream()
+                    .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                    .sorted()
+                    .collect(Collectors.joining(", "));
+        }
+        if (!teacherIds.contains(session.getTeacher_id())) {
+            return "teacher_id: unknown teacher " + session.getTeacher_id();
+        }
+        return null;
+    }
+
+    private void insert(List<ImportRow<SessionDto>> batch, SessionImportReport report) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        try {
+            this.transactionTemplate.executeWithoutResult(status ->
+                    this.jdbcTemplate.batchUpdate(INSERT, batch, batch.size(), (ps, row) -> bind(ps, row.getValue(), now)));
+            report.imported(batch.size());
+        } catch (DataAccessException e) {
+            // The batch was rolled back as a whole: insert its rows one by one to find those the database refuses.
+            for (ImportRow<SessionDto> row : batch) {
+                try {
+                    this.jdbcTemplate.update(INSERT, ps -> bind(ps, row.getValue(), now));
+                    report.imported(1);
+                } catch (DataAccessException rowError) {
+                    report.reject(row.getRow(), NestedExceptionUtils.getMostSpecificCause(rowError).getMessage(), this.maxErrors);
+                }
+            }
+        }
+    }
+
+    private static void bind(PreparedStatement ps, SessionDto session, Timestamp now) throws SQLException {
+        ps.setString(1, session.getName());
+        ps.setString(2, session.getDescription());
+        ps.setTimestamp(3, new Timestamp(session.getDate().getTime()));
+        ps.setLong(4, session.getTeacher_id());
+        ps.setObject(5, session.getCapacity(), Types.INTEGER);
+        ps.setTimestamp(6, now);
+        ps.setTimestamp(7, now);
+    }
+}
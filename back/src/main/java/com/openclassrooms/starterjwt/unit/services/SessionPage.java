@@ -0,0 +1,18 @@
+package com.openclassrooms.starterjwt.unit.services;
+
+import com.openclassrooms.starterjwt.unit.models.SessionSummary;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+@Getter
+@AllArgsConstructor
+public class SessionPage {
+    private final List<SessionSummary> sessions;
+
+    /**
+     * Encoded {@link SessionCursor} of the last session, or {@code null} when there is nothing left to read.
+     */
+    private final String nextCursor;
+}
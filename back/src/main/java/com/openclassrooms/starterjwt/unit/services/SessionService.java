@@ -3,13 +3,20 @@ package com.openclassrooms.starterjwt.unit.services;
 import com.openclassrooms.starterjwt.exception.BadRequestException;
 import com.openclassrooms.starterjwt.exception.NotFoundException;
 import com.openclassrooms.starterjwt.unit.models.Session;
-import com.openclassrooms.starterjwt.unit.models.User;
+import com.openclassrooms.starterjwt.unit.models.SessionSummary;
 import com.openclassrooms.starterjwt.repository.SessionRepository;
 import com.openclassrooms.starterjwt.repository.UserRepository;
+import com.openclassrooms.starterjwt.unit.payload.request.SessionSearchRequest;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
-import java.util.List;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.*;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 public class SessionService {
@@ -17,9 +24,21 @@ public class SessionService {
 
     private final UserRepository userRepository;
 
-    public SessionService(SessionRepository sessionRepository, UserRepository userRepository) {
+    private final SessionBookingEngine bookingEngine;
+
+    @Value("${oc.app.session.defaultPageSize:20}")
+    private int defaultPageSize = 20;
+
+    @Value("${oc.app.session.maxPageSize:100}")
+    private int maxPageSize = 100;
+
+    @Value("${oc.app.stream.chunkSize:500}")
+    private int streamChunkSize = 500;
+
+    public SessionService(SessionRepository sessionRepository, UserRepository userRepository, SessionBookingEngine bookingEngine) {
         this.sessionRepository = sessionRepository;
         this.userRepository = userRepository;
+        this.bookingEngine = bookingEngine;
     }
 
     public Session create(Session session) {
@@ -28,51 +47,202 @@ public class SessionService {
 
     public void delete(Long id) {
         this.sessionRepository.deleteById(id);
+        this.bookingEngine.forget(id);
     }
 
     public List<Session> findAll() {
         return this.sessionRepository.findAll();
     }
 
+    public SessionPage findPage(SessionSearchRequest search) {
+        int size = search.getSize() == null ? this.defaultPageSize : search.getSize();
+        if (size < 1) {
+            throw new BadRequestException();
+        }
+        size = Math.min(size, this.maxPageSize);
+
+        SessionCursor after = search.getCursor() == null ? null : SessionCursor.decode(search.getCursor());
+
+        // One extra row tells us whether another page exists without issuing a count query.
+        List<SessionSummary> sessions = this.sessionRepository.findPage(search, after, size + 1);
+        if (sessions.size() <= size) {
+            return new SessionPage(sessions, null);
+        }
+
+        List<SessionSummary> page = sessions.subList(0, size);
+        return new SessionPage(page, SessionCursor.after(page.get(size - 1)).encode());
+    }
+
+    public List<SessionSummary> findAllSummaries() {
+        return this.sessionRepository.findAllSummaries();
+    }
+
+    /**
+     * Hands every session to {@code consumer} chunk by chunk, read through a database cursor.
+     */
+    @Transactional(readOnly = true)
+    public void streamAllSummaries(ChunkConsumer<SessionSummary> consumer) throws IOException {
+        try (Stream<SessionSummary> sessions = this.sessionRepository.streamAllSummaries()) {
+            ChunkConsumer.drain(sessions, this.streamChunkSize, consumer);
+        }
+    }
+
+    /**
+     * @return the validators of the session, {@code null} when it does not exist
+     */
+    public ResourceVersion getVersion(Long id) {
+        return this.sessionRepository.findVersionById(id)
+                .map(version -> ResourceVersion.ofEntity("session", version.getId(), version.getRevision(), version.getUpdatedAt()))
+                .orElse(null);
+    }
+
+    public ResourceVersion getCollectionVersion() {
+        SessionRepository.SessionsVersion version = this.sessionRepository.findCollectionVersion();
+        return ResourceVersion.ofCollection("sessions", version.getCount(), version.getMaxId(), version.getRevisions(),
+                version.getLastModified());
+    }
+
+    public SessionSummary getSummaryById(Long id) {
+        return this.sessionRepository.findSummaryById(id).orElse(null);
+    }
+
+    /**
+     * Participant ids of each given session; sessions without participants are absent from the map.
+     */
+    public Map<Long, List<Long>> findParticipantIds(List<SessionSummary> sessions) {
+        if (sessions.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        List<Long> sessionIds = sessions.stream().map(SessionSummary::getId).collect(Collectors.toList());
+        Map<Long, List<Long>> participants = new HashMap<>();
+        for (Object[] pair : this.sessionRepository.findParticipantPairs(sessionIds)) {
+            participants.computeIfAbsent(((Number) pair[0]).longValue(), k -> new ArrayList<>())
+                    .add(((Number) pair[1]).longValue());
+        }
+        return participants;
+    }
+
     public Session getById(Long id) {
         return this.sessionRepository.findById(id).orElse(null);
     }
 
+    @Transactional
     public Session update(Long id, Session session) {
         session.setId(id);
-        return this.sessionRepository.save(session);
+        // Flushed so that PARTICIPATE is up to date before the waitlist is promoted.
+        Session updated = this.sessionRepository.saveAndFlush(session);
+        // Locks the session row before PARTICIPATE is counted: concurrent updates and cancellations wait for us.
+        this.sessionRepository.touch(id, LocalDateTime.now());
+        List<Long> promoted = new ArrayList<>();
+        int resynced = 0;
+        try {
+            // The update may rewrite the participant list or the capacity.
+            resynced = this.bookingEngine.resync(id, () -> this.sessionRepository.countParticipants(id));
+            promoteWaitlisted(id, session.getCapacity(), promoted);
+        } catch (RuntimeException e) {
+            rollBackPromotions(id, promoted, -resynced);
+            throw e;
+        }
+        return updated;
     }
 
-    public void participate(Long id, Long userId) {
-        Session session = this.sessionRepository.findById(id).orElse(null);
-        User user = this.userRepository.findById(userId).orElse(null);
-        if (session == null || user == null) {
+    /**
+     * Books the user when a seat is free, otherwise puts them on the session waitlist.
+     */
+    public Participation participate(Long id, Long userId) {
+        SessionRepository.SessionCapacity session = this.sessionRepository.findCapacityById(id).orElse(null);
+        if (session == null || !this.userRepository.existsById(userId)) {
             throw new NotFoundException();
         }
 
-        boolean alreadyParticipate = session.getUsers().stream().anyMatch(o -> o.getId().equals(userId));
-        if(alreadyParticipate) {
-            throw new BadRequestException();
+        if (!this.bookingEngine.tryReserve(id, session.getCapacity(), () -> this.sessionRepository.countParticipants(id))) {
+            if (this.sessionRepository.countParticipation(id, userId) > 0 || !this.bookingEngine.enqueue(id, userId)) {
+                throw new BadRequestException();
+            }
+            return Participation.WAITLISTED;
         }
 
-        session.getUsers().add(user);
-
-        this.sessionRepository.save(session);
+        boolean booked = false;
+        try {
+            this.sessionRepository.addParticipant(id, userId);
+            booked = true;
+        } catch (DataIntegrityViolationException e) {
+            // PARTICIPATE primary key: the user is already booked on this session
+            throw new BadRequestException();
+        } finally {
+            if (booked) {
+                this.bookingEngine.confirm(id);
+            } else {
+                this.bookingEngine.release(id);
+            }
+        }
+        this.sessionRepository.touch(id, LocalDateTime.now());
+        return Participation.BOOKED;
     }
 
+    /**
+     * Cancels a booking (and hands the seat to the first waiting user) or a waitlist entry.
+     */
+    @Transactional
     public void noLongerParticipate(Long id, Long userId) {
-        Session session = this.sessionRepository.findById(id).orElse(null);
+        SessionRepository.SessionCapacity session = this.sessionRepository.findCapacityById(id).orElse(null);
         if (session == null) {
             throw new NotFoundException();
         }
 
-        boolean alreadyParticipate = session.getUsers().stream().anyMatch(o -> o.getId().equals(userId));
-        if(!alreadyParticipate) {
+        if (this.sessionRepository.removeParticipant(id, userId) == 0) {
+            if (this.bookingEngine.leaveWaitlist(id, userId)) {
+                return;
+            }
             throw new BadRequestException();
         }
 
-        session.setUsers(session.getUsers().stream().filter(user -> !user.getId().equals(userId)).collect(Collectors.toList()));
+        this.sessionRepository.touch(id, LocalDateTime.now());
+        List<Long> promoted = new ArrayList<>();
+        this.bookingEngine.adjust(id, -1);
+        try {
+            promoteWaitlisted(id, session.getCapacity(), promoted);
+        } catch (RuntimeException e) {
+            rollBackPromotions(id, promoted, 1);
+            throw e;
+        }
+    }
+
+    /**
+     * Hands every free seat to the waitlist, in order. Promoted users are added to {@code promoted}.
+     */
+    private void promoteWaitlisted(Long id, Integer capacity, List<Long> promoted) {
+        while (this.bookingEngine.hasWaiting(id)
+                && this.bookingEngine.tryReserve(id, capacity, () -> this.sessionRepository.countParticipants(id))) {
+            Long next = this.bookingEngine.nextWaiting(id);
+            if (next == null) {
+                this.bookingEngine.release(id);
+                return;
+            }
+
+            promoted.add(next);
+            int inserted;
+            try {
+                inserted = this.sessionRepository.addParticipantIfAbsent(id, next);
+            } catch (RuntimeException e) {
+                // Kept like the promotions before it: rollBackPromotions gives the seat back.
+                this.bookingEngine.confirm(id);
+                throw e;
+            }
+            if (inserted == 0) {
+                // Booked meanwhile or deleted: give the seat to the next one.
+                promoted.remove(promoted.size() - 1);
+                this.bookingEngine.release(id);
+            } else {
+                this.bookingEngine.confirm(id);
+            }
+        }
+    }
 
-        this.sessionRepository.save(session);
+    // The transaction rolls back: undo the counter changes and put the promoted users back on the waitlist.
+    private void rollBackPromotions(Long id, List<Long> promoted, int seats) {
+        this.bookingEngine.adjust(id, seats - promoted.size());
+        promoted.forEach(userId -> this.bookingEngine.enqueue(id, userId));
     }
 }
@@ -1,24 +1,74 @@
 package com.openclassrooms.starterjwt.unit.services;
 
+import com.openclassrooms.starterjwt.dto.TeacherDto;
+import com.openclassrooms.starterjwt.unit.mapper.TeacherMapper;
 import com.openclassrooms.starterjwt.unit.models.Teacher;
 import com.openclassrooms.starterjwt.repository.TeacherRepository;
+import com.openclassrooms.starterjwt.unit.config.CacheConfig;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.io.IOException;
 import java.util.List;
+import java.util.stream.Stream;
 
 @Service
 public class TeacherService {
     private final TeacherRepository teacherRepository;
 
-    public TeacherService(TeacherRepository teacherRepository) {
+    private final TeacherMapper teacherMapper;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${oc.app.stream.chunkSize:500}")
+    private int streamChunkSize = 500;
+
+    public TeacherService(TeacherRepository teacherRepository, TeacherMapper teacherMapper) {
         this.teacherRepository = teacherRepository;
+        this.teacherMapper = teacherMapper;
+    }
+
+    // The caches are shared between threads: they hold DTOs, never managed entities.
+    @Cacheable(cacheNames = CacheConfig.TEACHER_LIST, key = "'all'")
+    public List<TeacherDto> findAll() {
+        return List.copyOf(this.teacherMapper.toDto(this.teacherRepository.findAll()));
+    }
+
+    /**
+     * Hands every teacher to {@code consumer} chunk by chunk, detaching each chunk once consumed.
+     */
+    @Transactional(readOnly = true)
+    public void streamAll(ChunkConsumer<Teacher> consumer) throws IOException {
+        try (Stream<Teacher> teachers = this.teacherRepository.streamAll()) {
+            ChunkConsumer.drain(teachers, this.streamChunkSize, chunk -> {
+                consumer.accept(chunk);
+                chunk.forEach(this.entityManager::detach);
+            });
+        }
+    }
+
+    @Cacheable(cacheNames = CacheConfig.TEACHERS, key = "#id", unless = "#result == null")
+    public TeacherDto findById(Long id) {
+        return this.teacherRepository.findById(id).map(this.teacherMapper::toDto).orElse(null);
     }
 
-    public List<Teacher> findAll() {
-        return this.teacherRepository.findAll();
+    /**
+     * Lazy reference to an existing teacher, to be set on a session without loading the row.
+     */
+    public Teacher getReference(Long id) {
+        return this.teacherRepository.getById(id);
     }
 
-    public Teacher findById(Long id) {
-        return this.teacherRepository.findById(id).orElse(null);
+    /**
+     * Drops every cached teacher and the cached list, e.g. after TEACHERS was edited in the database.
+     */
+    @CacheEvict(cacheNames = {CacheConfig.TEACHERS, CacheConfig.TEACHER_LIST}, allEntries = true)
+    public void evictCache() {
     }
 }
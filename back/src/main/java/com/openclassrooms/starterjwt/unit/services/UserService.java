@@ -2,21 +2,46 @@ package com.openclassrooms.starterjwt.unit.services;
 
 import com.openclassrooms.starterjwt.unit.models.User;
 import com.openclassrooms.starterjwt.repository.UserRepository;
+import com.openclassrooms.starterjwt.unit.security.services.PrincipalCache;
+import com.openclassrooms.starterjwt.unit.security.services.TokenRevocationService;
+import com.openclassrooms.starterjwt.unit.security.services.TokenVersionRegistry;
 import org.springframework.stereotype.Service;
 
+import java.util.Collection;
+import java.util.List;
+
 @Service
 public class UserService {
     private final UserRepository userRepository;
 
-    public UserService(UserRepository userRepository) {
+    private final PrincipalCache principalCache;
+
+    private final TokenVersionRegistry tokenVersions;
+
+    private final TokenRevocationService tokenRevocations;
+
+    public UserService(UserRepository userRepository, PrincipalCache principalCache,
+                       TokenVersionRegistry tokenVersions, TokenRevocationService tokenRevocations) {
         this.userRepository = userRepository;
+        this.principalCache = principalCache;
+        this.tokenVersions = tokenVersions;
+        this.tokenRevocations = tokenRevocations;
     }
 
     public void delete(Long id) {
+        this.userRepository.findById(id).ifPresent(user -> this.principalCache.evict(user.getEmail()));
         this.userRepository.deleteById(id);
+        // Its tokens must now be checked against USERS, where the account no longer exists,
+        // and stay rejected after a restart, which forgets the in-memory version.
+        this.tokenVersions.revoke(id);
+        this.tokenRevocations.revokeUser(id);
     }
 
     public User findById(Long id) {
         return this.userRepository.findById(id).orElse(null);
     }
+
+    public List<User> findAllById(Collection<Long> ids) {
+        return this.userRepository.findAllById(ids);
+    }
 }
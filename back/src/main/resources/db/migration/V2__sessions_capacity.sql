@@ -0,0 +1,2 @@
+-- Seats of a session; NULL means unlimited.
+ALTER TABLE SESSIONS ADD COLUMN capacity INT;
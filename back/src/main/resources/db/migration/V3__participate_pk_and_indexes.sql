@@ -0,0 +1,23 @@
+-- PARTICIPATE: (session_id, user_id) becomes the primary key. Nothing prevented duplicate rows until now:
+-- they are collapsed first. Rows with a NULL side never matched a session or a user and cannot be kept.
+CREATE TABLE PARTICIPATE_DISTINCT (
+  session_id INT NOT NULL,
+  user_id INT NOT NULL
+);
+INSERT INTO PARTICIPATE_DISTINCT (session_id, user_id)
+SELECT DISTINCT session_id, user_id FROM PARTICIPATE WHERE session_id IS NOT NULL AND user_id IS NOT NULL;
+DELETE FROM PARTICIPATE;
+ALTER TABLE PARTICIPATE MODIFY session_id INT NOT NULL;
+ALTER TABLE PARTICIPATE MODIFY user_id INT NOT NULL;
+ALTER TABLE PARTICIPATE ADD PRIMARY KEY (session_id, user_id);
+INSERT INTO PARTICIPATE (session_id, user_id) SELECT session_id, user_id FROM PARTICIPATE_DISTINCT;
+DROP TABLE PARTICIPATE_DISTINCT;
+
+-- Sessions of a user (user_id first, the PK only serves lookups by session).
+CREATE INDEX idx_participate_user ON PARTICIPATE (user_id, session_id);
+
+-- Keyset pagination of /api/session/page: date > ? OR (date = ? AND id > ?) ORDER BY date, id.
+CREATE INDEX idx_sessions_date_id ON SESSIONS (date, id);
+
+-- Login and sign-up look users up by email; until now only the JPA mapping declared it unique.
+CREATE UNIQUE INDEX uk_users_email ON USERS (email);
@@ -0,0 +1,3 @@
+-- Bumped whenever the claims of already issued tokens (id, admin) can no longer be trusted;
+-- tokens carrying an older version are re-checked against USERS.
+ALTER TABLE USERS ADD COLUMN token_version INT NOT NULL DEFAULT 0;
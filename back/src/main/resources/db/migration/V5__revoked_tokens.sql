@@ -0,0 +1,12 @@
+-- Deny-list of tokens revoked before their expiration (logout, deleted account).
+-- jti is the token id, or "user:<id>" for every token issued to a deleted user.
+-- Rows are pruned once expires_at has passed: the token itself is rejected from then on.
+CREATE TABLE REVOKED_TOKENS (
+  jti VARCHAR(64) NOT NULL,
+  user_id INT,
+  expires_at DATETIME NOT NULL,
+  revoked_at DATETIME NOT NULL,
+  PRIMARY KEY (jti)
+);
+
+CREATE INDEX idx_revoked_tokens_expires_at ON REVOKED_TOKENS (expires_at);
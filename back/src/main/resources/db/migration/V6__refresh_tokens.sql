@@ -0,0 +1,19 @@
+-- Refresh tokens, stored as the SHA-256 of the random value handed to the client.
+-- Every refresh marks the presented token as used (used_at) and issues the next one in the same family;
+-- presenting a used token again revokes the whole family (revoked_at).
+CREATE TABLE REFRESH_TOKENS (
+  id INT PRIMARY KEY AUTO_INCREMENT,
+  token_hash CHAR(64) NOT NULL,
+  family_id VARCHAR(36) NOT NULL,
+  user_id INT NOT NULL,
+  expires_at DATETIME NOT NULL,
+  created_at DATETIME NOT NULL,
+  used_at DATETIME,
+  revoked_at DATETIME
+);
+
+ALTER TABLE REFRESH_TOKENS ADD FOREIGN KEY (user_id) REFERENCES USERS (id) ON DELETE CASCADE;
+
+CREATE UNIQUE INDEX uk_refresh_tokens_hash ON REFRESH_TOKENS (token_hash);
+CREATE INDEX idx_refresh_tokens_family ON REFRESH_TOKENS (family_id);
+CREATE INDEX idx_refresh_tokens_expires_at ON REFRESH_TOKENS (expires_at);
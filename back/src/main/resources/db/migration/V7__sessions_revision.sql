@@ -0,0 +1,3 @@
+-- Incremented on every change of a session or of its participants: the ETag of a session no longer
+-- depends on updated_at, which MySQL stores to the second.
+ALTER TABLE SESSIONS ADD COLUMN revision BIGINT NOT NULL DEFAULT 0;
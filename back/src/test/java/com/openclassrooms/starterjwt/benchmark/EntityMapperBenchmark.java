@@ -0,0 +1,84 @@
+package com.openclassrooms.starterjwt.benchmark;
+
+import com.openclassrooms.starterjwt.dto.TeacherDto;
+import com.openclassrooms.starterjwt.dto.UserDto;
+import com.openclassrooms.starterjwt.unit.mapper.TeacherMapper;
+import com.openclassrooms.starterjwt.unit.mapper.TeacherMapperImpl;
+import com.openclassrooms.starterjwt.unit.mapper.UserMapper;
+import com.openclassrooms.starterjwt.unit.mapper.UserMapperImpl;
+import com.openclassrooms.starterjwt.unit.models.Teacher;
+import com.openclassrooms.starterjwt.unit.models.User;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link TeacherMapper} and {@link UserMapper} list conversions at the same sizes as the session benchmark.
+ *
+ * @see SessionMapperBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EntityMapperBenchmark {
+
+    @Param({"1", "100", "10000"})
+    public int size;
+
+    private final TeacherMapper teacherMapper = new TeacherMapperImpl();
+
+    private final UserMapper userMapper = new UserMapperImpl();
+
+    private List<Teacher> teachers;
+
+    private List<TeacherDto> teacherDtos;
+
+    private List<User> users;
+
+    private List<UserDto> userDtos;
+
+    @Setup
+    public void setUp() {
+        LocalDateTime now = LocalDateTime.now();
+
+        this.teachers = new ArrayList<>(this.size);
+        this.users = new ArrayList<>(this.size);
+        for (long id = 1; id <= this.size; id++) {
+            this.teachers.add(Teacher.builder().id(id).firstName("Teacher").lastName("T" + id).createdAt(now).updatedAt(now).build());
+
+            User user = new User("user" + id + "@studio.com", "Last", "First", "hash", false);
+            user.setId(id);
+            user.setCreatedAt(now);
+            user.setUpdatedAt(now);
+            this.users.add(user);
+        }
+        this.teacherDtos = this.teacherMapper.toDto(this.teachers);
+        this.userDtos = this.userMapper.toDto(this.users);
+    }
+
+    @Benchmark
+    public List<TeacherDto> teacherToDto() {
+        return this.teacherMapper.toDto(this.teachers);
+    }
+
+    @Benchmark
+    public List<Teacher> teacherToEntity() {
+        return this.teacherMapper.toEntity(this.teacherDtos);
+    }
+
+    @Benchmark
+    public List<UserDto> userToDto() {
+        return this.userMapper.toDto(this.users);
+    }
+
+    @Benchmark
+    public List<User> userToEntity() {
+        return this.userMapper.toEntity(this.userDtos);
+    }
+}
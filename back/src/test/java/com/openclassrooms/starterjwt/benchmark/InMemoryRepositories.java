@@ -0,0 +1,69 @@
+package com.openclassrooms.starterjwt.benchmark;
+
+import com.openclassrooms.starterjwt.repository.TeacherRepository;
+import com.openclassrooms.starterjwt.repository.UserRepository;
+import com.openclassrooms.starterjwt.unit.models.Teacher;
+import com.openclassrooms.starterjwt.unit.models.User;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Map-backed repositories for benchmarks, so measurements don't include a database.
+ * Only the lookups used by the code under benchmark are backed; anything else is a benchmark bug.
+ */
+final class InMemoryRepositories {
+
+    private InMemoryRepositories() {
+    }
+
+    static UserRepository users(Collection<User> users) {
+        Map<Long, User> byId = users.stream().collect(Collectors.toMap(User::getId, Function.identity()));
+        Map<String, User> byEmail = users.stream().collect(Collectors.toMap(User::getEmail, Function.identity()));
+
+        Map<String, Function<Object[], Object>> queries = new HashMap<>();
+        queries.put("findByEmail", args -> Optional.ofNullable(byEmail.get((String) args[0])));
+        queries.put("existsByEmail", args -> byEmail.containsKey((String) args[0]));
+        return repository(UserRepository.class, byId, queries);
+    }
+
+    static TeacherRepository teachers(Collection<Teacher> teachers) {
+        Map<Long, Teacher> byId = teachers.stream().collect(Collectors.toMap(Teacher::getId, Function.identity()));
+        return repository(TeacherRepository.class, byId, new HashMap<>());
+    }
+
+    private static <R, E> R repository(Class<R> type, Map<Long, E> byId, Map<String, Function<Object[], Object>> queries) {
+        queries.put("findById", args -> Optional.ofNullable(byId.get((Long) args[0])));
+        queries.put("getById", args -> byId.get((Long) args[0]));
+        queries.put("findAll", args -> new ArrayList<>(byId.values()));
+        queries.put("findAllById", args -> {
+            List<E> found = new ArrayList<>();
+            for (Object id : (Iterable<?>) args[0]) {
+                E entity = byId.get((Long) id);
+                if (entity != null) {
+                    found.add(entity);
+                }
+            }
+            return found;
+        });
+        queries.put("count", args -> (long) byId.size());
+
+        return type.cast(Proxy.newProxyInstance(
+                type.getClassLoader(),
+                new Class<?>[]{type},
+                (proxy, method, args) -> {
+                    Function<Object[], Object> query = queries.get(method.getName());
+                    if (query == null || (method.getName().equals("findAll") && args != null)) {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                    return query.apply(args);
+                }));
+    }
+}
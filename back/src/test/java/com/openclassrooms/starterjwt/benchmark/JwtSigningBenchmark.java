@@ -0,0 +1,130 @@
+package com.openclassrooms.starterjwt.benchmark;
+
+import com.openclassrooms.starterjwt.unit.security.jwt.JwtUtils;
+import com.openclassrooms.starterjwt.unit.security.services.UserDetailsImpl;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.MessageDigest;
+import java.security.Signature;
+import java.security.spec.ECGenParameterSpec;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Verify throughput per signing algorithm, to pick one per deployment.
+ * {@code parseClaims} is the filter path through {@link JwtUtils} with a one-key set and the verified token cache
+ * disabled. jjwt 0.9.1 has no EdDSA, so {@code verifySignature} compares Ed25519 with the others at the JCA level:
+ * one signature check over the same signing input, without parsing.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtSigningBenchmark {
+    private static final UserDetailsImpl USER =
+            new UserDetailsImpl(1L, "yoga@studio.com", "Yoga", "Studio", false, "pwd", 0);
+
+    @State(Scope.Benchmark)
+    public static class Token {
+        @Param({"HS512", "RS256", "ES256"})
+        String alg;
+
+        JwtUtils jwtUtils;
+
+        String token;
+
+        @Setup
+        public void setUp() throws Exception {
+            String key;
+            if (this.alg.startsWith("HS")) {
+                key = "\"secret\": \"" + Base64.getEncoder().encodeToString(new byte[64]) + "\"";
+            } else {
+                KeyPair keyPair = keyPair(this.alg.startsWith("RS") ? "RSA" : "EC");
+                key = "\"privateKey\": \"" + Base64.getEncoder().encodeToString(keyPair.getPrivate().getEncoded())
+                        + "\", \"publicKey\": \"" + Base64.getEncoder().encodeToString(keyPair.getPublic().getEncoded()) + "\"";
+            }
+            Path keys = Files.createTempFile("jwt-keys", ".json");
+            keys.toFile().deleteOnExit();
+            Files.writeString(keys, """
+                    { "active": "k1", "keys": [ { "kid": "k1", "alg": "%s", %s } ] }
+                    """.formatted(this.alg, key));
+
+            this.jwtUtils = new JwtUtils();
+            ReflectionTestUtils.setField(this.jwtUtils, "jwtKeys", keys.toUri().toString());
+            ReflectionTestUtils.setField(this.jwtUtils, "jwtExpirationMs", 86400000);
+            this.token = this.jwtUtils.generateJwtToken(USER);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class RawSignature {
+        @Param({"HmacSHA512", "SHA256withRSA", "SHA256withECDSA", "Ed25519"})
+        String jcaAlg;
+
+        Signature verifier;
+
+        Mac mac;
+
+        byte[] input;
+
+        byte[] signature;
+
+        @Setup
+        public void setUp() throws Exception {
+            this.input = (Base64.getUrlEncoder().withoutPadding().encodeToString("{\"alg\":\"X\"}".getBytes(StandardCharsets.UTF_8))
+                    + "." + Base64.getUrlEncoder().withoutPadding().encodeToString(
+                    "{\"sub\":\"yoga@studio.com\",\"id\":1,\"admin\":false,\"ver\":0}".getBytes(StandardCharsets.UTF_8)))
+                    .getBytes(StandardCharsets.US_ASCII);
+
+            if (this.jcaAlg.startsWith("Hmac")) {
+                this.mac = Mac.getInstance(this.jcaAlg);
+                this.mac.init(new SecretKeySpec(new byte[64], this.jcaAlg));
+                this.signature = this.mac.doFinal(this.input);
+                return;
+            }
+
+            KeyPair keyPair = keyPair(this.jcaAlg.equals("SHA256withRSA") ? "RSA"
+                    : this.jcaAlg.equals("Ed25519") ? "Ed25519" : "EC");
+            Signature signer = Signature.getInstance(this.jcaAlg);
+            signer.initSign(keyPair.getPrivate());
+            signer.update(this.input);
+            this.signature = signer.sign();
+            this.verifier = Signature.getInstance(this.jcaAlg);
+            this.verifier.initVerify(keyPair.getPublic());
+        }
+    }
+
+    private static KeyPair keyPair(String algorithm) throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance(algorithm);
+        if (algorithm.equals("RSA")) {
+            generator.initialize(2048);
+        } else if (algorithm.equals("EC")) {
+            generator.initialize(new ECGenParameterSpec("secp256r1"));
+        }
+        return generator.generateKeyPair();
+    }
+
+    @Benchmark
+    public String parseClaims(Token token) {
+        return token.jwtUtils.parseClaims(token.token).getSubject();
+    }
+
+    @Benchmark
+    public boolean verifySignature(RawSignature raw) throws Exception {
+        if (raw.mac != null) {
+            return MessageDigest.isEqual(raw.mac.doFinal(raw.input), raw.signature);
+        }
+        raw.verifier.update(raw.input);
+        return raw.verifier.verify(raw.signature);
+    }
+}
@@ -0,0 +1,69 @@
+package com.openclassrooms.starterjwt.benchmark;
+
+import com.openclassrooms.starterjwt.unit.security.jwt.JwtUtils;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of authenticating one bearer token.
+ * {@code validateThenExtract} is the former filter path (two full parses), {@code parseClaims} the single parse,
+ * {@code parseClaimsCached} the same call once the token digest has been cached.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtUtilsBenchmark {
+    private static final String SECRET = "openclassrooms";
+
+    private static final int EXPIRATION_MS = 86400000;
+
+    private JwtUtils uncached;
+
+    private JwtUtils cached;
+
+    private String token;
+
+    @Setup
+    public void setUp() {
+        this.uncached = jwtUtils(0);
+        this.cached = jwtUtils(10000);
+        this.token = Jwts.builder()
+                .setSubject("yoga@studio.com")
+                .setIssuedAt(new Date())
+                .setExpiration(new Date(System.currentTimeMillis() + EXPIRATION_MS))
+                .signWith(SignatureAlgorithm.HS512, SECRET)
+                .compact();
+    }
+
+    private static JwtUtils jwtUtils(long cacheSize) {
+        JwtUtils jwtUtils = new JwtUtils();
+        ReflectionTestUtils.setField(jwtUtils, "jwtSecret", SECRET);
+        ReflectionTestUtils.setField(jwtUtils, "jwtExpirationMs", EXPIRATION_MS);
+        ReflectionTestUtils.setField(jwtUtils, "verifiedTokenCacheSize", cacheSize);
+        ReflectionTestUtils.invokeMethod(jwtUtils, "initVerifiedTokenCache");
+        return jwtUtils;
+    }
+
+    @Benchmark
+    public String validateThenExtract() {
+        return this.uncached.validateJwtToken(this.token) ? this.uncached.getUserNameFromJwtToken(this.token) : null;
+    }
+
+    @Benchmark
+    public String parseClaims() {
+        return this.uncached.parseClaims(this.token).getSubject();
+    }
+
+    @Benchmark
+    public String parseClaimsCached() {
+        return this.cached.parseClaims(this.token).getSubject();
+    }
+}
@@ -0,0 +1,175 @@
+package com.openclassrooms.starterjwt.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.openclassrooms.starterjwt.SpringBootSecurityJwtApplication;
+import com.openclassrooms.starterjwt.repository.UserRepository;
+import com.openclassrooms.starterjwt.unit.models.User;
+import org.openjdk.jmh.annotations.*;
+import com.openclassrooms.starterjwt.unit.security.services.RefreshTokenService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.MediaType;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.springframework.security.test.web.servlet.setup.SecurityMockMvcConfigurers.springSecurity;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+/**
+ * Load test of {@code POST /api/auth/refresh}: the whole application (security filter chain, controller,
+ * REFRESH_TOKENS on in-memory H2) with 8 concurrent clients. In {@code refresh} each client rotates its own
+ * family; in {@code refreshSharedFamily} they all present the current token of one family, so rotations race
+ * on the conditional {@code used_at} update and the losers trigger reuse detection.
+ * Use {@code -Djmh.args="-t N"} for another client count.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+@Fork(1)
+public class RefreshTokenBenchmark {
+    private static final String EMAIL = "refresh@studio.com";
+
+    private static final String PASSWORD = "test!1234";
+
+    private ConfigurableApplicationContext context;
+
+    private MockMvc mockMvc;
+
+    private ObjectMapper objectMapper;
+
+    @Setup
+    public void setUp() {
+        this.context = new SpringApplicationBuilder(SpringBootSecurityJwtApplication.class)
+                .profiles("test")
+                .properties("spring.main.banner-mode=off", "logging.level.root=WARN")
+                .run();
+        this.mockMvc = MockMvcBuilders.webAppContextSetup((WebApplicationContext) this.context)
+                .apply(springSecurity())
+                .build();
+        this.objectMapper = this.context.getBean(ObjectMapper.class);
+
+        UserRepository userRepository = this.context.getBean(UserRepository.class);
+        if (!userRepository.existsByEmail(EMAIL)) {
+            userRepository.save(new User(EMAIL, "Refresh", "Load",
+                    this.context.getBean(PasswordEncoder.class).encode(PASSWORD), false));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.context.getBean(MeterRegistry.class).find("auth.refresh").counters().forEach(counter ->
+                System.out.printf("auth.refresh{result=%s}: %.0f%n", counter.getId().getTag("result"), counter.count()));
+        this.context.close();
+    }
+
+    /**
+     * One client: its own login, hence its own family.
+     */
+    @State(Scope.Thread)
+    public static class Client {
+        String refreshToken;
+
+        @Setup
+        public void login(RefreshTokenBenchmark benchmark) throws Exception {
+            this.refreshToken = benchmark.call("/api/auth/login", """
+                    {"email": "%s", "password": "%s"}
+                    """.formatted(EMAIL, PASSWORD));
+        }
+    }
+
+    /**
+     * One family shared by every client. When reuse detection revokes it, the first client to notice starts a
+     * new one, as a login would, but without the password check.
+     */
+    @State(Scope.Benchmark)
+    public static class SharedFamily {
+        final AtomicReference<String> refreshToken = new AtomicReference<>();
+
+        RefreshTokenService refreshTokens;
+
+        Long userId;
+
+        @Setup
+        public void login(RefreshTokenBenchmark benchmark) {
+            this.refreshTokens = benchmark.context.getBean(RefreshTokenService.class);
+            this.userId = benchmark.context.getBean(UserRepository.class).findByEmail(EMAIL).orElseThrow().getId();
+            this.refreshToken.set(this.refreshTokens.issue(this.userId));
+        }
+    }
+
+    /**
+     * Refreshes of a measurement that rotated the token and that were rejected (reuse or revoked family).
+     */
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Outcomes {
+        public long rotated;
+
+        public long rejected;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            this.rotated = 0;
+            this.rejected = 0;
+        }
+    }
+
+    @Benchmark
+    public String refresh(Client client) throws Exception {
+        MvcResult result = postRefresh(client.refreshToken);
+        if (result.getResponse().getStatus() != 200) {
+            throw new IllegalStateException("/api/auth/refresh answered " + result.getResponse().getStatus());
+        }
+        client.refreshToken = refreshToken(result);
+        return client.refreshToken;
+    }
+
+    @Benchmark
+    public void refreshSharedFamily(SharedFamily family, Outcomes outcomes) throws Exception {
+        String presented = family.refreshToken.get();
+        MvcResult result = postRefresh(presented);
+        if (result.getResponse().getStatus() == 200) {
+            outcomes.rotated++;
+            family.refreshToken.compareAndSet(presented, refreshToken(result));
+        } else {
+            outcomes.rejected++;
+            if (presented.equals(family.refreshToken.get())) {
+                family.refreshToken.compareAndSet(presented, family.refreshTokens.issue(family.userId));
+            }
+        }
+    }
+
+    private MvcResult postRefresh(String refreshToken) throws Exception {
+        return this.mockMvc.perform(post("/api/auth/refresh")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                {"refreshToken": "%s"}
+                                """.formatted(refreshToken)))
+                .andReturn();
+    }
+
+    private String call(String path, String json) throws Exception {
+        MvcResult result = this.mockMvc.perform(post(path)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(json))
+                .andReturn();
+        if (result.getResponse().getStatus() != 200) {
+            throw new IllegalStateException(path + " answered " + result.getResponse().getStatus());
+        }
+        return refreshToken(result);
+    }
+
+    private String refreshToken(MvcResult result) throws Exception {
+        return this.objectMapper.readTree(result.getResponse().getContentAsString()).get("refreshToken").textValue();
+    }
+}
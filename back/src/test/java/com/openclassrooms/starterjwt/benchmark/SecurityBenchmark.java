@@ -0,0 +1,193 @@
+package com.openclassrooms.starterjwt.benchmark;
+
+import com.openclassrooms.starterjwt.repository.UserRepository;
+import com.openclassrooms.starterjwt.unit.models.User;
+import com.openclassrooms.starterjwt.unit.security.jwt.AuthTokenFilter;
+import com.openclassrooms.starterjwt.unit.security.jwt.JwtUtils;
+import com.openclassrooms.starterjwt.unit.security.services.CalibratedBCryptPasswordEncoder;
+import com.openclassrooms.starterjwt.unit.security.services.PrincipalCache;
+import com.openclassrooms.starterjwt.unit.security.services.TokenRevocationService;
+import com.openclassrooms.starterjwt.unit.security.services.TokenVersionRegistry;
+import com.openclassrooms.starterjwt.unit.security.services.UserDetailsImpl;
+import com.openclassrooms.starterjwt.unit.security.services.UserDetailsServiceImpl;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.servlet.FilterChain;
+import java.lang.reflect.Constructor;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The request authentication hot path: token issuing and verification, password hashing and a full
+ * {@link AuthTokenFilter} pass against an in-memory user store (no database).
+ * {@code filterColdCaches} disables the verified-token and principal caches, i.e. the cost of a first request.
+ * {@code filterLegacyToken} sends a token without the id/admin/version claims, which is resolved through the
+ * principal cache and the user store instead of the claims.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SecurityBenchmark {
+    private static final String SECRET = "openclassrooms";
+
+    private static final int EXPIRATION_MS = 86400000;
+
+    private static final String EMAIL = "yoga@studio.com";
+
+    private static final String PASSWORD = "test!1234";
+
+    private static final FilterChain NO_OP_CHAIN = (request, response) -> { };
+
+    // BCrypt cost; 0 calibrates it like WebSecurityConfig.passwordEncoder() does with the default oc.app.bcrypt.* settings
+    @Param({"0"})
+    public int bcryptStrength;
+
+    private JwtUtils jwtUtils;
+
+    private JwtUtils uncachedJwtUtils;
+
+    private Authentication authentication;
+
+    private String token;
+
+    private CalibratedBCryptPasswordEncoder passwordEncoder;
+
+    private String passwordHash;
+
+    private AuthTokenFilter filter;
+
+    private AuthTokenFilter coldFilter;
+
+    private MockHttpServletRequest request;
+
+    private MockHttpServletRequest legacyRequest;
+
+    @Setup
+    public void setUp() throws Exception {
+        this.jwtUtils = jwtUtils(10000);
+        this.uncachedJwtUtils = jwtUtils(0);
+
+        UserDetailsImpl principal = UserDetailsImpl.builder()
+                .id(1L).username(EMAIL).firstName("Admin").lastName("Admin").admin(true).build();
+        this.authentication = new UsernamePasswordAuthenticationToken(principal, null, Collections.emptyList());
+        this.token = this.jwtUtils.generateJwtToken(this.authentication);
+
+        int strength = this.bcryptStrength > 0 ? this.bcryptStrength : CalibratedBCryptPasswordEncoder.calibrate(250, 10, 16);
+        this.passwordEncoder = new CalibratedBCryptPasswordEncoder(strength, new SimpleMeterRegistry());
+        this.passwordHash = this.passwordEncoder.encode(PASSWORD);
+
+        User user = new User(EMAIL, "Admin", "Admin", this.passwordHash, true);
+        user.setId(1L);
+        UserDetailsServiceImpl userDetailsService = userDetailsService(InMemoryRepositories.users(List.of(user)));
+
+        this.filter = filter(this.jwtUtils, userDetailsService, 300);
+        this.coldFilter = filter(this.uncachedJwtUtils, userDetailsService, 0);
+
+        this.request = new MockHttpServletRequest("GET", "/api/session");
+        this.request.addHeader("Authorization", "Bearer " + this.token);
+
+        String legacyToken = Jwts.builder()
+                .setSubject(EMAIL)
+                .setIssuedAt(new Date())
+                .setExpiration(new Date(System.currentTimeMillis() + EXPIRATION_MS))
+                .signWith(SignatureAlgorithm.HS512, SECRET)
+                .compact();
+        this.legacyRequest = new MockHttpServletRequest("GET", "/api/session");
+        this.legacyRequest.addHeader("Authorization", "Bearer " + legacyToken);
+    }
+
+    @TearDown(Level.Invocation)
+    public void clearContext() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Benchmark
+    public String generateJwtToken() {
+        return this.jwtUtils.generateJwtToken(this.authentication);
+    }
+
+    @Benchmark
+    public String validateThenGetUserName() {
+        return this.uncachedJwtUtils.validateJwtToken(this.token)
+                ? this.uncachedJwtUtils.getUserNameFromJwtToken(this.token)
+                : null;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public String bcryptEncode() {
+        return this.passwordEncoder.encode(PASSWORD);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public boolean bcryptMatches() {
+        return this.passwordEncoder.matches(PASSWORD, this.passwordHash);
+    }
+
+    @Benchmark
+    public String parseJwt() {
+        return this.filter.parseJwt(this.request);
+    }
+
+    @Benchmark
+    public Authentication filter() throws Exception {
+        this.filter.doFilter(this.request, new MockHttpServletResponse(), NO_OP_CHAIN);
+        return SecurityContextHolder.getContext().getAuthentication();
+    }
+
+    @Benchmark
+    public Authentication filterColdCaches() throws Exception {
+        this.coldFilter.doFilter(this.request, new MockHttpServletResponse(), NO_OP_CHAIN);
+        return SecurityContextHolder.getContext().getAuthentication();
+    }
+
+    @Benchmark
+    public Authentication filterLegacyToken() throws Exception {
+        this.filter.doFilter(this.legacyRequest, new MockHttpServletResponse(), NO_OP_CHAIN);
+        return SecurityContextHolder.getContext().getAuthentication();
+    }
+
+    private static JwtUtils jwtUtils(long cacheSize) {
+        JwtUtils jwtUtils = new JwtUtils();
+        ReflectionTestUtils.setField(jwtUtils, "jwtSecret", SECRET);
+        ReflectionTestUtils.setField(jwtUtils, "jwtExpirationMs", EXPIRATION_MS);
+        ReflectionTestUtils.setField(jwtUtils, "verifiedTokenCacheSize", cacheSize);
+        ReflectionTestUtils.invokeMethod(jwtUtils, "initVerifiedTokenCache");
+        return jwtUtils;
+    }
+
+    private static AuthTokenFilter filter(JwtUtils jwtUtils, UserDetailsServiceImpl userDetailsService, long principalTtlSeconds) {
+        AuthTokenFilter filter = new AuthTokenFilter();
+        filter.jwtUtils = jwtUtils;
+        filter.userDetailsService = userDetailsService;
+        filter.principalCache = new PrincipalCache(principalTtlSeconds, 10000, new SimpleMeterRegistry());
+        filter.tokenVersions = new TokenVersionRegistry(null);
+        // nothing revoked: every token is a Bloom filter negative, the common case
+        filter.tokenRevocations = new TokenRevocationService(null, 100000, 0.001, EXPIRATION_MS, new SimpleMeterRegistry());
+        return filter;
+    }
+
+    private static UserDetailsServiceImpl userDetailsService(UserRepository userRepository) throws Exception {
+        Constructor<UserDetailsServiceImpl> constructor =
+                UserDetailsServiceImpl.class.getDeclaredConstructor(UserRepository.class, PrincipalCache.class);
+        constructor.setAccessible(true);
+        return constructor.newInstance(userRepository, new PrincipalCache(0, 1, new SimpleMeterRegistry()));
+    }
+}
@@ -0,0 +1,108 @@
+package com.openclassrooms.starterjwt.benchmark;
+
+import com.openclassrooms.starterjwt.unit.services.SessionBookingEngine;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Joiners contending on one session, each operation being a join immediately followed by a leave.
+ * The open session always has a free seat; the full one is booked to capacity with {@code waiting} users
+ * already on its waitlist, so every join is a waitlist round trip.
+ * The {@code locked*} methods run the same logic serialized on a monitor, i.e. what a row lock buys us.
+ * Run with {@code -Djmh.args="-t 1000"} for 1000 joiner threads on a machine with enough cores.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+public class SessionBookingEngineBenchmark {
+    private static final Long OPEN_SESSION = 1L;
+
+    private static final Long FULL_SESSION = 2L;
+
+    private static final int CAPACITY = 50;
+
+    private static final AtomicLong USER_IDS = new AtomicLong();
+
+    @Param({"1000"})
+    public int waiting;
+
+    private SessionBookingEngine engine;
+
+    private final Object monitor = new Object();
+
+    private int lockedOpenSeats;
+
+    private int lockedFullSeats;
+
+    private final Set<Long> lockedWaitlist = new LinkedHashSet<>();
+
+    @State(Scope.Thread)
+    public static class Joiner {
+        final Long userId = USER_IDS.incrementAndGet();
+    }
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        this.engine = new SessionBookingEngine();
+        this.engine.tryReserve(FULL_SESSION, CAPACITY, () -> CAPACITY - 1);
+        this.engine.confirm(FULL_SESSION);
+        this.lockedOpenSeats = 0;
+        this.lockedFullSeats = CAPACITY;
+        this.lockedWaitlist.clear();
+        for (long i = 1; i <= this.waiting; i++) {
+            this.engine.enqueue(FULL_SESSION, -i);
+            this.lockedWaitlist.add(-i);
+        }
+    }
+
+    @Benchmark
+    public boolean joinOpenSession() {
+        if (this.engine.tryReserve(OPEN_SESSION, Integer.MAX_VALUE, () -> 0)) {
+            this.engine.confirm(OPEN_SESSION);
+            this.engine.adjust(OPEN_SESSION, -1);
+            return true;
+        }
+        return false;
+    }
+
+    @Benchmark
+    public boolean joinFullSession(Joiner joiner) {
+        if (this.engine.tryReserve(FULL_SESSION, CAPACITY, () -> CAPACITY)) {
+            throw new IllegalStateException("the session is full");
+        }
+        this.engine.enqueue(FULL_SESSION, joiner.userId);
+        return this.engine.leaveWaitlist(FULL_SESSION, joiner.userId);
+    }
+
+    @Benchmark
+    public boolean lockedJoinOpenSession() {
+        synchronized (this.monitor) {
+            this.lockedOpenSeats++;
+        }
+        synchronized (this.monitor) {
+            this.lockedOpenSeats--;
+        }
+        return true;
+    }
+
+    @Benchmark
+    public boolean lockedJoinFullSession(Joiner joiner) {
+        synchronized (this.monitor) {
+            if (this.lockedFullSeats < CAPACITY) {
+                throw new IllegalStateException("the session is full");
+            }
+            this.lockedWaitlist.add(joiner.userId);
+        }
+        synchronized (this.monitor) {
+            return this.lockedWaitlist.remove(joiner.userId);
+        }
+    }
+}
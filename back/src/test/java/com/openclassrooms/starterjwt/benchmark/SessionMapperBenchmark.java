@@ -0,0 +1,117 @@
+package com.openclassrooms.starterjwt.benchmark;
+
+import com.openclassrooms.starterjwt.dto.SessionDto;
+import com.openclassrooms.starterjwt.unit.mapper.SessionMapper;
+import com.openclassrooms.starterjwt.unit.mapper.SessionMapperImpl;
+import com.openclassrooms.starterjwt.unit.mapper.TeacherMapperImpl;
+import com.openclassrooms.starterjwt.unit.models.Session;
+import com.openclassrooms.starterjwt.unit.models.SessionSummary;
+import com.openclassrooms.starterjwt.unit.models.Teacher;
+import com.openclassrooms.starterjwt.unit.models.User;
+import com.openclassrooms.starterjwt.unit.security.services.PrincipalCache;
+import com.openclassrooms.starterjwt.unit.security.services.TokenVersionRegistry;
+import com.openclassrooms.starterjwt.unit.services.TeacherService;
+import com.openclassrooms.starterjwt.unit.services.UserService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link SessionMapper} over a page of {@code size} sessions having {@code participants} users each.
+ * Teachers and users are resolved through the real services on top of in-memory repositories.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SessionMapperBenchmark {
+    private static final int TEACHERS = 10;
+
+    @Param({"1", "100", "10000"})
+    public int size;
+
+    @Param({"0", "50", "500"})
+    public int participants;
+
+    private SessionMapper mapper;
+
+    private List<Session> sessions;
+
+    private List<SessionDto> dtos;
+
+    private List<SessionSummary> summaries;
+
+    private Map<Long, List<Long>> participantIds;
+
+    @Setup
+    public void setUp() {
+        LocalDateTime now = LocalDateTime.now();
+
+        List<Teacher> teachers = new ArrayList<>();
+        for (long id = 1; id <= TEACHERS; id++) {
+            teachers.add(Teacher.builder().id(id).firstName("Teacher").lastName("T" + id).createdAt(now).updatedAt(now).build());
+        }
+
+        List<User> users = new ArrayList<>();
+        List<Long> userIds = new ArrayList<>();
+        for (long id = 1; id <= this.participants; id++) {
+            User user = new User("user" + id + "@studio.com", "Last", "First", "hash", false);
+            user.setId(id);
+            users.add(user);
+            userIds.add(user.getId());
+        }
+
+        this.mapper = new SessionMapperImpl();
+        ReflectionTestUtils.setField(this.mapper, "teacherService", new TeacherService(InMemoryRepositories.teachers(teachers), new TeacherMapperImpl()));
+        ReflectionTestUtils.setField(this.mapper, "userService",
+                new UserService(InMemoryRepositories.users(users), new PrincipalCache(60, 1, new SimpleMeterRegistry()),
+                        new TokenVersionRegistry(null), null));
+
+        this.sessions = new ArrayList<>(this.size);
+        this.summaries = new ArrayList<>(this.size);
+        this.participantIds = new HashMap<>();
+        for (long id = 1; id <= this.size; id++) {
+            Teacher teacher = teachers.get((int) (id % TEACHERS));
+            Date date = new Date();
+            this.sessions.add(Session.builder()
+                    .id(id)
+                    .name("Session " + id)
+                    .date(date)
+                    .description("Yoga session " + id)
+                    .teacher(teacher)
+                    .users(users)
+                    .createdAt(now)
+                    .updatedAt(now)
+                    .build());
+            this.summaries.add(new SessionSummary(id, "Session " + id, date, "Yoga session " + id,
+                    teacher.getId(), null, this.participants, now, now));
+            this.participantIds.put(id, userIds);
+        }
+        this.dtos = this.mapper.toDto(this.sessions);
+    }
+
+    @Benchmark
+    public List<SessionDto> toDto() {
+        return this.mapper.toDto(this.sessions);
+    }
+
+    @Benchmark
+    public List<SessionDto> summariesToDto() {
+        return this.mapper.toDto(this.summaries, this.participantIds);
+    }
+
+    @Benchmark
+    public List<Session> toEntity() {
+        return this.mapper.toEntity(this.dtos);
+    }
+}
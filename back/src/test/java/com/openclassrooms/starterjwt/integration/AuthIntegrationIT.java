@@ -1,22 +1,37 @@
 package com.openclassrooms.starterjwt.integration;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.openclassrooms.starterjwt.repository.RefreshTokenRepository;
 import com.openclassrooms.starterjwt.repository.SessionRepository;
 import com.openclassrooms.starterjwt.repository.TeacherRepository;
 import com.openclassrooms.starterjwt.repository.UserRepository;
 import com.openclassrooms.starterjwt.unit.models.User;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
 
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
@@ -38,6 +53,12 @@ class AuthIntegrationIT {
     private PasswordEncoder passwordEncoder;
     @Autowired
     private ObjectMapper objectMapper;
+    @Autowired
+    private MeterRegistry meterRegistry;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private RefreshTokenRepository refreshTokenRepository;
 
     @BeforeEach
     void setup() {
@@ -271,4 +292,277 @@ class AuthIntegrationIT {
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.admin").value(true));
     }
+
+    @Test
+    void registerAndLogin_shouldHashOnTheBoundedPool() throws Exception {
+        long encodes = meterRegistry.get("auth.hashing").tag("operation", "encode").timer().count();
+        long matches = meterRegistry.get("auth.hashing").tag("operation", "matches").timer().count();
+
+        mockMvc.perform(post("/api/auth/register")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                {"email": "pool@example.com", "firstName": "Pool", "lastName": "Test", "password": "secret123"}
+                                """))
+                .andExpect(status().isOk());
+        mockMvc.perform(post("/api/auth/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                {"email": "pool@example.com", "password": "secret123"}
+                                """))
+                .andExpect(status().isOk());
+
+        assertEquals(encodes + 1, meterRegistry.get("auth.hashing").tag("operation", "encode").timer().count());
+        assertEquals(matches + 1, meterRegistry.get("auth.hashing").tag("operation", "matches").timer().count());
+        assertEquals(0.0, meterRegistry.get("executor.queued").tag("name", "auth.hashing").gauge().value());
+    }
+
+    @Test
+    void login_shouldRehashPasswordStoredWithAnotherCost() throws Exception {
+        userRepository.save(new User(
+                "legacy@example.com",
+                "Doe",
+                "John",
+                new BCryptPasswordEncoder(4).encode("secret123"),
+                false
+        ));
+
+        for (int i = 0; i < 2; i++) {
+            mockMvc.perform(post("/api/auth/login")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content("""
+                                    {"email": "legacy@example.com", "password": "secret123"}
+                                    """))
+                    .andExpect(status().isOk());
+        }
+
+        String stored = userRepository.findByEmail("legacy@example.com").get().getPassword();
+        assertTrue(stored.startsWith("{bcrypt}$2a$10$"), stored);
+        assertTrue(passwordEncoder.matches("secret123", stored));
+    }
+
+    @Test
+    void login_shouldQueryUsersExactlyOnce() throws Exception {
+        userRepository.save(new User(
+                "john@example.com",
+                "Doe",
+                "John",
+                passwordEncoder.encode("secret123"),
+                true
+        ));
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        statistics.setStatisticsEnabled(true);
+
+        try {
+            mockMvc.perform(post("/api/auth/login")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content("""
+                                    {"email": "john@example.com", "password": "secret123"}
+                                    """))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.admin").value(true));
+
+            // the USERS lookup and the REFRESH_TOKENS insert
+            assertEquals(2, statistics.getPrepareStatementCount());
+            assertEquals(1, statistics.getEntityLoadCount());
+            assertEquals(1, statistics.getEntityInsertCount());
+        } finally {
+            statistics.setStatisticsEnabled(false);
+        }
+    }
+
+    // ----------------------------------------------------------------------
+    // LOGOUT TESTS
+    // ----------------------------------------------------------------------
+
+    @Test
+    void logout_shouldRevokeTheTokenBeforeItExpires() throws Exception {
+        userRepository.save(new User(
+                "john@example.com",
+                "Doe",
+                "John",
+                passwordEncoder.encode("secret123"),
+                false
+        ));
+        MvcResult result = mockMvc.perform(post("/api/auth/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                {
+                                    "email": "john@example.com",
+                                    "password": "secret123"
+                                }
+                                """))
+                .andExpect(status().isOk())
+                .andReturn();
+        String token = objectMapper.readTree(result.getResponse().getContentAsString()).get("token").textValue();
+
+        mockMvc.perform(get("/api/session").header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(post("/api/auth/logout").header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/api/session").header("Authorization", "Bearer " + token))
+                .andExpect(status().isUnauthorized());
+        assertTrue(meterRegistry.get("auth.revocation.checks").tag("result", "revoked").counter().count() >= 1);
+    }
+
+    @Test
+    void logout_shouldReturn400_withoutToken() throws Exception {
+        mockMvc.perform(post("/api/auth/logout"))
+                .andExpect(status().isBadRequest());
+    }
+
+    // ----------------------------------------------------------------------
+    // REFRESH TESTS
+    // ----------------------------------------------------------------------
+
+    private JsonNode loginAs(String email) throws Exception {
+        userRepository.save(new User(email, "Doe", "John", passwordEncoder.encode("secret123"), false));
+        MvcResult result = mockMvc.perform(post("/api/auth/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                {"email": "%s", "password": "secret123"}
+                                """.formatted(email)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.refreshToken").exists())
+                .andReturn();
+        return objectMapper.readTree(result.getResponse().getContentAsString());
+    }
+
+    private MvcResult refresh(String refreshToken) throws Exception {
+        return mockMvc.perform(post("/api/auth/refresh")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                {"refreshToken": "%s"}
+                                """.formatted(refreshToken)))
+                .andReturn();
+    }
+
+    @Test
+    void refresh_shouldRotateTheRefreshTokenAndIssueAWorkingAccessToken() throws Exception {
+        String refreshToken = loginAs("john@example.com").get("refreshToken").textValue();
+
+        MvcResult result = refresh(refreshToken);
+
+        assertEquals(200, result.getResponse().getStatus());
+        JsonNode body = objectMapper.readTree(result.getResponse().getContentAsString());
+        assertNotEquals(refreshToken, body.get("refreshToken").textValue());
+        assertEquals("john@example.com", body.get("username").textValue());
+        mockMvc.perform(get("/api/session").header("Authorization", "Bearer " + body.get("token").textValue()))
+                .andExpect(status().isOk());
+        // only the hash is stored
+        assertTrue(refreshTokenRepository.findAll().stream().noneMatch(t -> t.getTokenHash().equals(refreshToken)));
+    }
+
+    @Test
+    void refresh_shouldRevokeTheFamily_whenARefreshTokenIsReused() throws Exception {
+        String stolen = loginAs("john@example.com").get("refreshToken").textValue();
+        String next = objectMapper.readTree(refresh(stolen).getResponse().getContentAsString())
+                .get("refreshToken").textValue();
+
+        assertEquals(401, refresh(stolen).getResponse().getStatus());
+        // the legitimate client has to log in again too
+        assertEquals(401, refresh(next).getResponse().getStatus());
+        assertTrue(meterRegistry.get("auth.refresh").tag("result", "reused").counter().count() >= 1);
+    }
+
+    @Test
+    void refresh_shouldLetExactlyOneOfConcurrentRotationsWin() throws Exception {
+        String refreshToken = loginAs("john@example.com").get("refreshToken").textValue();
+        int clients = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(clients);
+        CountDownLatch start = new CountDownLatch(1);
+
+        try {
+            List<Future<Integer>> statuses = new ArrayList<>();
+            for (int i = 0; i < clients; i++) {
+                statuses.add(executor.submit(() -> {
+                    start.await();
+                    return refresh(refreshToken).getResponse().getStatus();
+                }));
+            }
+            start.countDown();
+
+            int rotated = 0;
+            for (Future<Integer> status : statuses) {
+                rotated += status.get() == 200 ? 1 : 0;
+            }
+            assertEquals(1, rotated);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void refresh_shouldReturn401_afterLogout() throws Exception {
+        JsonNode login = loginAs("john@example.com");
+
+        mockMvc.perform(post("/api/auth/logout")
+                        .header("Authorization", "Bearer " + login.get("token").textValue())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                {"refreshToken": "%s"}
+                                """.formatted(login.get("refreshToken").textValue())))
+                .andExpect(status().isOk());
+
+        assertEquals(401, refresh(login.get("refreshToken").textValue()).getResponse().getStatus());
+    }
+
+    @Test
+    void logoutEverywhere_shouldRejectEveryTokenIssuedBefore() throws Exception {
+        JsonNode laptop = loginAs("john@example.com");
+        MvcResult phoneLogin = mockMvc.perform(post("/api/auth/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                {"email": "john@example.com", "password": "secret123"}
+                                """))
+                .andExpect(status().isOk())
+                .andReturn();
+        JsonNode phone = objectMapper.readTree(phoneLogin.getResponse().getContentAsString());
+
+        mockMvc.perform(post("/api/auth/logout-all").header("Authorization", "Bearer " + laptop.get("token").textValue()))
+                .andExpect(status().isOk());
+
+        for (JsonNode device : List.of(laptop, phone)) {
+            mockMvc.perform(get("/api/session").header("Authorization", "Bearer " + device.get("token").textValue()))
+                    .andExpect(status().isUnauthorized());
+            assertEquals(401, refresh(device.get("refreshToken").textValue()).getResponse().getStatus());
+        }
+        assertEquals(1, userRepository.findByEmail("john@example.com").orElseThrow().getTokenVersion());
+
+        MvcResult relogin = mockMvc.perform(post("/api/auth/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                {"email": "john@example.com", "password": "secret123"}
+                                """))
+                .andExpect(status().isOk())
+                .andReturn();
+        String token = objectMapper.readTree(relogin.getResponse().getContentAsString()).get("token").textValue();
+        mockMvc.perform(get("/api/session").header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void logoutEverywhere_shouldReturn401_withoutToken() throws Exception {
+        mockMvc.perform(post("/api/auth/logout-all"))
+                .andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    void refresh_shouldReturn400_whenRefreshTokenIsMissing() throws Exception {
+        mockMvc.perform(post("/api/auth/refresh")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{}"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void deletingAUser_shouldDeleteItsRefreshTokens() throws Exception {
+        Long userId = loginAs("john@example.com").get("id").asLong();
+
+        userRepository.deleteById(userId);
+
+        assertTrue(refreshTokenRepository.findAll().stream().noneMatch(t -> t.getUserId().equals(userId)));
+    }
 }
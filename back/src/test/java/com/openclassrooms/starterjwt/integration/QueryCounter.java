@@ -0,0 +1,102 @@
+package com.openclassrooms.starterjwt.integration;
+
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import net.ttddyy.dsproxy.support.ProxyDataSource;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Counts the JDBC statements the application sends, whoever sends them (Hibernate, Spring Data, JDBC),
+ * so that an integration test can fail when an endpoint starts issuing more queries, or a number of queries
+ * that grows with the data (N+1). Registered with {@code @Import(QueryCounter.class)}, it wraps the
+ * {@link DataSource} in a datasource-proxy and is then autowired into the test:
+ * <pre>
+ * queryCounter.assertAtMost(2, () -&gt; mockMvc.perform(get("/api/session")...));
+ * queryCounter.assertDoesNotScale(() -&gt; saveMoreSessions(), () -&gt; mockMvc.perform(get("/api/session")...));
+ * </pre>
+ * A batch counts as one statement, i.e. one round trip. Statements run by the {@code @Scheduled} jobs are ignored.
+ */
+public class QueryCounter implements BeanPostProcessor, QueryExecutionListener {
+    private static final String SCHEDULER_THREAD_PREFIX = "scheduling-";
+
+    private final List<String> statements = new CopyOnWriteArrayList<>();
+
+    @FunctionalInterface
+    public interface Action {
+        void run() throws Exception;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof DataSource && !(bean instanceof ProxyDataSource)) {
+            return ProxyDataSourceBuilder.create((DataSource) bean)
+                    .name(beanName)
+                    .listener(this)
+                    .build();
+        }
+        return bean;
+    }
+
+    @Override
+    public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+    }
+
+    @Override
+    public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        if (Thread.currentThread().getName().startsWith(SCHEDULER_THREAD_PREFIX)) {
+            return;
+        }
+        this.statements.add(queryInfoList.stream().map(QueryInfo::getQuery).collect(Collectors.joining("; ")));
+    }
+
+    public void reset() {
+        this.statements.clear();
+    }
+
+    /**
+     * @return the statements sent since the last {@link #reset()}
+     */
+    public List<String> statements() {
+        return List.copyOf(this.statements);
+    }
+
+    /**
+     * @return the number of statements {@code action} sent
+     */
+    public int count(Action action) throws Exception {
+        reset();
+        action.run();
+        return this.statements.size();
+    }
+
+    public void assertAtMost(int max, Action action) throws Exception {
+        int count = count(action);
+        assertTrue(count <= max, () -> "Expected at most " + max + " statements but got " + count + describe());
+    }
+
+    /**
+     * Runs {@code action} once to warm the caches, counts its statements, runs {@code growData}, then fails
+     * when {@code action} sends more statements than before: its query count depends on the data size.
+     */
+    public void assertDoesNotScale(Action growData, Action action) throws Exception {
+        action.run();
+        int before = count(action);
+        growData.run();
+        int after = count(action);
+        assertTrue(after <= before,
+                () -> "Statement count grew with the data from " + before + " to " + after + describe());
+    }
+
+    private String describe() {
+        return this.statements.stream().collect(Collectors.joining("\n  ", ":\n  ", ""));
+    }
+}
@@ -0,0 +1,146 @@
+package com.openclassrooms.starterjwt.integration;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.support.EncodedResource;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Schema built by the Flyway migrations on H2 in MySQL mode, and the plans of the queries that rely on it.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@Transactional
+class SchemaMigrationIT {
+    @Autowired
+    Flyway flyway;
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    private String explain(String sql) {
+        return jdbcTemplate.queryForObject("EXPLAIN " + sql, String.class).toUpperCase();
+    }
+
+    @Test
+    void migrations_shouldAllBeApplied() {
+        assertEquals("7", flyway.info().current().getVersion().getVersion());
+        assertEquals(0, flyway.info().pending().length);
+    }
+
+    @Test
+    void migrations_shouldUpgradeADatabaseCreatedFromTheLegacyScript() throws Exception {
+        DataSource legacy = new DriverManagerDataSource("jdbc:h2:mem:legacy;MODE=MySQL;DB_CLOSE_DELAY=-1", "sa", "");
+        try (Connection connection = legacy.getConnection()) {
+            ScriptUtils.executeSqlScript(connection,
+                    new EncodedResource(new ClassPathResource("sql/script.sql"), StandardCharsets.UTF_8));
+        }
+        JdbcTemplate legacyJdbc = new JdbcTemplate(legacy);
+        legacyJdbc.update("INSERT INTO SESSIONS (name, description, date, teacher_id) VALUES ('S', 'd', CURRENT_TIMESTAMP, 1)");
+        legacyJdbc.update("INSERT INTO PARTICIPATE (session_id, user_id) VALUES (1, 1), (1, 1), (1, NULL)");
+
+        Flyway.configure()
+                .dataSource(legacy)
+                .baselineOnMigrate(true)
+                .load()
+                .migrate();
+
+        assertEquals(1, legacyJdbc.queryForObject("SELECT COUNT(*) FROM PARTICIPATE", Integer.class));
+        assertEquals(1, legacyJdbc.queryForObject("SELECT COUNT(*) FROM SESSIONS WHERE capacity IS NULL", Integer.class));
+        assertEquals(0, legacyJdbc.queryForObject("SELECT token_version FROM USERS WHERE email = 'yoga@studio.com'", Integer.class));
+        assertThrows(DataIntegrityViolationException.class,
+                () -> legacyJdbc.update("INSERT INTO PARTICIPATE (session_id, user_id) VALUES (1, 1)"));
+        legacyJdbc.execute("DROP ALL OBJECTS");
+    }
+
+    @Test
+    void participantsOfASession_shouldUseThePrimaryKey() {
+        String plan = explain("SELECT user_id FROM PARTICIPATE WHERE session_id = 1");
+
+        assertTrue(plan.contains("PRIMARY_KEY"), plan);
+    }
+
+    @Test
+    void participation_shouldUseThePrimaryKey() {
+        String plan = explain("SELECT COUNT(*) FROM PARTICIPATE WHERE session_id = 1 AND user_id = 2");
+
+        assertTrue(plan.contains("PRIMARY_KEY"), plan);
+    }
+
+    @Test
+    void sessionsOfAUser_shouldUseTheReverseIndex() {
+        String plan = explain("SELECT session_id FROM PARTICIPATE WHERE user_id = 1");
+
+        assertTrue(plan.contains("IDX_PARTICIPATE_USER"), plan);
+    }
+
+    @Test
+    void sessionPage_shouldSeekAndSortOnTheDateIndex() {
+        String plan = explain("SELECT id FROM SESSIONS "
+                + "WHERE date > TIMESTAMP '2024-01-01 10:00:00' "
+                + "OR (date = TIMESTAMP '2024-01-01 10:00:00' AND id > 5) "
+                + "ORDER BY date, id LIMIT 21");
+
+        assertTrue(plan.contains("IDX_SESSIONS_DATE_ID"), plan);
+        assertTrue(plan.contains("INDEX SORTED"), plan);
+    }
+
+    @Test
+    void userByEmail_shouldUseTheUniqueIndex() {
+        String plan = explain("SELECT id FROM USERS WHERE email = 'yoga@studio.com'");
+
+        assertTrue(plan.contains("UK_USERS_EMAIL"), plan);
+    }
+
+    @Test
+    void revokedTokenPrune_shouldUseTheExpiryIndex() {
+        String plan = explain("DELETE FROM REVOKED_TOKENS WHERE expires_at <= CURRENT_TIMESTAMP");
+
+        assertTrue(plan.contains("IDX_REVOKED_TOKENS_EXPIRES_AT"), plan);
+    }
+
+    @Test
+    void refreshTokenLookup_shouldUseTheUniqueHashIndex() {
+        String plan = explain("SELECT id FROM REFRESH_TOKENS WHERE token_hash = 'x'");
+
+        assertTrue(plan.contains("UK_REFRESH_TOKENS_HASH"), plan);
+    }
+
+    @Test
+    void duplicateEmail_shouldBeRejected() {
+        jdbcTemplate.update("INSERT INTO USERS (first_name, last_name, email, password) VALUES ('A', 'A', 'dup@test.com', 'x')");
+
+        assertThrows(DataIntegrityViolationException.class, () -> jdbcTemplate.update(
+                "INSERT INTO USERS (first_name, last_name, email, password) VALUES ('B', 'B', 'dup@test.com', 'x')"));
+    }
+
+    @Test
+    void participate_shouldRejectDuplicatesAndMissingSides() {
+        jdbcTemplate.update("INSERT INTO USERS (first_name, last_name, email, password) VALUES ('A', 'A', 'pk@test.com', 'x')");
+        jdbcTemplate.update("INSERT INTO SESSIONS (name, description, date) VALUES ('S', 'd', CURRENT_TIMESTAMP)");
+        Long userId = jdbcTemplate.queryForObject("SELECT id FROM USERS WHERE email = 'pk@test.com'", Long.class);
+        Long sessionId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM SESSIONS", Long.class);
+
+        jdbcTemplate.update("INSERT INTO PARTICIPATE (session_id, user_id) VALUES (?, ?)", sessionId, userId);
+
+        assertThrows(DataIntegrityViolationException.class, () -> jdbcTemplate.update(
+                "INSERT INTO PARTICIPATE (session_id, user_id) VALUES (?, ?)", sessionId, userId));
+        assertThrows(DataIntegrityViolationException.class, () -> jdbcTemplate.update(
+                "INSERT INTO PARTICIPATE (session_id, user_id) VALUES (?, NULL)", sessionId));
+    }
+}
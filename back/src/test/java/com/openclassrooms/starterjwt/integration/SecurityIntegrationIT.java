@@ -14,6 +14,7 @@ import org.junit.jupiter.api.Test;
 
 import org.springframework.beans.factory.annotation.Autowired;
 
+import org.springframework.boot.test.autoconfigure.actuate.metrics.AutoConfigureMetrics;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 
@@ -26,6 +27,7 @@ import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.servlet.MockMvc;
 
 import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.RequestPostProcessor;
 
 import java.util.Date;
 
@@ -40,6 +42,7 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 
 @SpringBootTest
 @AutoConfigureMockMvc
+@AutoConfigureMetrics
 @ActiveProfiles("test")
 class SecurityIntegrationIT {
 
@@ -187,6 +190,79 @@ class SecurityIntegrationIT {
                 .andExpect(jsonPath("$.path").exists());
     }
 
+    // ----------------------------------------------------------------------
+    // PROMETHEUS ENDPOINT
+    // ----------------------------------------------------------------------
+
+    private static RequestPostProcessor remote() {
+        return request -> {
+            request.setRemoteAddr("203.0.113.7");
+            return request;
+        };
+    }
+
+    @Test
+    void prometheus_shouldBeScrapableFromLoopbackWithLayerHistograms() throws Exception {
+        String token = loginAndGetToken();
+        mockMvc.perform(get("/api/user/" + mainUserId)
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk());
+
+        String scrape = mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        assertTrue(scrape.contains("http_server_requests_seconds_bucket{"));
+        assertTrue(scrape.contains("spring_data_repository_invocations_seconds_bucket{"));
+        assertTrue(scrape.contains("app_operation_seconds_bucket{class=\"JwtUtils\",exception=\"none\",layer=\"auth\",method=\"parseClaims\",le="));
+        assertTrue(scrape.contains("app_operation_seconds_count{class=\"UserService\",exception=\"none\",layer=\"service\",method=\"findById\""));
+        assertTrue(scrape.contains("cache_gets_total{cache=\"jwtVerifiedTokens\""));
+    }
+
+    @Test
+    void prometheus_shouldRequireAuthenticationFromRemoteAddress() throws Exception {
+        mockMvc.perform(get("/actuator/prometheus").with(remote()))
+                .andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    void prometheus_shouldBeForbiddenToNonAdminFromRemoteAddress() throws Exception {
+        mockMvc.perform(get("/actuator/prometheus").with(remote())
+                        .header("Authorization", "Bearer " + loginAndGetToken()))
+                .andExpect(status().isForbidden());
+    }
+
+    @Test
+    void prometheus_shouldBeReadableByAdminFromRemoteAddress() throws Exception {
+        User admin = userRepository.findById(mainUserId).orElseThrow();
+        admin.setAdmin(true);
+        userRepository.save(admin);
+
+        mockMvc.perform(get("/actuator/prometheus").with(remote())
+                        .header("Authorization", "Bearer " + loginAndGetToken()))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void metrics_shouldBeForbiddenToNonAdminFromRemoteAddress() throws Exception {
+        mockMvc.perform(get("/actuator/metrics").with(remote())
+                        .header("Authorization", "Bearer " + loginAndGetToken()))
+                .andExpect(status().isForbidden());
+        mockMvc.perform(get("/actuator/metrics/jvm.memory.used").with(remote())
+                        .header("Authorization", "Bearer " + loginAndGetToken()))
+                .andExpect(status().isForbidden());
+    }
+
+    @Test
+    void metrics_shouldBeReadableByAdminFromRemoteAddress() throws Exception {
+        User admin = userRepository.findById(mainUserId).orElseThrow();
+        admin.setAdmin(true);
+        userRepository.save(admin);
+
+        mockMvc.perform(get("/actuator/metrics").with(remote())
+                        .header("Authorization", "Bearer " + loginAndGetToken()))
+                .andExpect(status().isOk());
+    }
 
     @Test
     void contextLoads() {
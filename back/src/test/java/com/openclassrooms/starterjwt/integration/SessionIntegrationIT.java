@@ -9,28 +9,44 @@ import com.openclassrooms.starterjwt.repository.UserRepository;
 import com.openclassrooms.starterjwt.unit.models.Session;
 import com.openclassrooms.starterjwt.unit.models.Teacher;
 import com.openclassrooms.starterjwt.unit.models.User;
+import com.openclassrooms.starterjwt.unit.services.Participation;
+import com.openclassrooms.starterjwt.unit.services.SessionBookingEngine;
 import com.openclassrooms.starterjwt.unit.services.SessionService;
+import com.openclassrooms.starterjwt.unit.security.services.PrincipalCache;
+import com.openclassrooms.starterjwt.unit.services.TeacherService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
 
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @SpringBootTest
 @AutoConfigureMockMvc
 @ActiveProfiles("test")
+@Import(QueryCounter.class)
 class SessionIntegrationIT {
 
     @Autowired
@@ -51,6 +67,18 @@ class SessionIntegrationIT {
     @Autowired
     ObjectMapper objectMapper;
 
+    @Autowired
+    TeacherService teacherService;
+
+    @Autowired
+    PrincipalCache principalCache;
+
+    @Autowired
+    QueryCounter queryCounter;
+
+    @Autowired
+    SessionService sessionService;
+
     Long teacherId;
     Long sessionId;
     Long mainUserId;
@@ -60,7 +88,10 @@ class SessionIntegrationIT {
     void setup() {
         sessionRepository.deleteAll();
         teacherRepository.deleteAll();
+        // the users are recreated with new ids under the same emails
+        userRepository.findAll().forEach(user -> principalCache.evict(user.getEmail()));
         userRepository.deleteAll();
+        teacherService.evictCache();
 
         // create teacher
         Teacher teacher = teacherRepository.save(
@@ -107,12 +138,21 @@ class SessionIntegrationIT {
     // AUTH HELPER — get JWT
     // ----------------------------------------------------------------------
     private String loginAndGetToken() throws Exception {
+        return loginAndGetToken("john@example.com", "secret123");
+    }
+
+    private String loginAsAdminAndGetToken() throws Exception {
+        userRepository.save(new User("admin@example.com", "Admin", "Ada", passwordEncoder.encode("admin123"), true));
+        return loginAndGetToken("admin@example.com", "admin123");
+    }
+
+    private String loginAndGetToken(String email, String password) throws Exception {
         String json = """
                 {
-                  "email":"john@example.com",
-                  "password":"secret123"
+                  "email":"%s",
+                  "password":"%s"
                 }
-                """;
+                """.formatted(email, password);
 
         MvcResult result = mockMvc.perform(post("/api/auth/login")
                         .contentType(MediaType.APPLICATION_JSON)
@@ -138,12 +178,207 @@ class SessionIntegrationIT {
                 .andExpect(jsonPath("$.length()").value(1));
     }
 
+    @Test
+    void findAll_shouldAnswer304UntilAParticipationChanges() throws Exception {
+        String token = loginAndGetToken();
+
+        String etag = mockMvc.perform(get("/api/session").header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk())
+                .andExpect(header().exists("Last-Modified"))
+                .andReturn().getResponse().getHeader("ETag");
+        assertNotNull(etag);
+
+        mockMvc.perform(get("/api/session")
+                        .header("Authorization", "Bearer " + token)
+                        .header("If-None-Match", etag))
+                .andExpect(status().isNotModified());
+        mockMvc.perform(get("/api/session/" + sessionId)
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk())
+                .andExpect(header().exists("ETag"));
+
+        mockMvc.perform(post("/api/session/" + sessionId + "/participate/" + otherUserId)
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/api/session")
+                        .header("Authorization", "Bearer " + token)
+                        .header("If-None-Match", etag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].users.length()").value(1));
+    }
+
+    @Test
+    void streamAll_shouldWriteSessionsAsNdjsonWithParticipants() throws Exception {
+        sessionRepository.addParticipant(sessionId, otherUserId);
+        String token = loginAndGetToken();
+
+        MvcResult started = mockMvc.perform(get("/api/session/stream")
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String body = mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andReturn().getResponse().getContentAsString();
+
+        String[] lines = body.split("\n");
+        assertEquals(sessionRepository.count(), lines.length);
+        JsonNode first = objectMapper.readTree(lines[0]);
+        assertEquals(sessionId.longValue(), first.get("id").asLong());
+        assertEquals(otherUserId.longValue(), first.get("users").get(0).asLong());
+    }
+
     @Test
     void findAll_shouldReturn401_whenNotAuthenticated() throws Exception {
         mockMvc.perform(get("/api/sessions"))
                 .andExpect(status().isUnauthorized());
     }
 
+    // ----------------------------------------------------------------------
+    // TEST GET /api/session/page
+    // ----------------------------------------------------------------------
+
+    @Test
+    void findPage_shouldWalkAllSessionsWithCursor() throws Exception {
+        String token = loginAndGetToken();
+        Teacher teacher = teacherRepository.findById(teacherId).get();
+        for (int i = 0; i < 4; i++) {
+            sessionRepository.save(Session.builder()
+                    .name("Session " + i)
+                    .description("desc")
+                    .date(new Date(1_700_000_000_000L + i * 60_000L))
+                    .teacher(teacher)
+                    .build());
+        }
+
+        MvcResult first = mockMvc.perform(get("/api/session/page?size=3")
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.sessions.length()").value(3))
+                .andExpect(jsonPath("$.sessions[0].name").value("Session 0"))
+                .andReturn();
+        String cursor = objectMapper.readTree(first.getResponse().getContentAsString()).get("nextCursor").asText();
+
+        mockMvc.perform(get("/api/session/page?size=3&cursor=" + cursor)
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.sessions.length()").value(2))
+                .andExpect(jsonPath("$.sessions[0].name").value("Session 3"))
+                .andExpect(jsonPath("$.sessions[1].name").value("Yoga session"))
+                .andExpect(jsonPath("$.nextCursor").doesNotExist());
+    }
+
+    @Test
+    void findPage_shouldFilterByDateRangeAndTeacher() throws Exception {
+        String token = loginAndGetToken();
+        Teacher other = teacherRepository.save(Teacher.builder().firstName("Ada").lastName("Lovelace").build());
+        sessionRepository.save(Session.builder()
+                .name("Old session")
+                .description("desc")
+                .date(new Date(1_600_000_000_000L))
+                .teacher(other)
+                .build());
+
+        mockMvc.perform(get("/api/session/page?to=2021-01-01T00:00:00.000Z")
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.sessions.length()").value(1))
+                .andExpect(jsonPath("$.sessions[0].name").value("Old session"));
+
+        mockMvc.perform(get("/api/session/page?teacherId=" + teacherId)
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.sessions.length()").value(1))
+                .andExpect(jsonPath("$.sessions[0].name").value("Yoga session"));
+    }
+
+    @Test
+    void findPage_shouldReturn400_whenCursorInvalid() throws Exception {
+        String token = loginAndGetToken();
+
+        mockMvc.perform(get("/api/session/page?cursor=@@@")
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(status().isBadRequest());
+    }
+
+    // ----------------------------------------------------------------------
+    // TESTS GET /api/session?participant=me and GET /api/user/{id}/sessions
+    // ----------------------------------------------------------------------
+
+    private Long bookedSession(String name, long date, Long... userIds) throws Exception {
+        Session session = sessionRepository.save(Session.builder()
+                .name(name)
+                .description("desc")
+                .date(new Date(date))
+                .teacher(teacherRepository.findById(teacherId).get())
+                .build());
+        String token = loginAndGetToken();
+        for (Long userId : userIds) {
+            mockMvc.perform(post("/api/session/" + session.getId() + "/participate/" + userId)
+                            .header("Authorization", "Bearer " + token))
+                    .andExpect(status().isOk());
+        }
+        return session.getId();
+    }
+
+    @Test
+    void findByParticipant_shouldPageThroughTheSessionsOfTheCurrentUser() throws Exception {
+        bookedSession("Mine 1", 1_700_000_000_000L, mainUserId, otherUserId);
+        bookedSession("Not mine", 1_700_000_060_000L, otherUserId);
+        bookedSession("Mine 2", 1_700_000_120_000L, mainUserId);
+        String token = loginAndGetToken();
+
+        MvcResult first = mockMvc.perform(get("/api/session?participant=me&size=1")
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.sessions.length()").value(1))
+                .andExpect(jsonPath("$.sessions[0].name").value("Mine 1"))
+                .andExpect(jsonPath("$.sessions[0].users.length()").value(2))
+                .andReturn();
+        String cursor = objectMapper.readTree(first.getResponse().getContentAsString()).get("nextCursor").asText();
+
+        mockMvc.perform(get("/api/session/page?participant=me&size=1&cursor=" + cursor)
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.sessions.length()").value(1))
+                .andExpect(jsonPath("$.sessions[0].name").value("Mine 2"))
+                .andExpect(jsonPath("$.nextCursor").doesNotExist());
+    }
+
+    @Test
+    void findByParticipant_shouldReturn400_whenParticipantIsNotMe() throws Exception {
+        String token = loginAndGetToken();
+
+        mockMvc.perform(get("/api/session?participant=" + otherUserId)
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void findUserSessions_shouldReturnOnlyTheSessionsOfThatUser() throws Exception {
+        bookedSession("Mine", 1_700_000_000_000L, mainUserId);
+        bookedSession("Not mine", 1_700_000_060_000L, otherUserId);
+        String token = loginAndGetToken();
+
+        mockMvc.perform(get("/api/user/" + mainUserId + "/sessions")
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.sessions.length()").value(1))
+                .andExpect(jsonPath("$.sessions[0].name").value("Mine"))
+                .andExpect(jsonPath("$.nextCursor").doesNotExist());
+    }
+
+    @Test
+    void findUserSessions_shouldReturn401_forAnotherUser() throws Exception {
+        String token = loginAndGetToken();
+
+        mockMvc.perform(get("/api/user/" + otherUserId + "/sessions")
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(status().isUnauthorized());
+    }
+
     // ----------------------------------------------------------------------
     // TEST GET /api/session/{id}
     // ----------------------------------------------------------------------
@@ -158,6 +393,26 @@ class SessionIntegrationIT {
                 .andExpect(jsonPath("$.name").value("Yoga session"));
     }
 
+    @Test
+    void findById_shouldReturnParticipantIds() throws Exception {
+        String token = loginAndGetToken();
+        Session session = sessionRepository.findById(sessionId).get();
+        session.getUsers().add(userRepository.findById(otherUserId).get());
+        sessionRepository.save(session);
+
+        mockMvc.perform(get("/api/session/" + sessionId)
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.teacher_id").value(teacherId))
+                .andExpect(jsonPath("$.users.length()").value(1))
+                .andExpect(jsonPath("$.users[0]").value(otherUserId));
+
+        mockMvc.perform(get("/api/session")
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].users[0]").value(otherUserId));
+    }
+
     @Test
     void findById_shouldReturnNotFound_whenSessionMissing() throws Exception {
         String token = loginAndGetToken();
@@ -176,6 +431,35 @@ class SessionIntegrationIT {
                 .andExpect(status().isBadRequest());
     }
 
+    @Test
+    void findById_shouldNotAnswer304AfterASecondChangeWithinTheSameSecond() throws Exception {
+        String token = loginAndGetToken();
+        mockMvc.perform(post("/api/session/" + sessionId + "/participate/" + mainUserId)
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk());
+        LocalDateTime sameSecond = sessionRepository.findVersionById(sessionId).get().getUpdatedAt();
+        String sessionEtag = mockMvc.perform(get("/api/session/" + sessionId).header("Authorization", "Bearer " + token))
+                .andReturn().getResponse().getHeader("ETag");
+        String listEtag = mockMvc.perform(get("/api/session").header("Authorization", "Bearer " + token))
+                .andReturn().getResponse().getHeader("ETag");
+
+        mockMvc.perform(post("/api/session/" + sessionId + "/participate/" + otherUserId)
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk());
+        // what MySQL stores when both changes fall in the same second
+        sessionRepository.touch(sessionId, sameSecond);
+
+        mockMvc.perform(get("/api/session/" + sessionId)
+                        .header("Authorization", "Bearer " + token)
+                        .header("If-None-Match", sessionEtag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.users.length()").value(2));
+        mockMvc.perform(get("/api/session")
+                        .header("Authorization", "Bearer " + token)
+                        .header("If-None-Match", listEtag))
+                .andExpect(status().isOk());
+    }
+
 
     // ----------------------------------------------------------------------
     // TEST POST /api/session
@@ -183,7 +467,7 @@ class SessionIntegrationIT {
 
     @Test
     void create_shouldCreateSession() throws Exception {
-        String token = loginAndGetToken();
+        String token = loginAsAdminAndGetToken();
 
         String json = """
                 {
@@ -205,13 +489,36 @@ class SessionIntegrationIT {
         assertEquals(2, sessionRepository.count());
     }
 
+    @Test
+    void create_shouldReturn403_whenNotAdmin() throws Exception {
+        String token = loginAndGetToken();
+
+        String json = """
+                {
+                    "name": "New Session",
+                    "description": "Test desc",
+                    "date": "2025-01-01T10:00:00",
+                    "teacher_id": %d,
+                    "users": []
+                }
+                """.formatted(teacherId);
+
+        mockMvc.perform(post("/api/session")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(json)
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(status().isForbidden());
+
+        assertEquals(1, sessionRepository.count());
+    }
+
     // ----------------------------------------------------------------------
     // TEST PUT /api/session/{id}
     // ----------------------------------------------------------------------
 
     @Test
     void update_shouldModifySession() throws Exception {
-        String token = loginAndGetToken();
+        String token = loginAsAdminAndGetToken();
 
         String json = """
                 {
@@ -231,11 +538,104 @@ class SessionIntegrationIT {
                 .andExpect(jsonPath("$.name").value("Updated Session"));
     }
 
+    @Test
+    void update_shouldResolveAllParticipants() throws Exception {
+        String token = loginAsAdminAndGetToken();
+
+        String json = """
+                {
+                    "name": "Updated Session",
+                    "description": "Updated desc",
+                    "date": "2025-01-01T10:00:00",
+                    "teacher_id": %d,
+                    "users": [%d, %d]
+                }
+                """.formatted(teacherId, mainUserId, otherUserId);
+
+        mockMvc.perform(put("/api/session/" + sessionId)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(json)
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.users.length()").value(2));
+    }
+
+    @Test
+    void update_shouldKeepRepeatedParticipantOnce() throws Exception {
+        String token = loginAsAdminAndGetToken();
+
+        String json = """
+                {
+                    "name": "Updated Session",
+                    "description": "Updated desc",
+                    "date": "2025-01-01T10:00:00",
+                    "teacher_id": %d,
+                    "users": [%d, %d, %d]
+                }
+                """.formatted(teacherId, mainUserId, otherUserId, mainUserId);
+
+        mockMvc.perform(put("/api/session/" + sessionId)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(json)
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.users.length()").value(2));
+
+        mockMvc.perform(get("/api/session/" + sessionId)
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.users.length()").value(2));
+    }
+
+    @Test
+    void update_shouldReturn400_whenParticipantUnknown() throws Exception {
+        String token = loginAsAdminAndGetToken();
+
+        String json = """
+                {
+                    "name": "Updated Session",
+                    "description": "Updated desc",
+                    "date": "2025-01-01T10:00:00",
+                    "teacher_id": %d,
+                    "users": [%d, 99999]
+                }
+                """.formatted(teacherId, mainUserId);
+
+        mockMvc.perform(put("/api/session/" + sessionId)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(json)
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(status().isBadRequest());
+
+        assertEquals("Yoga session", sessionRepository.findById(sessionId).orElseThrow().getName());
+    }
+
+    @Test
+    void create_shouldReturn400_whenTeacherUnknown() throws Exception {
+        String token = loginAsAdminAndGetToken();
+
+        String json = """
+                {
+                    "name": "Orphan Session",
+                    "description": "desc",
+                    "date": "2025-01-01T10:00:00",
+                    "teacher_id": 99999,
+                    "users": []
+                }
+                """;
+
+        mockMvc.perform(post("/api/session")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(json)
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(status().isBadRequest());
+    }
+
 
     @Test
     void update_shouldReturn400_whenIdIsNotANumber() throws Exception {
 
-        String token = loginAndGetToken();
+        String token = loginAsAdminAndGetToken();
 
         String json = """
                 {
@@ -257,7 +657,7 @@ class SessionIntegrationIT {
 
     @Test
     void delete_shouldRemoveSession() throws Exception {
-        String token = loginAndGetToken();
+        String token = loginAsAdminAndGetToken();
 
         mockMvc.perform(delete("/api/session/" + sessionId)
                         .header("Authorization", "Bearer " + token))
@@ -267,9 +667,20 @@ class SessionIntegrationIT {
     }
 
     @Test
-    void delete_shouldReturn404_whenSessionMissing() throws Exception {
+    void delete_shouldReturn403_whenNotAdmin() throws Exception {
         String token = loginAndGetToken();
 
+        mockMvc.perform(delete("/api/session/" + sessionId)
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(status().isForbidden());
+
+        assertTrue(sessionRepository.existsById(sessionId));
+    }
+
+    @Test
+    void delete_shouldReturn404_whenSessionMissing() throws Exception {
+        String token = loginAsAdminAndGetToken();
+
         mockMvc.perform(delete("/api/session/99999")
                         .header("Authorization", "Bearer " + token))
                 .andExpect(status().isNotFound());
@@ -277,7 +688,7 @@ class SessionIntegrationIT {
 
     @Test
     void delete_shouldReturn400_whenIdInvalid() throws Exception {
-        String token = loginAndGetToken();
+        String token = loginAsAdminAndGetToken();
 
         mockMvc.perform(delete("/api/session/abc")
                         .header("Authorization", "Bearer " + token))
@@ -324,6 +735,113 @@ class SessionIntegrationIT {
                 .andExpect(status().isBadRequest());
     }
 
+    @Test
+    void participate_shouldWaitlistWhenFullAndPromoteOnLeave() throws Exception {
+        String token = loginAndGetToken();
+        Session session = sessionRepository.findById(sessionId).get();
+        session.setCapacity(1);
+        sessionRepository.save(session);
+
+        mockMvc.perform(post("/api/session/" + sessionId + "/participate/" + mainUserId)
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk());
+        mockMvc.perform(post("/api/session/" + sessionId + "/participate/" + otherUserId)
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(status().isAccepted());
+
+        mockMvc.perform(get("/api/session/page?available=true")
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.sessions.length()").value(0));
+
+        mockMvc.perform(delete("/api/session/" + sessionId + "/participate/" + mainUserId)
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/api/session/" + sessionId)
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.capacity").value(1))
+                .andExpect(jsonPath("$.users.length()").value(1))
+                .andExpect(jsonPath("$.users[0]").value(otherUserId));
+    }
+
+    @Test
+    void update_shouldPromoteWaitlistedUserWhenCapacityGrows() throws Exception {
+        String token = loginAsAdminAndGetToken();
+        Session session = sessionRepository.findById(sessionId).get();
+        session.setCapacity(1);
+        sessionRepository.save(session);
+
+        mockMvc.perform(post("/api/session/" + sessionId + "/participate/" + mainUserId)
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk());
+        mockMvc.perform(post("/api/session/" + sessionId + "/participate/" + otherUserId)
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(status().isAccepted());
+
+        String json = """
+                {
+                    "name": "Yoga session",
+                    "description": "desc",
+                    "date": "2025-01-01T10:00:00",
+                    "teacher_id": %d,
+                    "capacity": 2,
+                    "users": [%d]
+                }
+                """.formatted(teacherId, mainUserId);
+        mockMvc.perform(put("/api/session/" + sessionId)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(json)
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/api/session/" + sessionId)
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.capacity").value(2))
+                .andExpect(jsonPath("$.users.length()").value(2));
+    }
+
+    @Test
+    void update_shouldNotOverbookWhileJoinsAreInFlight() throws Exception {
+        int capacity = 5;
+        Session session = sessionRepository.findById(sessionId).get();
+        session.setCapacity(capacity);
+        sessionRepository.save(session);
+        List<Long> joiners = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            joiners.add(userRepository.save(new User("joiner" + i + "@example.com", "Doe", "Joiner", "pwd", false)).getId());
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+
+        try {
+            List<Future<?>> joins = new ArrayList<>();
+            for (Long userId : joiners) {
+                joins.add(pool.submit(() -> {
+                    start.await();
+                    return sessionService.participate(sessionId, userId);
+                }));
+            }
+            start.countDown();
+            for (int i = 0; i < 10; i++) {
+                // The participants are left lazy, so the update keeps PARTICIPATE as it is.
+                Session update = sessionRepository.findById(sessionId).get();
+                update.setDescription("update " + i);
+                sessionService.update(sessionId, update);
+            }
+            for (Future<?> join : joins) {
+                join.get();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertEquals(capacity, sessionRepository.countParticipants(sessionId));
+        assertEquals(Participation.WAITLISTED, sessionService.participate(sessionId, mainUserId));
+    }
+
     // ----------------------------------------------------------------------
     // TEST NO LONGER PARTICIPATE
     // ----------------------------------------------------------------------
@@ -357,7 +875,7 @@ class SessionIntegrationIT {
 
     @Test
     void noLongerParticipate_shouldThrowNotFound_whenSessionDoesNotExist() {
-        SessionService service = new SessionService(sessionRepository, userRepository);
+        SessionService service = new SessionService(sessionRepository, userRepository, new SessionBookingEngine());
 
         assertThrows(NotFoundException.class, () -> service.noLongerParticipate(99999L, mainUserId));
     }
@@ -369,7 +887,7 @@ class SessionIntegrationIT {
         session.getUsers().add(user);
         sessionRepository.save(session);
 
-        SessionService service = new SessionService(sessionRepository, userRepository);
+        SessionService service = new SessionService(sessionRepository, userRepository, new SessionBookingEngine());
 
         // retirer l'utilisateur
         service.noLongerParticipate(sessionId, otherUserId);
@@ -380,15 +898,194 @@ class SessionIntegrationIT {
 
     @Test
     void participate_shouldThrowNotFound_whenSessionDoesNotExist() {
-        SessionService service = new SessionService(sessionRepository, userRepository);
+        SessionService service = new SessionService(sessionRepository, userRepository, new SessionBookingEngine());
 
         assertThrows(NotFoundException.class, () -> service.participate(99999L, mainUserId));
     }
 
     @Test
     void participate_shouldThrowNotFound_whenUserDoesNotExist() {
-        SessionService service = new SessionService(sessionRepository, userRepository);
+        SessionService service = new SessionService(sessionRepository, userRepository, new SessionBookingEngine());
 
         assertThrows(NotFoundException.class, () -> service.participate(sessionId, 99999L));
     }
+
+    // ----------------------------------------------------------------------
+    // TEST /api/session/bulk
+    // ----------------------------------------------------------------------
+
+    private static String ndjsonSessions(int count, Long teacherId) {
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            body.append("""
+                    {"name":"Imported %d","date":"2025-02-01T10:00:00","teacher_id":%d,"description":"desc"}
+                    """.formatted(i, teacherId));
+        }
+        return body.toString();
+    }
+
+    private QueryCounter.Action importBulk(String contentType, String body, String token) {
+        return () -> mockMvc.perform(post("/api/session/bulk")
+                        .contentType(contentType)
+                        .content(body)
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void importBulk_shouldInsertValidRowsAndReportTheOthers() throws Exception {
+        String token = loginAsAdminAndGetToken();
+        String body = """
+                {"name":"Morning","date":"2025-02-01T10:00:00","teacher_id":%d,"description":"desc","capacity":10}
+                {"name":"Ghost","date":"2025-02-01T10:00:00","teacher_id":%d,"description":"desc"}
+                {"name":
+                {"date":"2025-02-01T19:00:00","teacher_id":%d,"description":"desc"}
+                """.formatted(teacherId, teacherId + 1000, teacherId);
+
+        mockMvc.perform(post("/api/session/bulk")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content(body)
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported").value(1))
+                .andExpect(jsonPath("$.rejected").value(3))
+                .andExpect(jsonPath("$.errors[0].row").value(2))
+                .andExpect(jsonPath("$.errors[0].message").value("teacher_id: unknown teacher " + (teacherId + 1000)))
+                .andExpect(jsonPath("$.errors[1].row").value(3))
+                .andExpect(jsonPath("$.errors[2].row").value(4));
+
+        assertEquals(2, sessionRepository.count());
+        assertTrue(sessionRepository.findAll().stream()
+                .anyMatch(session -> "Morning".equals(session.getName()) && session.getCapacity() == 10));
+    }
+
+    @Test
+    void importBulk_shouldReturn403_whenNotAdmin() throws Exception {
+        String token = loginAndGetToken();
+
+        mockMvc.perform(post("/api/session/bulk")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content(ndjsonSessions(1, teacherId))
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(status().isForbidden());
+
+        assertEquals(1, sessionRepository.count());
+    }
+
+    @Test
+    void exportBulk_shouldReimportItsOwnCsv() throws Exception {
+        sessionRepository.addParticipant(sessionId, mainUserId);
+        String token = loginAsAdminAndGetToken();
+
+        MvcResult started = mockMvc.perform(get("/api/session/bulk")
+                        .accept("text/csv")
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String csv = mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        assertTrue(csv.startsWith("id,name,date,teacher_id,description,capacity,users,createdAt,updatedAt\n"));
+        assertTrue(csv.contains(",Yoga session,"));
+
+        mockMvc.perform(post("/api/session/bulk")
+                        .contentType("text/csv")
+                        .content(csv)
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported").value(1))
+                .andExpect(jsonPath("$.rejected").value(0));
+
+        assertEquals(2, sessionRepository.count());
+    }
+
+    @Test
+    void importBulk_shouldNotQueryPerRow() throws Exception {
+        String token = loginAsAdminAndGetToken();
+        importBulk(MediaType.APPLICATION_NDJSON_VALUE, ndjsonSessions(1, teacherId), token).run();
+
+        int few = queryCounter.count(importBulk(MediaType.APPLICATION_NDJSON_VALUE, ndjsonSessions(10, teacherId), token));
+        int many = queryCounter.count(importBulk(MediaType.APPLICATION_NDJSON_VALUE, ndjsonSessions(300, teacherId), token));
+
+        assertEquals(few, many, () -> String.join("\n", queryCounter.statements()));
+        // teacher ids, one batch
+        queryCounter.assertAtMost(2, importBulk(MediaType.APPLICATION_NDJSON_VALUE, ndjsonSessions(300, teacherId), token));
+        assertEquals(612, sessionRepository.count());
+    }
+
+    // ----------------------------------------------------------------------
+    // QUERY COUNTS: no endpoint may issue one query per session or participant
+    // ----------------------------------------------------------------------
+
+    private void saveSessionsWithParticipants(int count) {
+        Teacher teacher = teacherRepository.findById(teacherId).get();
+        for (int i = 0; i < count; i++) {
+            Session session = sessionRepository.save(Session.builder()
+                    .name("Crowded " + i)
+                    .description("desc")
+                    .date(new Date(1_700_000_000_000L + i * 60_000L))
+                    .teacher(teacher)
+                    .build());
+            sessionRepository.addParticipant(session.getId(), mainUserId);
+            sessionRepository.addParticipant(session.getId(), otherUserId);
+        }
+    }
+
+    private QueryCounter.Action authorizedGet(String path, String token) {
+        return () -> mockMvc.perform(get(path)
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void findAll_shouldNotQueryPerSession() throws Exception {
+        String token = loginAndGetToken();
+
+        queryCounter.assertDoesNotScale(() -> saveSessionsWithParticipants(10), authorizedGet("/api/session", token));
+        // version check, summaries, participants
+        queryCounter.assertAtMost(3, authorizedGet("/api/session", token));
+    }
+
+    @Test
+    void findPage_shouldNotQueryPerSession() throws Exception {
+        sessionRepository.addParticipant(sessionId, mainUserId);
+        String token = loginAndGetToken();
+
+        queryCounter.assertDoesNotScale(() -> saveSessionsWithParticipants(10), authorizedGet("/api/session/page?size=20", token));
+        queryCounter.assertDoesNotScale(() -> saveSessionsWithParticipants(10), authorizedGet("/api/session?participant=me", token));
+        // page of summaries, participants of the page
+        queryCounter.assertAtMost(2, authorizedGet("/api/session/page?size=20", token));
+        queryCounter.assertAtMost(2, authorizedGet("/api/session?participant=me", token));
+    }
+
+    @Test
+    void findById_shouldNotQueryPerParticipant() throws Exception {
+        String token = loginAndGetToken();
+
+        queryCounter.assertDoesNotScale(() -> {
+            for (int i = 0; i < 10; i++) {
+                User user = userRepository.save(new User("p" + i + "@example.com", "P", "P", "pwd", false));
+                sessionRepository.addParticipant(sessionId, user.getId());
+            }
+        }, authorizedGet("/api/session/" + sessionId, token));
+        // version check, summary, participants
+        queryCounter.assertAtMost(3, authorizedGet("/api/session/" + sessionId, token));
+    }
+
+    @Test
+    void streamAll_shouldNotQueryPerSession() throws Exception {
+        String token = loginAndGetToken();
+        QueryCounter.Action stream = () -> {
+            MvcResult started = mockMvc.perform(get("/api/session/stream")
+                            .header("Authorization", "Bearer " + token))
+                    .andExpect(request().asyncStarted())
+                    .andReturn();
+            mockMvc.perform(asyncDispatch(started)).andExpect(status().isOk());
+        };
+
+        queryCounter.assertDoesNotScale(() -> saveSessionsWithParticipants(10), stream);
+        // summaries, then participants once per chunk
+        queryCounter.assertAtMost(2, stream);
+    }
 }
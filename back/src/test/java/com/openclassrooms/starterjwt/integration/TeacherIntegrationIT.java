@@ -3,13 +3,20 @@ package com.openclassrooms.starterjwt.integration;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.openclassrooms.starterjwt.repository.TeacherRepository;
 import com.openclassrooms.starterjwt.repository.UserRepository;
+import com.openclassrooms.starterjwt.unit.config.CacheConfig;
+import com.openclassrooms.starterjwt.unit.security.services.PrincipalCache;
+import com.openclassrooms.starterjwt.unit.services.TeacherService;
+import io.micrometer.core.instrument.MeterRegistry;
 import com.openclassrooms.starterjwt.unit.models.Teacher;
 import com.openclassrooms.starterjwt.unit.models.User;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.test.context.ActiveProfiles;
@@ -17,14 +24,23 @@ import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
 import com.openclassrooms.starterjwt.repository.SessionRepository;
 
+import javax.persistence.EntityManagerFactory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @SpringBootTest
 @AutoConfigureMockMvc
 @ActiveProfiles("test")
+@Import(QueryCounter.class)
 class TeacherIntegrationIT {
     private Long teacherId;
     private Long loginUserId;
@@ -40,13 +56,26 @@ class TeacherIntegrationIT {
     private ObjectMapper objectMapper;
     @Autowired
     SessionRepository sessionRepository;
+    @Autowired
+    TeacherService teacherService;
+    @Autowired
+    MeterRegistry meterRegistry;
+    @Autowired
+    PrincipalCache principalCache;
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+    @Autowired
+    QueryCounter queryCounter;
 
 
     @BeforeEach
     void setup() {
         sessionRepository.deleteAll();
         teacherRepository.deleteAll();
+        // the users are recreated with new ids under the same emails
+        userRepository.findAll().forEach(user -> principalCache.evict(user.getEmail()));
         userRepository.deleteAll();
+        teacherService.evictCache();
 
         Teacher teacher = teacherRepository.save(Teacher.builder()
                 .firstName("John")
@@ -74,12 +103,21 @@ class TeacherIntegrationIT {
     }
 
     private String loginAndGetToken() throws Exception {
+        return loginAndGetToken("john@example.com", "secret123");
+    }
+
+    private String loginAsAdminAndGetToken() throws Exception {
+        userRepository.save(new User("admin@example.com", "Admin", "Ada", passwordEncoder.encode("admin123"), true));
+        return loginAndGetToken("admin@example.com", "admin123");
+    }
+
+    private String loginAndGetToken(String email, String password) throws Exception {
         String json = """
                 {
-                  "email": "john@example.com",
-                  "password": "secret123"
+                  "email": "%s",
+                  "password": "%s"
                 }
-                """;
+                """.formatted(email, password);
 
         MvcResult result = mockMvc.perform(post("/api/auth/login")
                         .contentType(MediaType.APPLICATION_JSON)
@@ -132,6 +170,130 @@ class TeacherIntegrationIT {
                 .andExpect(jsonPath("$[1].firstName").exists());
     }
 
+    // ---------------------------------------------------------------------
+    // TEST: teacher cache
+    // ---------------------------------------------------------------------
+    @Test
+    void getTeacherById_shouldServeFromCacheUntilEvicted() throws Exception {
+        String token = loginAsAdminAndGetToken();
+        mockMvc.perform(get("/api/teacher/" + teacherId).header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk());
+
+        // edited behind the application's back: the cached copy is still served
+        teacherRepository.deleteById(teacherId);
+        mockMvc.perform(get("/api/teacher/" + teacherId).header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.firstName").value("John"));
+
+        mockMvc.perform(delete("/api/teacher/cache").header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/api/teacher/" + teacherId).header("Authorization", "Bearer " + token))
+                .andExpect(status().isNotFound());
+
+        double hits = meterRegistry.get("cache.gets")
+                .tag("cache", CacheConfig.TEACHERS)
+                .tag("result", "hit")
+                .functionCounter()
+                .count();
+        assertTrue(hits >= 1);
+    }
+
+    @Test
+    void evictCache_shouldReturn403_whenNotAdmin() throws Exception {
+        String token = loginAndGetToken();
+
+        mockMvc.perform(delete("/api/teacher/cache").header("Authorization", "Bearer " + token))
+                .andExpect(status().isForbidden());
+    }
+
+    @Test
+    void evictCache_shouldAuthenticateAdminFromTokenClaimsWithoutQueryingUsers() throws Exception {
+        String token = loginAsAdminAndGetToken();
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        statistics.setStatisticsEnabled(true);
+
+        try {
+            mockMvc.perform(delete("/api/teacher/cache").header("Authorization", "Bearer " + token))
+                    .andExpect(status().isOk());
+
+            assertEquals(0, statistics.getPrepareStatementCount());
+        } finally {
+            statistics.setStatisticsEnabled(false);
+        }
+    }
+
+    @Test
+    void evictCache_shouldTakeNewAdminFlag_onceOldTokensWereLoggedOutEverywhere() throws Exception {
+        String token = loginAndGetToken();
+        User user = userRepository.findById(loginUserId).orElseThrow();
+        user.setAdmin(true);
+        userRepository.save(user);
+
+        // the claims still say "not an admin"
+        mockMvc.perform(delete("/api/teacher/cache").header("Authorization", "Bearer " + token))
+                .andExpect(status().isForbidden());
+
+        mockMvc.perform(post("/api/auth/logout-all").header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(delete("/api/teacher/cache").header("Authorization", "Bearer " + token))
+                .andExpect(status().isUnauthorized());
+        mockMvc.perform(delete("/api/teacher/cache").header("Authorization", "Bearer " + loginAndGetToken()))
+                .andExpect(status().isOk());
+    }
+
+    // ---------------------------------------------------------------------
+    // TEST: GET /api/teacher/stream (NDJSON)
+    // ---------------------------------------------------------------------
+    @Test
+    void streamAllTeachers_shouldWriteOneLinePerTeacher() throws Exception {
+        String token = loginAndGetToken();
+        MvcResult started = mockMvc.perform(get("/api/teacher/stream").header("Authorization", "Bearer " + token))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String body = mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andReturn().getResponse().getContentAsString();
+
+        String[] lines = body.split("\n");
+        assertEquals(2, lines.length);
+        assertEquals(teacherId.longValue(), objectMapper.readTree(lines[0]).get("id").asLong());
+        assertEquals("Anna", objectMapper.readTree(lines[1]).get("firstName").asText());
+    }
+
+    @Test
+    void streamAllTeachers_shouldNotQueryPerTeacher() throws Exception {
+        String token = loginAndGetToken();
+        QueryCounter.Action stream = () -> {
+            MvcResult started = mockMvc.perform(get("/api/teacher/stream").header("Authorization", "Bearer " + token))
+                    .andExpect(request().asyncStarted())
+                    .andReturn();
+            mockMvc.perform(asyncDispatch(started)).andExpect(status().isOk());
+        };
+
+        queryCounter.assertDoesNotScale(() -> {
+            for (int i = 0; i < 10; i++) {
+                teacherRepository.save(Teacher.builder().firstName("T" + i).lastName("Teacher").build());
+            }
+        }, stream);
+        queryCounter.assertAtMost(1, stream);
+    }
+
+    @Test
+    void findAllTeachers_shouldLoadAllTeachersInOneQueryOnCacheMiss() throws Exception {
+        String token = loginAndGetToken();
+        for (int i = 0; i < 10; i++) {
+            teacherRepository.save(Teacher.builder().firstName("T" + i).lastName("Teacher").build());
+        }
+        teacherService.evictCache();
+
+        queryCounter.assertAtMost(1, () -> mockMvc.perform(get("/api/teacher").header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(12)));
+    }
 
     // ---------------------------------------------------------------------
     // TEST: Security
@@ -3,6 +3,7 @@ package com.openclassrooms.starterjwt.integration;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.openclassrooms.starterjwt.unit.models.User;
+import com.openclassrooms.starterjwt.repository.RevokedTokenRepository;
 import com.openclassrooms.starterjwt.repository.UserRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -10,6 +11,7 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
 
 import org.springframework.http.MediaType;
 import org.springframework.security.crypto.password.PasswordEncoder;
@@ -29,14 +31,21 @@ import java.time.LocalDateTime;
 @SpringBootTest
 @AutoConfigureMockMvc
 @ActiveProfiles("test")
+@Import(QueryCounter.class)
 class UserIntegrationIT {
 
+    @Autowired
+    QueryCounter queryCounter;
+
     @Autowired
     MockMvc mockMvc;
 
     @Autowired
     UserRepository userRepository;
 
+    @Autowired
+    RevokedTokenRepository revokedTokenRepository;
+
     @Autowired
     PasswordEncoder passwordEncoder;
 
@@ -114,6 +123,16 @@ class UserIntegrationIT {
                 .andExpect(jsonPath("$.firstName").value("John"));
     }
 
+    @Test
+    void getUser_shouldIssueSingleQuery() throws Exception {
+        String token = authenticateAndGetToken();
+
+        // the principal comes from the token claims: only the USERS lookup of the endpoint itself
+        queryCounter.assertAtMost(1, () -> mockMvc.perform(get("/api/user/" + userId)
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk()));
+    }
+
     @Test
     void getUser_shouldReturnNotFound_whenUserDoesNotExist() throws Exception {
         String token = authenticateAndGetToken();
@@ -146,6 +165,23 @@ class UserIntegrationIT {
         assertFalse(userRepository.existsById(userId));
     }
 
+    @Test
+    void deleteUser_shouldRevokeItsTokens() throws Exception {
+        String token = authenticateAndGetToken();
+
+        mockMvc.perform(delete("/api/user/" + userId)
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk());
+
+        // even once the account is re-created under the same email
+        userRepository.save(new User("john@example.com", "Doe", "John", "hash", false));
+
+        mockMvc.perform(get("/api/user/" + userId)
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(status().isUnauthorized());
+        assertTrue(revokedTokenRepository.existsById("user:" + userId));
+    }
+
     @Test
     void deleteUser_shouldReturnUnauthorized_whenConnectedUserIsDifferent() throws Exception {
         String token = authenticateAndGetToken();
@@ -214,6 +250,7 @@ class UserIntegrationIT {
                 "F",
                 "p",
                 true,
+                2,
                 now,
                 now
         );
@@ -224,6 +261,7 @@ class UserIntegrationIT {
         assertEquals("F", u.getFirstName());
         assertEquals("p", u.getPassword());
         assertTrue(u.isAdmin());
+        assertEquals(2, u.getTokenVersion());
         assertEquals(now, u.getCreatedAt());
         assertEquals(now, u.getUpdatedAt());
     }
@@ -240,6 +278,7 @@ class UserIntegrationIT {
         u.setFirstName("F");
         u.setPassword("pass");
         u.setAdmin(true);
+        u.setTokenVersion(2);
         u.setCreatedAt(now);
         u.setUpdatedAt(now);
 
@@ -249,14 +288,19 @@ class UserIntegrationIT {
         assertEquals("F", u.getFirstName());
         assertEquals("pass", u.getPassword());
         assertTrue(u.isAdmin());
+        assertEquals(2, u.getTokenVersion());
         assertEquals(now, u.getCreatedAt());
         assertEquals(now, u.getUpdatedAt());
     }
 
     @Test
-    void toString_shouldContainEmailWhenSet() {
+    void toString_shouldOnlyContainId() {
         User u = new User();
+        u.setId(7L);
         u.setEmail("hello@mail.com");
-        assertTrue(u.toString().contains("hello@mail.com"));
+        u.setPassword("$2a$10$abcdefghijklmnopqrstuv");
+        assertTrue(u.toString().contains("id=7"));
+        assertFalse(u.toString().contains("hello@mail.com"));
+        assertFalse(u.toString().contains("$2a$10$"));
     }
 }
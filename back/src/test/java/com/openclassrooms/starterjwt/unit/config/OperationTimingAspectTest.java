@@ -0,0 +1,67 @@
+package com.openclassrooms.starterjwt.unit.config;
+
+import com.openclassrooms.starterjwt.repository.UserRepository;
+import com.openclassrooms.starterjwt.unit.models.User;
+import com.openclassrooms.starterjwt.unit.security.services.PrincipalCache;
+import com.openclassrooms.starterjwt.unit.security.services.TokenRevocationService;
+import com.openclassrooms.starterjwt.unit.security.services.TokenVersionRegistry;
+import com.openclassrooms.starterjwt.unit.services.UserService;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class OperationTimingAspectTest {
+    private SimpleMeterRegistry meterRegistry;
+    private UserRepository userRepository;
+    private UserService userService;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        userRepository = mock(UserRepository.class);
+
+        AspectJProxyFactory factory = new AspectJProxyFactory(new UserService(userRepository,
+                mock(PrincipalCache.class), mock(TokenVersionRegistry.class), mock(TokenRevocationService.class)));
+        factory.setProxyTargetClass(true);
+        factory.addAspect(new OperationTimingAspect(meterRegistry));
+        userService = factory.getProxy();
+    }
+
+    private Timer timer(String method, String exception) {
+        return meterRegistry.find(OperationTimingAspect.METRIC_NAME)
+                .tags("layer", "service", "class", "UserService", "method", method, "exception", exception)
+                .timer();
+    }
+
+    // ----------------------------------------------------
+    // time()
+    // ----------------------------------------------------
+
+    @Test
+    void shouldTimeEveryCallByLayerClassAndMethod() {
+        when(userRepository.findById(1L)).thenReturn(Optional.of(new User()));
+
+        userService.findById(1L);
+        userService.findById(1L);
+
+        assertNotNull(timer("findById", "none"));
+        assertEquals(2, timer("findById", "none").count());
+    }
+
+    @Test
+    void shouldTagAndRethrowExceptions() {
+        when(userRepository.findById(1L)).thenThrow(new IllegalStateException("down"));
+
+        assertThrows(IllegalStateException.class, () -> userService.findById(1L));
+
+        assertEquals(1, timer("findById", "IllegalStateException").count());
+        assertNull(timer("findById", "none"));
+    }
+}
@@ -0,0 +1,72 @@
+package com.openclassrooms.starterjwt.unit.config;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.core.spi.FilterReply;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SampledDebugFilterTest {
+    private LoggerContext context;
+    private SampledDebugFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        context = new LoggerContext();
+        filter = new SampledDebugFilter();
+        filter.setRate(10);
+        filter.start();
+    }
+
+    private Logger logger(String name, Level level) {
+        Logger logger = context.getLogger(name);
+        logger.setLevel(level);
+        return logger;
+    }
+
+    private long kept(Logger logger, Level level, int events) {
+        return IntStream.range(0, events)
+                .mapToObj(i -> filter.decide(null, logger, level, "event {}", new Object[] { i }, null))
+                .filter(reply -> reply == FilterReply.NEUTRAL)
+                .count();
+    }
+
+    // ----------------------------------------------------
+    // decide()
+    // ----------------------------------------------------
+
+    @Test
+    void shouldKeepOneDebugEventInRatePerLogger() {
+        Logger sql = logger("org.hibernate.SQL", Level.DEBUG);
+        Logger other = logger("com.example", Level.TRACE);
+
+        assertEquals(10, kept(sql, Level.DEBUG, 100));
+        assertEquals(10, kept(other, Level.TRACE, 100));
+    }
+
+    @Test
+    void shouldKeepEveryInfoEvent() {
+        Logger logger = logger("com.example", Level.DEBUG);
+
+        assertEquals(100, kept(logger, Level.INFO, 100));
+        assertEquals(100, kept(logger, Level.ERROR, 100));
+    }
+
+    @Test
+    void shouldLeaveDisabledLevelsAndLevelChecksToTheLogger() {
+        Logger logger = logger("com.example", Level.INFO);
+
+        assertEquals(100, kept(logger, Level.DEBUG, 100));
+        assertEquals(FilterReply.NEUTRAL, filter.decide(null, logger("com.debug", Level.DEBUG), Level.DEBUG, null, null, null));
+    }
+
+    @Test
+    void setRate_shouldRejectNonPositiveRate() {
+        assertThrows(IllegalArgumentException.class, () -> filter.setRate(0));
+    }
+}
@@ -1,13 +1,21 @@
 package com.openclassrooms.starterjwt.unit.controllers;
 
+import com.openclassrooms.starterjwt.exception.ServiceUnavailableException;
 import com.openclassrooms.starterjwt.unit.models.User;
 import com.openclassrooms.starterjwt.unit.payload.request.LoginRequest;
+import com.openclassrooms.starterjwt.unit.payload.request.RefreshTokenRequest;
 import com.openclassrooms.starterjwt.unit.payload.request.SignupRequest;
 import com.openclassrooms.starterjwt.unit.payload.response.JwtResponse;
 import com.openclassrooms.starterjwt.unit.payload.response.MessageResponse;
 import com.openclassrooms.starterjwt.repository.UserRepository;
 import com.openclassrooms.starterjwt.unit.security.jwt.JwtUtils;
+import com.openclassrooms.starterjwt.unit.security.services.RefreshTokenService;
+import com.openclassrooms.starterjwt.unit.security.services.TokenRevocationService;
+import com.openclassrooms.starterjwt.unit.security.services.TokenVersionRegistry;
 import com.openclassrooms.starterjwt.unit.security.services.UserDetailsImpl;
+import com.openclassrooms.starterjwt.unit.security.services.UserDetailsServiceImpl;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
@@ -15,9 +23,11 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 
-import java.util.Optional;
+import java.util.Date;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -29,6 +39,10 @@ class AuthControllerTest {
     private PasswordEncoder passwordEncoder;
     private JwtUtils jwtUtils;
     private UserRepository userRepository;
+    private TokenRevocationService tokenRevocations;
+    private RefreshTokenService refreshTokens;
+    private UserDetailsServiceImpl userDetailsService;
+    private TokenVersionRegistry tokenVersions;
 
     @BeforeEach
     void setup() {
@@ -36,8 +50,13 @@ class AuthControllerTest {
         passwordEncoder = mock(PasswordEncoder.class);
         jwtUtils = mock(JwtUtils.class);
         userRepository = mock(UserRepository.class);
+        tokenRevocations = mock(TokenRevocationService.class);
+        refreshTokens = mock(RefreshTokenService.class);
+        userDetailsService = mock(UserDetailsServiceImpl.class);
+        tokenVersions = mock(TokenVersionRegistry.class);
 
-        authController = new AuthController(authenticationManager, passwordEncoder, jwtUtils, userRepository);
+        authController = new AuthController(authenticationManager, passwordEncoder, jwtUtils, userRepository,
+                tokenRevocations, refreshTokens, userDetailsService, tokenVersions);
     }
 
     // -------------------------------
@@ -106,9 +125,7 @@ class AuthControllerTest {
                 .thenReturn(authentication);
         when(authentication.getPrincipal()).thenReturn(principal);
         when(jwtUtils.generateJwtToken(authentication)).thenReturn("JWT-TOKEN");
-
-        User userFromRepo = new User("john@example.com", "Doe", "John", "secret", false);
-        when(userRepository.findByEmail("john@example.com")).thenReturn(Optional.of(userFromRepo));
+        when(refreshTokens.issue(1L)).thenReturn("REFRESH-TOKEN");
 
         ResponseEntity<?> response = authController.authenticateUser(req);
 
@@ -116,26 +133,26 @@ class AuthControllerTest {
         assertTrue(response.getBody() instanceof JwtResponse);
         JwtResponse jwtResponse = (JwtResponse) response.getBody();
         assertEquals("JWT-TOKEN", jwtResponse.getToken());
+        assertEquals("REFRESH-TOKEN", jwtResponse.getRefreshToken());
         assertEquals("john@example.com", jwtResponse.getUsername());
         assertNotEquals(true, (boolean) jwtResponse.getAdmin());
+        verifyNoInteractions(userRepository);
     }
 
 
     @Test
-    void authenticateUser_shouldReturnJwt_whenUserIsNull() {
-        // Cette branche ne peut pas arriver en vrai avec Spring Security,
-        // mais en test unitaire on peut mocker UserRepository pour renvoyer null.
+    void authenticateUser_shouldTakeAdminFlagFromPrincipal() {
         LoginRequest req = new LoginRequest();
-        req.setEmail("john@example.com");
+        req.setEmail("yoga@studio.com");
         req.setPassword("secret");
 
         Authentication authentication = mock(Authentication.class);
         UserDetailsImpl principal = UserDetailsImpl.builder()
                 .id(1L)
-                .username("john@example.com")
-                .firstName("John")
-                .lastName("Doe")
-                .admin(false)
+                .username("yoga@studio.com")
+                .firstName("Admin")
+                .lastName("Admin")
+                .admin(true)
                 .password("secret")
                 .build();
 
@@ -144,16 +161,150 @@ class AuthControllerTest {
         when(authentication.getPrincipal()).thenReturn(principal);
         when(jwtUtils.generateJwtToken(authentication)).thenReturn("JWT-TOKEN");
 
-        // simulate userRepository.findByEmail() -> empty
-        when(userRepository.findByEmail("john@example.com")).thenReturn(Optional.empty());
-
         ResponseEntity<?> response = authController.authenticateUser(req);
 
         assertEquals(200, response.getStatusCodeValue());
         JwtResponse jwtResponse = (JwtResponse) response.getBody();
         assertNotNull(jwtResponse);
-        // admin doit rester false car user == null
-        assertNotEquals(true, (boolean) jwtResponse.getAdmin());
+        assertTrue(jwtResponse.getAdmin());
+        verifyNoInteractions(userRepository);
+    }
+
+    // -------------------------------
+    // REFRESH
+    // -------------------------------
+
+    private RefreshTokenRequest refreshRequest(String refreshToken) {
+        RefreshTokenRequest request = new RefreshTokenRequest();
+        request.setRefreshToken(refreshToken);
+        return request;
+    }
+
+    @Test
+    void refresh_shouldReturnNewAccessAndRefreshTokens() {
+        UserDetailsImpl principal = UserDetailsImpl.builder()
+                .id(1L)
+                .username("john@example.com")
+                .firstName("John")
+                .lastName("Doe")
+                .admin(true)
+                .build();
+        when(refreshTokens.rotate("old")).thenReturn(new RefreshTokenService.Rotation(1L, "new"));
+        when(userDetailsService.loadUserById(1L)).thenReturn(principal);
+        when(jwtUtils.generateJwtToken(principal)).thenReturn("JWT-TOKEN");
+
+        ResponseEntity<?> response = authController.refresh(refreshRequest("old"));
+
+        assertEquals(200, response.getStatusCodeValue());
+        JwtResponse jwtResponse = (JwtResponse) response.getBody();
+        assertEquals("JWT-TOKEN", jwtResponse.getToken());
+        assertEquals("new", jwtResponse.getRefreshToken());
+        assertEquals("john@example.com", jwtResponse.getUsername());
+        assertTrue(jwtResponse.getAdmin());
+    }
+
+    @Test
+    void refresh_shouldReturn401_whenRefreshTokenIsRejected() {
+        when(refreshTokens.rotate("used")).thenReturn(null);
+
+        ResponseEntity<?> response = authController.refresh(refreshRequest("used"));
+
+        assertEquals(401, response.getStatusCodeValue());
+        verifyNoInteractions(userDetailsService);
+    }
+
+    @Test
+    void refresh_shouldReturn401_whenUserWasDeleted() {
+        when(refreshTokens.rotate("old")).thenReturn(new RefreshTokenService.Rotation(1L, "new"));
+        when(userDetailsService.loadUserById(1L)).thenThrow(new UsernameNotFoundException("gone"));
+
+        ResponseEntity<?> response = authController.refresh(refreshRequest("old"));
+
+        assertEquals(401, response.getStatusCodeValue());
+    }
+
+    // -------------------------------
+    // LOGOUT
+    // -------------------------------
+
+    @Test
+    void logout_shouldRevokeTheBearerTokenUntilItExpires() {
+        Date expiration = new Date(System.currentTimeMillis() + 60000);
+        Claims claims = Jwts.claims().setId("jti-1").setSubject("john@example.com").setExpiration(expiration);
+        claims.put(JwtUtils.CLAIM_ID, 3L);
+        when(jwtUtils.parseClaims("token")).thenReturn(claims);
+
+        ResponseEntity<?> response = authController.logout("Bearer token", null);
+
+        assertEquals(200, response.getStatusCodeValue());
+        verify(tokenRevocations).revoke("jti-1", 3L, claims.getExpiration());
+        verifyNoInteractions(refreshTokens);
+    }
+
+    @Test
+    void logout_shouldAlsoRevokeTheRefreshTokenFamily_whenGiven() {
+        when(jwtUtils.parseClaims("token")).thenReturn(Jwts.claims().setId("jti-1").setSubject("john@example.com"));
+
+        ResponseEntity<?> response = authController.logout("Bearer token", refreshRequest("refresh"));
+
+        assertEquals(200, response.getStatusCodeValue());
+        verify(refreshTokens).revoke("refresh");
+    }
+
+    @Test
+    void logout_shouldReturnBadRequest_whenTokenIsMissingOrInvalid() {
+        when(jwtUtils.parseClaims("bad")).thenReturn(null);
+
+        assertEquals(400, authController.logout(null, null).getStatusCodeValue());
+        assertEquals(400, authController.logout("Bearer bad", null).getStatusCodeValue());
+        verifyNoInteractions(tokenRevocations);
+    }
+
+    @Test
+    void logout_shouldReturnBadRequest_whenTokenHasNoId() {
+        when(jwtUtils.parseClaims("legacy")).thenReturn(Jwts.claims().setSubject("john@example.com"));
+
+        ResponseEntity<?> response = authController.logout("Bearer legacy", null);
+
+        assertEquals(400, response.getStatusCodeValue());
+        verifyNoInteractions(tokenRevocations);
+    }
+
+    @Test
+    void logoutEverywhere_shouldBumpTokenVersionAndRevokeEveryRefreshFamily() {
+        UserDetailsImpl principal = UserDetailsImpl.builder().id(3L).username("john@example.com").build();
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities()));
+
+        ResponseEntity<?> response = authController.logoutEverywhere();
+
+        assertEquals(200, response.getStatusCodeValue());
+        verify(tokenVersions).bump(3L);
+        verify(refreshTokens).revokeAll(3L);
+        assertNull(SecurityContextHolder.getContext().getAuthentication());
+    }
+
+    @Test
+    void logoutEverywhere_shouldReturn401_whenNotAuthenticated() {
+        SecurityContextHolder.clearContext();
+
+        ResponseEntity<?> response = authController.logoutEverywhere();
+
+        assertEquals(401, response.getStatusCodeValue());
+        verifyNoInteractions(tokenVersions, refreshTokens);
+    }
+
+    // -------------------------------
+    // BACKPRESSURE
+    // -------------------------------
+
+    @Test
+    void serviceUnavailable_shouldReturn503WithRetryAfter() {
+        ResponseEntity<MessageResponse> response = authController.serviceUnavailable(
+                new ServiceUnavailableException("Too many concurrent authentications", 2));
 
+        assertEquals(503, response.getStatusCodeValue());
+        assertEquals("2", response.getHeaders().getFirst("Retry-After"));
+        assertEquals("Error: Too many concurrent authentications", response.getBody().getMessage());
     }
 }
@@ -1,8 +1,21 @@
 package com.openclassrooms.starterjwt.unit.controllers;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.openclassrooms.starterjwt.dto.SessionDto;
+import com.openclassrooms.starterjwt.dto.SessionPageDto;
+import com.openclassrooms.starterjwt.exception.BadRequestException;
 import com.openclassrooms.starterjwt.unit.mapper.SessionMapper;
 import com.openclassrooms.starterjwt.unit.models.Session;
+import com.openclassrooms.starterjwt.unit.models.SessionSummary;
+import com.openclassrooms.starterjwt.unit.payload.request.SessionSearchRequest;
+import com.openclassrooms.starterjwt.unit.security.services.UserDetailsImpl;
+import com.openclassrooms.starterjwt.unit.services.ChunkConsumer;
+import com.openclassrooms.starterjwt.unit.services.ImportRow;
+import com.openclassrooms.starterjwt.unit.services.Participation;
+import com.openclassrooms.starterjwt.unit.services.ResourceVersion;
+import com.openclassrooms.starterjwt.unit.services.SessionImportReport;
+import com.openclassrooms.starterjwt.unit.services.SessionImportService;
+import com.openclassrooms.starterjwt.unit.services.SessionPage;
 import com.openclassrooms.starterjwt.unit.services.SessionService;
 
 import org.junit.jupiter.api.BeforeEach;
@@ -11,10 +24,26 @@ import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.http.ResponseEntity;
-
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -27,12 +56,23 @@ class SessionControllerTest {
     @Mock
     private SessionMapper sessionMapper;
 
+    @Mock
+    private SessionImportService sessionImportService;
+
     private SessionController controller;
 
+    private static final ResourceVersion VERSION =
+            ResourceVersion.ofEntity("session", 1L, LocalDateTime.of(2025, 1, 1, 10, 0));
+
+    private static final ResourceVersion COLLECTION_VERSION =
+            ResourceVersion.ofCollection("sessions", 2, 2L, LocalDateTime.of(2025, 1, 1, 10, 0));
+
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
-        controller = new SessionController(sessionService, sessionMapper);
+        controller = new SessionController(sessionService, sessionMapper, sessionImportService,
+                new ObjectMapper().findAndRegisterModules());
+        SecurityContextHolder.clearContext();
     }
 
     // --------------------------------------------------------------------
@@ -41,33 +81,52 @@ class SessionControllerTest {
 
     @Test
     void findById_shouldReturnOk_whenSessionExists() {
-        Session session = new Session();
-        session.setId(1L);
+        SessionSummary session = summary(1L);
+        List<SessionSummary> sessions = Collections.singletonList(session);
+        Map<Long, List<Long>> participants = Collections.singletonMap(1L, Arrays.asList(2L, 3L));
 
         SessionDto dto = new SessionDto();
         dto.setId(1L);
 
-        when(sessionService.getById(1L)).thenReturn(session);
-        when(sessionMapper.toDto(session)).thenReturn(dto);
+        when(sessionService.getVersion(1L)).thenReturn(VERSION);
+        when(sessionService.getSummaryById(1L)).thenReturn(session);
+        when(sessionService.findParticipantIds(sessions)).thenReturn(participants);
+        when(sessionMapper.toDto(sessions, participants)).thenReturn(Collections.singletonList(dto));
 
-        ResponseEntity<?> response = controller.findById("1");
+        ServletWebRequest request = webRequest(null);
+        ResponseEntity<?> response = controller.findById("1", request);
 
         assertEquals(200, response.getStatusCodeValue());
         assertEquals(dto, response.getBody());
+        assertEquals("\"" + VERSION.getEtag() + "\"", request.getResponse().getHeader("ETag"));
+        verify(sessionService, never()).getById(anyLong());
+    }
+
+    @Test
+    void findById_shouldReturnNotModified_whenEtagMatches() {
+        when(sessionService.getVersion(1L)).thenReturn(VERSION);
+
+        ServletWebRequest request = webRequest("\"" + VERSION.getEtag() + "\"");
+        ResponseEntity<?> response = controller.findById("1", request);
+
+        assertNull(response);
+        assertEquals(304, request.getResponse().getStatus());
+        verify(sessionService, never()).getSummaryById(anyLong());
+        verify(sessionService, never()).findParticipantIds(any());
     }
 
     @Test
     void findById_shouldReturnNotFound_whenSessionDoesNotExist() {
-        when(sessionService.getById(1L)).thenReturn(null);
+        when(sessionService.getVersion(1L)).thenReturn(null);
 
-        ResponseEntity<?> response = controller.findById("1");
+        ResponseEntity<?> response = controller.findById("1", webRequest(null));
 
         assertEquals(404, response.getStatusCodeValue());
     }
 
     @Test
     void findById_shouldReturnBadRequest_whenIdNotNumber() {
-        ResponseEntity<?> response = controller.findById("abc");
+        ResponseEntity<?> response = controller.findById("abc", webRequest(null));
 
         assertEquals(400, response.getStatusCodeValue());
     }
@@ -78,18 +137,95 @@ class SessionControllerTest {
 
     @Test
     void findAll_shouldReturnListOfSessions() {
-        List<Session> sessions = Arrays.asList(new Session(), new Session());
+        List<SessionSummary> sessions = Arrays.asList(summary(1L), summary(2L));
+        Map<Long, List<Long>> participants = Collections.emptyMap();
         List<SessionDto> dtos = Arrays.asList(new SessionDto(), new SessionDto());
 
-        when(sessionService.findAll()).thenReturn(sessions);
-        when(sessionMapper.toDto(sessions)).thenReturn(dtos);
+        when(sessionService.getCollectionVersion()).thenReturn(COLLECTION_VERSION);
+        when(sessionService.findAllSummaries()).thenReturn(sessions);
+        when(sessionService.findParticipantIds(sessions)).thenReturn(participants);
+        when(sessionMapper.toDto(sessions, participants)).thenReturn(dtos);
 
-        ResponseEntity<?> response = controller.findAll();
+        ResponseEntity<?> response = controller.findAll(webRequest(null));
 
         assertEquals(200, response.getStatusCodeValue());
         assertEquals(dtos, response.getBody());
     }
 
+    @Test
+    void findAll_shouldReturnNotModified_whenEtagMatches() {
+        when(sessionService.getCollectionVersion()).thenReturn(COLLECTION_VERSION);
+
+        ServletWebRequest request = webRequest("\"" + COLLECTION_VERSION.getEtag() + "\"");
+        ResponseEntity<?> response = controller.findAll(request);
+
+        assertNull(response);
+        assertEquals(304, request.getResponse().getStatus());
+        verify(sessionService, never()).findAllSummaries();
+    }
+
+    // --------------------------------------------------------------------
+    // GET /api/session/page
+    // --------------------------------------------------------------------
+
+    @Test
+    void findPage_shouldReturnSessionsAndNextCursor() {
+        SessionSearchRequest search = new SessionSearchRequest();
+        List<SessionSummary> sessions = Arrays.asList(summary(1L), summary(2L));
+        Map<Long, List<Long>> participants = Collections.emptyMap();
+        List<SessionDto> dtos = Arrays.asList(new SessionDto(), new SessionDto());
+
+        when(sessionService.findPage(search)).thenReturn(new SessionPage(sessions, "next"));
+        when(sessionService.findParticipantIds(sessions)).thenReturn(participants);
+        when(sessionMapper.toDto(sessions, participants)).thenReturn(dtos);
+
+        ResponseEntity<?> response = controller.findPage(search);
+
+        assertEquals(200, response.getStatusCodeValue());
+        SessionPageDto body = (SessionPageDto) response.getBody();
+        assertNotNull(body);
+        assertEquals(dtos, body.getSessions());
+        assertEquals("next", body.getNextCursor());
+    }
+
+    @Test
+    void findByParticipant_shouldScopeThePageToTheCurrentUser() {
+        SessionSearchRequest search = new SessionSearchRequest();
+        search.setParticipant("me");
+        search.setParticipantId(99L);
+        UserDetailsImpl principal = UserDetailsImpl.builder().id(7L).username("me@example.com").build();
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities()));
+
+        when(sessionService.findPage(search)).thenReturn(new SessionPage(Collections.emptyList(), null));
+
+        ResponseEntity<?> response = controller.findByParticipant(search);
+
+        assertEquals(200, response.getStatusCodeValue());
+        assertEquals(7L, search.getParticipantId());
+    }
+
+    @Test
+    void findPage_shouldIgnoreAParticipantIdSentByTheClient() {
+        SessionSearchRequest search = new SessionSearchRequest();
+        search.setParticipantId(99L);
+
+        when(sessionService.findPage(search)).thenReturn(new SessionPage(Collections.emptyList(), null));
+
+        controller.findPage(search);
+
+        assertNull(search.getParticipantId());
+    }
+
+    @Test
+    void findPage_shouldThrowBadRequest_whenParticipantIsNotMe() {
+        SessionSearchRequest search = new SessionSearchRequest();
+        search.setParticipant("12");
+
+        assertThrows(BadRequestException.class, () -> controller.findPage(search));
+        verify(sessionService, never()).findPage(any());
+    }
+
     // --------------------------------------------------------------------
     // POST /api/session
     // --------------------------------------------------------------------
@@ -186,6 +322,15 @@ class SessionControllerTest {
         verify(sessionService).participate(1L, 2L);
     }
 
+    @Test
+    void participate_shouldReturnAccepted_whenWaitlisted() {
+        when(sessionService.participate(1L, 2L)).thenReturn(Participation.WAITLISTED);
+
+        ResponseEntity<?> response = controller.participate("1", "2");
+
+        assertEquals(202, response.getStatusCodeValue());
+    }
+
     @Test
     void participate_shouldReturnBadRequest_whenIdsNotNumeric() {
         ResponseEntity<?> response = controller.participate("aaa", "2");
@@ -213,4 +358,127 @@ class SessionControllerTest {
         assertEquals(400, response.getStatusCodeValue());
         verify(sessionService, never()).noLongerParticipate(anyLong(), anyLong());
     }
+
+    // --------------------------------------------------------------------
+    // GET /api/session/stream
+    // --------------------------------------------------------------------
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void streamAll_shouldWriteOneJsonLinePerSession() throws Exception {
+        List<SessionSummary> chunk = Arrays.asList(summary(1L), summary(2L));
+        Map<Long, List<Long>> participants = Collections.singletonMap(1L, Arrays.asList(7L));
+        SessionDto first = new SessionDto();
+        first.setId(1L);
+        SessionDto second = new SessionDto();
+        second.setId(2L);
+
+        doAnswer(invocation -> {
+            ((ChunkConsumer<SessionSummary>) invocation.getArgument(0)).accept(chunk);
+            return null;
+        }).when(sessionService).streamAllSummaries(any());
+        when(sessionService.findParticipantIds(chunk)).thenReturn(participants);
+        when(sessionMapper.toDto(chunk, participants)).thenReturn(Arrays.asList(first, second));
+
+        ResponseEntity<StreamingResponseBody> response = controller.streamAll();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        response.getBody().writeTo(out);
+
+        assertEquals(MediaType.APPLICATION_NDJSON, response.getHeaders().getContentType());
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(2, lines.length);
+        assertTrue(lines[0].startsWith("{\"id\":1"));
+        assertTrue(lines[1].startsWith("{\"id\":2"));
+    }
+
+    // --------------------------------------------------------------------
+    // /api/session/bulk
+    // --------------------------------------------------------------------
+
+    @SuppressWarnings("unchecked")
+    private List<ImportRow<SessionDto>> importRows(String contentType, String body) throws Exception {
+        List<ImportRow<SessionDto>> rows = new ArrayList<>();
+        when(sessionImportService.importSessions(any())).thenAnswer(invocation -> {
+            ((Iterator<ImportRow<SessionDto>>) invocation.getArgument(0)).forEachRemaining(rows::add);
+            return new SessionImportReport();
+        });
+
+        ResponseEntity<SessionImportReport> response = controller.importAll(MediaType.parseMediaType(contentType),
+                new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals(200, response.getStatusCodeValue());
+        return rows;
+    }
+
+    @Test
+    void importAll_shouldReadNdjsonLineByLine() throws Exception {
+        List<ImportRow<SessionDto>> rows = importRows("application/x-ndjson", """
+                {"name":"Morning","date":"2025-01-01T10:00:00","teacher_id":1,"description":"d"}
+
+                {"name":
+                {"name":"Evening","date":"2025-01-01T19:00:00","teacher_id":2,"description":"d","capacity":12}
+                """);
+
+        assertEquals(3, rows.size());
+        assertEquals("Morning", rows.get(0).getValue().getName());
+        assertEquals(2, rows.get(1).getRow());
+        assertTrue(rows.get(1).isFailed());
+        assertEquals(3, rows.get(2).getRow());
+        assertEquals(12, rows.get(2).getValue().getCapacity());
+    }
+
+    @Test
+    void importAll_shouldReadCsvRecordsAndIgnoreGeneratedColumns() throws Exception {
+        List<ImportRow<SessionDto>> rows = importRows("text/csv; charset=UTF-8", """
+                id,name,date,teacher_id,description,capacity,users
+                9,Morning,2025-01-01T10:00:00,1,"Breathing, then stretching",,3;4
+                10,Evening,2025-01-01T19:00:00,not-a-number,d,12,
+                """);
+
+        assertEquals(2, rows.size());
+        SessionDto morning = rows.get(0).getValue();
+        assertNull(morning.getId());
+        assertNull(morning.getUsers());
+        assertNull(morning.getCapacity());
+        assertEquals("Breathing, then stretching", morning.getDescription());
+        assertEquals(1L, morning.getTeacher_id());
+        assertTrue(rows.get(1).isFailed());
+        assertEquals(2, rows.get(1).getRow());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void exportCsv_shouldWriteHeaderAndOneRecordPerSession() throws Exception {
+        List<SessionSummary> chunk = Collections.singletonList(summary(1L));
+        Map<Long, List<Long>> participants = Collections.singletonMap(1L, Arrays.asList(7L, 8L));
+        SessionDto session = new SessionDto(1L, "Morning, slow", new Date(0), 3L, "d", null, Arrays.asList(7L, 8L), null, null);
+
+        doAnswer(invocation -> {
+            ((ChunkConsumer<SessionSummary>) invocation.getArgument(0)).accept(chunk);
+            return null;
+        }).when(sessionService).streamAllSummaries(any());
+        when(sessionService.findParticipantIds(chunk)).thenReturn(participants);
+        when(sessionMapper.toDto(chunk, participants)).thenReturn(Collections.singletonList(session));
+
+        ResponseEntity<StreamingResponseBody> response = controller.exportCsv();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        response.getBody().writeTo(out);
+
+        assertEquals(MediaType.parseMediaType("text/csv"), response.getHeaders().getContentType());
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals("id,name,date,teacher_id,description,capacity,users,createdAt,updatedAt", lines[0]);
+        assertEquals("1,\"Morning, slow\",1970-01-01T00:00:00.000+00:00,3,d,,7;8,,", lines[1]);
+    }
+
+    private ServletWebRequest webRequest(String ifNoneMatch) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/session");
+        if (ifNoneMatch != null) {
+            request.addHeader("If-None-Match", ifNoneMatch);
+        }
+        return new ServletWebRequest(request, new MockHttpServletResponse());
+    }
+
+    private SessionSummary summary(Long id) {
+        return new SessionSummary(id, "Session " + id, new Date(), "desc", 1L, null, 0, null, null);
+    }
 }
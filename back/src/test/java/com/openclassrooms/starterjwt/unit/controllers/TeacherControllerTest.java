@@ -1,8 +1,11 @@
 package com.openclassrooms.starterjwt.unit.controllers;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.openclassrooms.starterjwt.dto.TeacherDto;
 import com.openclassrooms.starterjwt.unit.mapper.TeacherMapper;
 import com.openclassrooms.starterjwt.unit.models.Teacher;
+import com.openclassrooms.starterjwt.unit.services.ChunkConsumer;
+import com.openclassrooms.starterjwt.unit.services.ResourceVersion;
 import com.openclassrooms.starterjwt.unit.services.TeacherService;
 
 import org.junit.jupiter.api.BeforeEach;
@@ -11,8 +14,17 @@ import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.Arrays;
 import java.util.List;
 
@@ -32,7 +44,7 @@ class TeacherControllerTest {
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
-        controller = new TeacherController(teacherService, teacherMapper);
+        controller = new TeacherController(teacherService, teacherMapper, new ObjectMapper().findAndRegisterModules());
     }
 
     // --------------------------------------------------------------------
@@ -41,32 +53,44 @@ class TeacherControllerTest {
 
     @Test
     void findById_shouldReturnOk_whenTeacherFound() {
-        Teacher teacher = new Teacher();
-        teacher.setId(1L);
-
         TeacherDto dto = new TeacherDto();
+        dto.setId(1L);
 
-        when(teacherService.findById(1L)).thenReturn(teacher);
-        when(teacherMapper.toDto(teacher)).thenReturn(dto);
+        when(teacherService.findById(1L)).thenReturn(dto);
 
-        ResponseEntity<?> response = controller.findById("1");
+        ResponseEntity<?> response = controller.findById("1", webRequest(null));
 
         assertEquals(200, response.getStatusCodeValue());
         assertEquals(dto, response.getBody());
     }
 
+    @Test
+    void findById_shouldReturnNotModified_whenUnchangedSince() {
+        LocalDateTime updatedAt = LocalDateTime.of(2025, 1, 1, 10, 0);
+        TeacherDto teacher = new TeacherDto(1L, "Doe", "John", null, updatedAt);
+        when(teacherService.findById(1L)).thenReturn(teacher);
+
+        ServletWebRequest request = webRequest(null);
+        ((MockHttpServletRequest) request.getRequest()).addHeader("If-Modified-Since",
+                updatedAt.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+        ResponseEntity<?> response = controller.findById("1", request);
+
+        assertNull(response);
+        assertEquals(304, request.getResponse().getStatus());
+    }
+
     @Test
     void findById_shouldReturnNotFound_whenTeacherNotFound() {
         when(teacherService.findById(1L)).thenReturn(null);
 
-        ResponseEntity<?> response = controller.findById("1");
+        ResponseEntity<?> response = controller.findById("1", webRequest(null));
 
         assertEquals(404, response.getStatusCodeValue());
     }
 
     @Test
     void findById_shouldReturnBadRequest_whenIdNotNumeric() {
-        ResponseEntity<?> response = controller.findById("abc");
+        ResponseEntity<?> response = controller.findById("abc", webRequest(null));
 
         assertEquals(400, response.getStatusCodeValue());
         verify(teacherService, never()).findById(anyLong());
@@ -78,15 +102,81 @@ class TeacherControllerTest {
 
     @Test
     void findAll_shouldReturnTeacherList() {
-        List<Teacher> teachers = Arrays.asList(new Teacher(), new Teacher());
         List<TeacherDto> dtoList = Arrays.asList(new TeacherDto(), new TeacherDto());
 
-        when(teacherService.findAll()).thenReturn(teachers);
-        when(teacherMapper.toDto(teachers)).thenReturn(dtoList);
+        when(teacherService.findAll()).thenReturn(dtoList);
 
-        ResponseEntity<?> response = controller.findAll();
+        ServletWebRequest request = webRequest(null);
+        ResponseEntity<?> response = controller.findAll(request);
 
         assertEquals(200, response.getStatusCodeValue());
         assertEquals(dtoList, response.getBody());
+        assertNotNull(request.getResponse().getHeader("ETag"));
+    }
+
+    @Test
+    void findAll_shouldReturnNotModified_whenEtagMatches() {
+        TeacherDto first = new TeacherDto();
+        first.setId(1L);
+        TeacherDto second = new TeacherDto();
+        second.setId(2L);
+        List<TeacherDto> teachers = Arrays.asList(first, second);
+        when(teacherService.findAll()).thenReturn(teachers);
+        String etag = ResourceVersion.ofCollection("teachers", teachers, TeacherDto::getId, TeacherDto::getUpdatedAt).getEtag();
+
+        ServletWebRequest request = webRequest("\"" + etag + "\"");
+        ResponseEntity<?> response = controller.findAll(request);
+
+        assertNull(response);
+        assertEquals(304, request.getResponse().getStatus());
+    }
+
+    private ServletWebRequest webRequest(String ifNoneMatch) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/teacher");
+        if (ifNoneMatch != null) {
+            request.addHeader("If-None-Match", ifNoneMatch);
+        }
+        return new ServletWebRequest(request, new MockHttpServletResponse());
+    }
+
+    // --------------------------------------------------------------------
+    // DELETE /api/teacher/cache
+    // --------------------------------------------------------------------
+
+    @Test
+    void evictCache_shouldEvictAndReturnOk() {
+        ResponseEntity<?> response = controller.evictCache();
+
+        assertEquals(200, response.getStatusCodeValue());
+        verify(teacherService).evictCache();
+    }
+
+    // --------------------------------------------------------------------
+    // GET /api/teacher/stream
+    // --------------------------------------------------------------------
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void streamAll_shouldWriteOneJsonLinePerTeacher() throws Exception {
+        List<Teacher> chunk = Arrays.asList(new Teacher(), new Teacher());
+        TeacherDto first = new TeacherDto();
+        first.setId(1L);
+        TeacherDto second = new TeacherDto();
+        second.setId(2L);
+
+        doAnswer(invocation -> {
+            ((ChunkConsumer<Teacher>) invocation.getArgument(0)).accept(chunk);
+            return null;
+        }).when(teacherService).streamAll(any());
+        when(teacherMapper.toDto(chunk)).thenReturn(Arrays.asList(first, second));
+
+        ResponseEntity<StreamingResponseBody> response = controller.streamAll();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        response.getBody().writeTo(out);
+
+        assertEquals(MediaType.APPLICATION_NDJSON, response.getHeaders().getContentType());
+        assertEquals("{\"id\":1,\"lastName\":null,\"firstName\":null,\"createdAt\":null,\"updatedAt\":null}\n"
+                        + "{\"id\":2,\"lastName\":null,\"firstName\":null,\"createdAt\":null,\"updatedAt\":null}\n",
+                out.toString(StandardCharsets.UTF_8));
     }
 }
@@ -1,9 +1,16 @@
 package com.openclassrooms.starterjwt.unit.controllers;
 
+import com.openclassrooms.starterjwt.dto.SessionDto;
+import com.openclassrooms.starterjwt.dto.SessionPageDto;
 import com.openclassrooms.starterjwt.dto.UserDto;
+import com.openclassrooms.starterjwt.unit.mapper.SessionMapper;
 import com.openclassrooms.starterjwt.unit.mapper.UserMapper;
+import com.openclassrooms.starterjwt.unit.models.SessionSummary;
 import com.openclassrooms.starterjwt.unit.models.User;
+import com.openclassrooms.starterjwt.unit.payload.request.SessionSearchRequest;
 import com.openclassrooms.starterjwt.unit.security.services.UserDetailsImpl;
+import com.openclassrooms.starterjwt.unit.services.SessionPage;
+import com.openclassrooms.starterjwt.unit.services.SessionService;
 import com.openclassrooms.starterjwt.unit.services.UserService;
 
 import org.junit.jupiter.api.BeforeEach;
@@ -16,6 +23,11 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
@@ -27,12 +39,18 @@ class UserControllerTest {
     @Mock
     private UserMapper userMapper;
 
+    @Mock
+    private SessionService sessionService;
+
+    @Mock
+    private SessionMapper sessionMapper;
+
     private UserController controller;
 
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
-        controller = new UserController(userService, userMapper);
+        controller = new UserController(userService, userMapper, sessionService, sessionMapper);
         SecurityContextHolder.clearContext();
     }
 
@@ -149,4 +167,62 @@ class UserControllerTest {
         assertEquals(200, response.getStatusCodeValue());
         verify(userService).delete(1L);
     }
+
+    // --------------------------------------------------------------------
+    // GET /api/user/{id}/sessions
+    // --------------------------------------------------------------------
+
+    @Test
+    void findSessions_shouldReturnThePageOfTheConnectedUser() {
+        authenticate(1L);
+        SessionSearchRequest search = new SessionSearchRequest();
+        List<SessionSummary> sessions = Collections.singletonList(
+                new SessionSummary(3L, "Yoga", new Date(), "desc", 1L, null, 1, null, null));
+        Map<Long, List<Long>> participants = Map.of(3L, List.of(1L));
+        List<SessionDto> dtos = Collections.singletonList(new SessionDto());
+
+        when(sessionService.findPage(search)).thenReturn(new SessionPage(sessions, "next"));
+        when(sessionService.findParticipantIds(sessions)).thenReturn(participants);
+        when(sessionMapper.toDto(sessions, participants)).thenReturn(dtos);
+
+        ResponseEntity<?> response = controller.findSessions("1", search);
+
+        assertEquals(200, response.getStatusCodeValue());
+        assertEquals(1L, search.getParticipantId());
+        SessionPageDto body = (SessionPageDto) response.getBody();
+        assertNotNull(body);
+        assertEquals(dtos, body.getSessions());
+        assertEquals("next", body.getNextCursor());
+    }
+
+    @Test
+    void findSessions_shouldReturnUnauthorized_whenConnectedUserDiffers() {
+        authenticate(999L);
+
+        ResponseEntity<?> response = controller.findSessions("1", new SessionSearchRequest());
+
+        assertEquals(401, response.getStatusCodeValue());
+        verify(sessionService, never()).findPage(any());
+    }
+
+    @Test
+    void findSessions_shouldReturnBadRequest_whenIdInvalid() {
+        ResponseEntity<?> response = controller.findSessions("abc", new SessionSearchRequest());
+
+        assertEquals(400, response.getStatusCodeValue());
+        verify(sessionService, never()).findPage(any());
+    }
+
+    private void authenticate(Long id) {
+        UserDetailsImpl principal = UserDetailsImpl.builder()
+                .id(id)
+                .username("user" + id + "@example.com")
+                .firstName("John")
+                .lastName("Doe")
+                .password("pwd")
+                .admin(false)
+                .build();
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities()));
+    }
 }
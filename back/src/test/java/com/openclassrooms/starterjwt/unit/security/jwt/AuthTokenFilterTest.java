@@ -1,6 +1,14 @@
 package com.openclassrooms.starterjwt.unit.security.jwt;
 
+import com.openclassrooms.starterjwt.repository.UserRepository;
+import com.openclassrooms.starterjwt.unit.security.services.TokenRevocationService;
+import com.openclassrooms.starterjwt.unit.security.services.PrincipalCache;
+import com.openclassrooms.starterjwt.unit.security.services.TokenVersionRegistry;
+import com.openclassrooms.starterjwt.unit.security.services.UserDetailsImpl;
 import com.openclassrooms.starterjwt.unit.security.services.UserDetailsServiceImpl;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
@@ -18,6 +26,7 @@ import javax.servlet.FilterChain;
 import javax.servlet.ServletException;
 import java.io.IOException;
 import java.util.Collections;
+import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -35,6 +44,14 @@ class AuthTokenFilterTest {
     @Mock
     private FilterChain filterChain;
 
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private TokenRevocationService tokenRevocations;
+
+    private TokenVersionRegistry tokenVersions;
+
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
@@ -44,6 +61,10 @@ class AuthTokenFilterTest {
         // Injection manuelle car @Autowired ne fonctionne pas dans les tests unitaires
         filter.jwtUtils = jwtUtils;
         filter.userDetailsService = userDetailsService;
+        filter.principalCache = new PrincipalCache(60, 100, new SimpleMeterRegistry());
+        tokenVersions = new TokenVersionRegistry(userRepository);
+        filter.tokenVersions = tokenVersions;
+        filter.tokenRevocations = tokenRevocations;
 
         // Nettoyage du SecurityContext
         SecurityContextHolder.clearContext();
@@ -114,7 +135,7 @@ class AuthTokenFilterTest {
 
         MockHttpServletResponse response = new MockHttpServletResponse();
 
-        when(jwtUtils.validateJwtToken("invalidtoken")).thenReturn(false);
+        when(jwtUtils.parseClaims("invalidtoken")).thenReturn(null);
 
         filter.doFilterInternal(request, response, filterChain);
 
@@ -129,8 +150,7 @@ class AuthTokenFilterTest {
 
         MockHttpServletResponse response = new MockHttpServletResponse();
 
-        when(jwtUtils.validateJwtToken("validtoken")).thenReturn(true);
-        when(jwtUtils.getUserNameFromJwtToken("validtoken")).thenReturn("john");
+        when(jwtUtils.parseClaims("validtoken")).thenReturn(Jwts.claims().setSubject("john"));
 
         UserDetails userDetails = new User("john", "pwd", Collections.emptyList());
         when(userDetailsService.loadUserByUsername("john")).thenReturn(userDetails);
@@ -141,9 +161,29 @@ class AuthTokenFilterTest {
         assertEquals("john", SecurityContextHolder.getContext().getAuthentication().getName());
 
         verify(userDetailsService).loadUserByUsername("john");
+        verify(jwtUtils, times(1)).parseClaims("validtoken");
         verify(filterChain).doFilter(request, response);
     }
 
+    @Test
+    void doFilterInternal_shouldReuseCachedPrincipalOnNextRequest() throws Exception {
+        when(jwtUtils.parseClaims("validtoken")).thenReturn(Jwts.claims().setSubject("john"));
+        when(userDetailsService.loadUserByUsername("john"))
+                .thenReturn(new User("john", "pwd", Collections.emptyList()));
+
+        for (int i = 0; i < 3; i++) {
+            MockHttpServletRequest request = new MockHttpServletRequest();
+            request.addHeader("Authorization", "Bearer validtoken");
+            SecurityContextHolder.clearContext();
+
+            filter.doFilterInternal(request, new MockHttpServletResponse(), filterChain);
+
+            assertEquals("john", SecurityContextHolder.getContext().getAuthentication().getName());
+        }
+
+        verify(userDetailsService, times(1)).loadUserByUsername("john");
+    }
+
     @Test
     void doFilterInternal_shouldCatchExceptionAndContinueFilter() throws Exception {
         MockHttpServletRequest request = new MockHttpServletRequest();
@@ -151,11 +191,102 @@ class AuthTokenFilterTest {
 
         MockHttpServletResponse response = new MockHttpServletResponse();
 
-        when(jwtUtils.validateJwtToken("xyz")).thenThrow(new RuntimeException("BOOM"));
+        when(jwtUtils.parseClaims("xyz")).thenThrow(new RuntimeException("BOOM"));
 
         filter.doFilterInternal(request, response, filterChain);
 
         assertNull(SecurityContextHolder.getContext().getAuthentication());
         verify(filterChain).doFilter(request, response);
     }
+
+    // ---------------------------
+    // id / admin / ver claims
+    // ---------------------------
+
+    private Claims versionedClaims(Long id, boolean admin, int version) {
+        Claims claims = Jwts.claims().setSubject("john");
+        claims.put(JwtUtils.CLAIM_ID, id);
+        claims.put(JwtUtils.CLAIM_ADMIN, admin);
+        claims.put(JwtUtils.CLAIM_VERSION, version);
+        return claims;
+    }
+
+    private UserDetailsImpl storedPrincipal(Long id, boolean admin, int version) {
+        return UserDetailsImpl.builder().id(id).username("john").admin(admin).tokenVersion(version).build();
+    }
+
+    private void filter(String token) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("Authorization", "Bearer " + token);
+        filter.doFilterInternal(request, new MockHttpServletResponse(), filterChain);
+    }
+
+    @Test
+    void doFilterInternal_shouldBuildPrincipalFromClaimsWithoutLoadingUser() throws Exception {
+        when(jwtUtils.parseClaims("claims")).thenReturn(versionedClaims(1L, true, 0));
+
+        filter("claims");
+
+        var authentication = SecurityContextHolder.getContext().getAuthentication();
+        assertEquals("john", authentication.getName());
+        assertEquals(1L, ((UserDetailsImpl) authentication.getPrincipal()).getId());
+        assertTrue(authentication.getAuthorities().stream()
+                .anyMatch(a -> UserDetailsImpl.ROLE_ADMIN.equals(a.getAuthority())));
+        verifyNoInteractions(userDetailsService);
+    }
+
+    @Test
+    void doFilterInternal_shouldCheckDatabaseAndNotAuthenticate_whenVersionIsStale() throws Exception {
+        when(jwtUtils.parseClaims("stale")).thenReturn(versionedClaims(1L, true, 0));
+        when(userRepository.findTokenVersionById(1L)).thenReturn(Optional.of(1));
+        when(userDetailsService.loadUserByUsername("john")).thenReturn(storedPrincipal(1L, true, 1));
+        tokenVersions.bump(1L);
+
+        filter("stale");
+
+        assertNull(SecurityContextHolder.getContext().getAuthentication());
+        verify(userDetailsService).loadUserByUsername("john");
+        verify(filterChain).doFilter(any(), any());
+    }
+
+    @Test
+    void doFilterInternal_shouldReloadCachedPrincipal_whenItsVersionIsStale() throws Exception {
+        when(jwtUtils.parseClaims("legacy")).thenReturn(Jwts.claims().setSubject("john"));
+        when(userRepository.findTokenVersionById(1L)).thenReturn(Optional.of(1));
+        when(userDetailsService.loadUserByUsername("john"))
+                .thenReturn(storedPrincipal(1L, false, 0), storedPrincipal(1L, true, 1));
+
+        filter("legacy");
+        tokenVersions.bump(1L);
+        SecurityContextHolder.clearContext();
+        filter("legacy");
+
+        assertFalse(SecurityContextHolder.getContext().getAuthentication().getAuthorities().isEmpty());
+        verify(userDetailsService, times(2)).loadUserByUsername("john");
+    }
+
+    @Test
+    void doFilterInternal_shouldNotAuthenticate_whenTokenWasIssuedToAnotherAccount() throws Exception {
+        when(jwtUtils.parseClaims("deleted")).thenReturn(versionedClaims(1L, false, 0));
+        when(userDetailsService.loadUserByUsername("john")).thenReturn(storedPrincipal(2L, false, 0));
+        tokenVersions.revoke(1L);
+
+        filter("deleted");
+
+        assertNull(SecurityContextHolder.getContext().getAuthentication());
+        verify(filterChain).doFilter(any(), any());
+    }
+
+    @Test
+    void doFilterInternal_shouldNotAuthenticate_whenTokenIsRevoked() throws Exception {
+        Claims claims = versionedClaims(1L, true, 0);
+        when(jwtUtils.parseClaims("revoked")).thenReturn(claims);
+        when(tokenRevocations.isRevoked(claims)).thenReturn(true);
+
+        filter("revoked");
+
+        assertNull(SecurityContextHolder.getContext().getAuthentication());
+        verifyNoInteractions(userDetailsService);
+        verify(filterChain).doFilter(any(), any());
+    }
 }
@@ -0,0 +1,214 @@
+package com.openclassrooms.starterjwt.unit.security.jwt;
+
+import io.jsonwebtoken.*;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ByteArrayResource;
+
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.spec.ECGenParameterSpec;
+import java.util.Base64;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JwtKeySetTest {
+
+    private static final String LEGACY_SECRET = "mySuperSecretKey123456789";
+
+    private static KeyPair rsa;
+
+    private static KeyPair ec;
+
+    @BeforeAll
+    static void generateKeys() throws Exception {
+        KeyPairGenerator rsaGenerator = KeyPairGenerator.getInstance("RSA");
+        rsaGenerator.initialize(2048);
+        rsa = rsaGenerator.generateKeyPair();
+
+        KeyPairGenerator ecGenerator = KeyPairGenerator.getInstance("EC");
+        ecGenerator.initialize(new ECGenParameterSpec("secp256r1"));
+        ec = ecGenerator.generateKeyPair();
+    }
+
+    private static String base64(byte[] bytes) {
+        return Base64.getEncoder().encodeToString(bytes);
+    }
+
+    private static ByteArrayResource keySetFile(String json) {
+        return new ByteArrayResource(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // rs-1 (RS256), es-1 (ES256) and hs-1 (HS512), all able to sign
+    private static ByteArrayResource signingKeySet(String active) {
+        return keySetFile("""
+                {
+                  "active": "%s",
+                  "keys": [
+                    { "kid": "rs-1", "alg": "RS256", "privateKey": "%s", "publicKey": "%s" },
+                    { "kid": "es-1", "alg": "ES256", "privateKey": "%s", "publicKey": "%s" },
+                    { "kid": "hs-1", "alg": "HS512", "secret": "%s" }
+                  ]
+                }
+                """.formatted(active,
+                base64(rsa.getPrivate().getEncoded()), base64(rsa.getPublic().getEncoded()),
+                base64(ec.getPrivate().getEncoded()), base64(ec.getPublic().getEncoded()),
+                base64("another-secret".getBytes(StandardCharsets.UTF_8))));
+    }
+
+    // public keys only, no active key
+    private static ByteArrayResource verifyingKeySet() {
+        return keySetFile("""
+                {
+                  "keys": [
+                    { "kid": "rs-1", "alg": "RS256", "publicKey": "-----BEGIN PUBLIC KEY-----\\n%s\\n-----END PUBLIC KEY-----" },
+                    { "kid": "es-1", "alg": "ES256", "publicKey": "%s" }
+                  ]
+                }
+                """.formatted(Base64.getMimeEncoder().encodeToString(rsa.getPublic().getEncoded()).replace("\r\n", "\\n"),
+                base64(ec.getPublic().getEncoded())));
+    }
+
+    private static String sign(JwtKeySet keySet) {
+        JwtKeySet.JwtKey key = keySet.getActiveKey();
+        return Jwts.builder()
+                .setHeaderParam(JwsHeader.KEY_ID, key.getKid())
+                .setSubject("john@example.com")
+                .setExpiration(new Date(System.currentTimeMillis() + 60000))
+                .signWith(key.getAlgorithm(), key.getSigningKey())
+                .compact();
+    }
+
+    private static String verify(JwtKeySet keySet, String token) {
+        return Jwts.parser().setSigningKeyResolver(keySet).parseClaimsJws(token).getBody().getSubject();
+    }
+
+    // ----------------------------------------------------
+    // load()
+    // ----------------------------------------------------
+
+    @Test
+    void load_shouldSignAndVerifyWithEachAlgorithm() throws Exception {
+        for (String kid : new String[] { "rs-1", "es-1", "hs-1" }) {
+            JwtKeySet keySet = JwtKeySet.load(signingKeySet(kid), null);
+
+            assertEquals(kid, keySet.getActiveKey().getKid());
+            assertEquals("john@example.com", verify(keySet, sign(keySet)));
+        }
+    }
+
+    @Test
+    void load_shouldVerifyWithPublicKeysOnly() throws Exception {
+        String rsToken = sign(JwtKeySet.load(signingKeySet("rs-1"), null));
+        String esToken = sign(JwtKeySet.load(signingKeySet("es-1"), null));
+
+        JwtKeySet verifying = JwtKeySet.load(verifyingKeySet(), null);
+
+        assertEquals("john@example.com", verify(verifying, rsToken));
+        assertEquals("john@example.com", verify(verifying, esToken));
+    }
+
+    @Test
+    void getActiveKey_shouldFailOnVerifyingNode() throws Exception {
+        JwtKeySet verifying = JwtKeySet.load(verifyingKeySet(), null);
+
+        IllegalStateException e = assertThrows(IllegalStateException.class, verifying::getActiveKey);
+        assertTrue(e.getMessage().contains("cannot sign"));
+    }
+
+    @Test
+    void load_shouldKeepVerifyingTokensOfFormerActiveKey() throws Exception {
+        String token = sign(JwtKeySet.load(signingKeySet("rs-1"), null));
+
+        JwtKeySet rotated = JwtKeySet.load(signingKeySet("es-1"), null);
+
+        assertEquals("john@example.com", verify(rotated, token));
+    }
+
+    @Test
+    void load_shouldRejectActiveKeyWithoutPrivateKey() {
+        ByteArrayResource file = keySetFile("""
+                { "active": "rs-1", "keys": [ { "kid": "rs-1", "alg": "RS256", "publicKey": "%s" } ] }
+                """.formatted(base64(rsa.getPublic().getEncoded())));
+
+        assertThrows(IllegalArgumentException.class, () -> JwtKeySet.load(file, null));
+    }
+
+    @Test
+    void load_shouldRejectDuplicateKid() {
+        ByteArrayResource file = keySetFile("""
+                { "active": "hs-1", "keys": [
+                  { "kid": "hs-1", "alg": "HS512", "secret": "c2VjcmV0" },
+                  { "kid": "hs-1", "alg": "HS256", "secret": "c2VjcmV0" } ] }
+                """);
+
+        assertThrows(IllegalArgumentException.class, () -> JwtKeySet.load(file, null));
+    }
+
+    @Test
+    void load_shouldRejectInvalidKey() {
+        ByteArrayResource file = keySetFile("""
+                { "active": "rs-1", "keys": [ { "kid": "rs-1", "alg": "RS256", "publicKey": "bm90IGEga2V5" } ] }
+                """);
+
+        assertThrows(IllegalArgumentException.class, () -> JwtKeySet.load(file, null));
+    }
+
+    // ----------------------------------------------------
+    // resolveSigningKey()
+    // ----------------------------------------------------
+
+    @Test
+    void resolveSigningKey_shouldRejectUnknownKid() throws Exception {
+        JwtKeySet keySet = JwtKeySet.load(signingKeySet("rs-1"), null);
+        String token = Jwts.builder()
+                .setHeaderParam(JwsHeader.KEY_ID, "unknown")
+                .setSubject("john@example.com")
+                .signWith(SignatureAlgorithm.HS512, "c2VjcmV0")
+                .compact();
+
+        assertThrows(SignatureException.class, () -> verify(keySet, token));
+    }
+
+    @Test
+    void resolveSigningKey_shouldRejectHmacTokenSignedWithPublicKey() throws Exception {
+        JwtKeySet keySet = JwtKeySet.load(signingKeySet("rs-1"), null);
+        String forged = Jwts.builder()
+                .setHeaderParam(JwsHeader.KEY_ID, "rs-1")
+                .setSubject("admin@example.com")
+                .signWith(SignatureAlgorithm.HS256, rsa.getPublic().getEncoded())
+                .compact();
+
+        assertThrows(SignatureException.class, () -> verify(keySet, forged));
+    }
+
+    @Test
+    void resolveSigningKey_shouldVerifyTokensWithoutKidWithLegacySecret() throws Exception {
+        String legacyToken = Jwts.builder()
+                .setSubject("john@example.com")
+                .signWith(SignatureAlgorithm.HS512, LEGACY_SECRET)
+                .compact();
+
+        assertEquals("john@example.com", verify(JwtKeySet.load(signingKeySet("rs-1"), LEGACY_SECRET), legacyToken));
+        assertThrows(SignatureException.class, () -> verify(JwtKeySet.load(signingKeySet("rs-1"), null), legacyToken));
+    }
+
+    // ----------------------------------------------------
+    // ofSecret()
+    // ----------------------------------------------------
+
+    @Test
+    void ofSecret_shouldSignWithoutKid() {
+        JwtKeySet keySet = JwtKeySet.ofSecret(LEGACY_SECRET);
+
+        assertNull(keySet.getActiveKey().getKid());
+        assertEquals(SignatureAlgorithm.HS512, keySet.getActiveKey().getAlgorithm());
+    }
+
+    @Test
+    void ofSecret_shouldRequireSecret() {
+        assertThrows(IllegalArgumentException.class, () -> JwtKeySet.ofSecret(""));
+    }
+}
@@ -5,6 +5,7 @@ import com.openclassrooms.starterjwt.unit.security.services.UserDetailsImpl;
 import io.jsonwebtoken.*;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
@@ -12,6 +13,11 @@ import org.mockito.MockitoAnnotations;
 import org.springframework.security.core.Authentication;
 
 import java.lang.reflect.Field;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.util.Base64;
 import java.util.Date;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -50,7 +56,7 @@ class JwtUtilsTest {
     @Test
     void generateJwtToken_shouldReturnValidToken() {
         UserDetailsImpl user = new UserDetailsImpl(
-                1L, "john@example.com", "John", "Doe", false, "pwd"
+                1L, "john@example.com", "John", "Doe", false, "pwd", 0
         );
 
         when(authentication.getPrincipal()).thenReturn(user);
@@ -61,6 +67,35 @@ class JwtUtilsTest {
         assertFalse(token.isEmpty());
     }
 
+    @Test
+    void generateJwtToken_shouldCarryIdAdminAndVersionClaims() {
+        UserDetailsImpl user = new UserDetailsImpl(
+                7L, "admin@example.com", "Ada", "Min", true, "pwd", 3
+        );
+        when(authentication.getPrincipal()).thenReturn(user);
+
+        Claims claims = jwtUtils.parseClaims(jwtUtils.generateJwtToken(authentication));
+
+        assertEquals("admin@example.com", claims.getSubject());
+        assertEquals(7L, claims.get(JwtUtils.CLAIM_ID, Long.class));
+        assertEquals(true, claims.get(JwtUtils.CLAIM_ADMIN, Boolean.class));
+        assertEquals(3, claims.get(JwtUtils.CLAIM_VERSION, Integer.class));
+    }
+
+    @Test
+    void generateJwtToken_shouldGiveEveryTokenItsOwnId() {
+        UserDetailsImpl user = new UserDetailsImpl(
+                1L, "john@example.com", "John", "Doe", false, "pwd", 0
+        );
+        when(authentication.getPrincipal()).thenReturn(user);
+
+        String first = jwtUtils.parseClaims(jwtUtils.generateJwtToken(authentication)).getId();
+        String second = jwtUtils.parseClaims(jwtUtils.generateJwtToken(authentication)).getId();
+
+        assertNotNull(first);
+        assertNotEquals(first, second);
+    }
+
     // ----------------------------------------------------
     // getUserNameFromJwtToken()
     // ----------------------------------------------------
@@ -137,4 +172,114 @@ class JwtUtilsTest {
         assertFalse(jwtUtils.validateJwtToken(""));
         assertFalse(jwtUtils.validateJwtToken(null));
     }
+
+    // ----------------------------------------------------
+    // parseClaims()
+    // ----------------------------------------------------
+
+    private String tokenFor(String subject) {
+        return Jwts.builder()
+                .setSubject(subject)
+                .setExpiration(new Date(System.currentTimeMillis() + EXPIRATION_MS))
+                .signWith(SignatureAlgorithm.HS512, SECRET)
+                .compact();
+    }
+
+    @Test
+    void parseClaims_shouldReturnClaimsForValidToken() {
+        Claims claims = jwtUtils.parseClaims(tokenFor("john@example.com"));
+
+        assertNotNull(claims);
+        assertEquals("john@example.com", claims.getSubject());
+    }
+
+    @Test
+    void parseClaims_shouldReturnNullForInvalidToken() {
+        assertNull(jwtUtils.parseClaims("totallyInvalidTokenWithoutParts"));
+        assertNull(jwtUtils.parseClaims(null));
+    }
+
+    @Test
+    void parseClaims_shouldServeVerifiedTokenFromCache() {
+        jwtUtils.initVerifiedTokenCache();
+        String token = tokenFor("john@example.com");
+
+        Claims first = jwtUtils.parseClaims(token);
+        Claims second = jwtUtils.parseClaims(token);
+
+        assertSame(first, second);
+    }
+
+    @Test
+    void parseClaims_shouldStillRejectTamperedTokenWhenCacheEnabled() {
+        jwtUtils.initVerifiedTokenCache();
+        String token = tokenFor("john@example.com");
+        jwtUtils.parseClaims(token);
+
+        String tampered = token.substring(0, token.length() - 2) + "xx";
+
+        assertNull(jwtUtils.parseClaims(tampered));
+    }
+
+    @Test
+    void parseClaims_shouldRejectExpiredTokenWhenCacheEnabled() {
+        jwtUtils.initVerifiedTokenCache();
+        String expiredToken = Jwts.builder()
+                .setSubject("expired@example.com")
+                .setExpiration(new Date(System.currentTimeMillis() - 1000))
+                .signWith(SignatureAlgorithm.HS512, SECRET)
+                .compact();
+
+        assertNull(jwtUtils.parseClaims(expiredToken));
+        assertNull(jwtUtils.parseClaims(expiredToken));
+    }
+
+    // ----------------------------------------------------
+    // key set
+    // ----------------------------------------------------
+
+    @Test
+    void generateJwtToken_shouldSignWithActiveKeyOfKeySet(@TempDir Path dir) throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        KeyPair keyPair = generator.generateKeyPair();
+        Path keys = Files.writeString(dir.resolve("jwt-keys.json"), """
+                { "active": "rs-1", "keys": [ { "kid": "rs-1", "alg": "RS256", "privateKey": "%s", "publicKey": "%s" } ] }
+                """.formatted(Base64.getEncoder().encodeToString(keyPair.getPrivate().getEncoded()),
+                Base64.getEncoder().encodeToString(keyPair.getPublic().getEncoded())));
+        injectPrivateField(jwtUtils, "jwtKeys", keys.toUri().toString());
+        String legacyToken = tokenFor("legacy@example.com");
+        when(authentication.getPrincipal()).thenReturn(new UserDetailsImpl(
+                1L, "john@example.com", "John", "Doe", false, "pwd", 0
+        ));
+
+        String token = jwtUtils.generateJwtToken(authentication);
+
+        Jws<Claims> jws = Jwts.parser().setSigningKey(keyPair.getPublic()).parseClaimsJws(token);
+        assertEquals("rs-1", jws.getHeader().getKeyId());
+        assertEquals("RS256", jws.getHeader().getAlgorithm());
+        assertEquals("john@example.com", jwtUtils.parseClaims(token).getSubject());
+        assertEquals("legacy@example.com", jwtUtils.parseClaims(legacyToken).getSubject());
+    }
+
+    @Test
+    void generateJwtToken_shouldFailWhenKeySetOnlyVerifies(@TempDir Path dir) throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        KeyPair keyPair = generator.generateKeyPair();
+        String token = Jwts.builder()
+                .setHeaderParam(JwsHeader.KEY_ID, "rs-1")
+                .setSubject("john@example.com")
+                .setExpiration(new Date(System.currentTimeMillis() + 60000))
+                .signWith(SignatureAlgorithm.RS256, keyPair.getPrivate())
+                .compact();
+        Path keys = Files.writeString(dir.resolve("jwt-keys.json"), """
+                { "keys": [ { "kid": "rs-1", "alg": "RS256", "publicKey": "%s" } ] }
+                """.formatted(Base64.getEncoder().encodeToString(keyPair.getPublic().getEncoded())));
+        injectPrivateField(jwtUtils, "jwtKeys", keys.toUri().toString());
+
+        assertEquals("john@example.com", jwtUtils.parseClaims(token).getSubject());
+        assertThrows(IllegalStateException.class, () -> jwtUtils.generateJwtToken(
+                new UserDetailsImpl(1L, "john@example.com", "John", "Doe", false, "pwd", 0)));
+    }
 }
@@ -0,0 +1,125 @@
+package com.openclassrooms.starterjwt.unit.security.services;
+
+import com.openclassrooms.starterjwt.exception.ServiceUnavailableException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class BoundedPasswordEncoderTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private PasswordEncoder delegate;
+    private BoundedPasswordEncoder encoder;
+    private ExecutorService callers;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        delegate = mock(PasswordEncoder.class);
+        callers = Executors.newCachedThreadPool();
+    }
+
+    @AfterEach
+    void tearDown() {
+        callers.shutdownNow();
+        if (encoder != null) {
+            encoder.destroy();
+        }
+    }
+
+    // --------------------------------------------------------------------
+    // delegation and metrics
+    // --------------------------------------------------------------------
+
+    @Test
+    void encodeAndMatches_shouldDelegateAndBeTimed() {
+        encoder = new BoundedPasswordEncoder(delegate, 1, 1, 1000, 2, meterRegistry);
+        when(delegate.encode("secret")).thenReturn("hash");
+        when(delegate.matches("secret", "hash")).thenReturn(true);
+
+        assertEquals("hash", encoder.encode("secret"));
+        assertTrue(encoder.matches("secret", "hash"));
+
+        assertEquals(1, meterRegistry.get("auth.hashing").tag("operation", "encode").timer().count());
+        assertEquals(1, meterRegistry.get("auth.hashing").tag("operation", "matches").timer().count());
+        assertNotNull(meterRegistry.find("executor.queued").tag("name", "auth.hashing").gauge());
+    }
+
+    @Test
+    void encode_shouldRethrowDelegateFailure() {
+        encoder = new BoundedPasswordEncoder(delegate, 1, 1, 1000, 2, meterRegistry);
+        when(delegate.encode(any())).thenThrow(new IllegalArgumentException("bad salt"));
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> encoder.encode("secret"));
+        assertEquals("bad salt", e.getMessage());
+    }
+
+    @Test
+    void threads_shouldDefaultToAvailableProcessors() {
+        encoder = new BoundedPasswordEncoder(delegate, 0, 1, 1000, 2, meterRegistry);
+
+        assertEquals(Runtime.getRuntime().availableProcessors(),
+                meterRegistry.get("executor.pool.core").tag("name", "auth.hashing").gauge().value());
+    }
+
+    // --------------------------------------------------------------------
+    // backpressure
+    // --------------------------------------------------------------------
+
+    @Test
+    void matches_shouldBeRejected_whenPoolAndQueueAreFull() throws Exception {
+        encoder = new BoundedPasswordEncoder(delegate, 1, 1, 5000, 2, meterRegistry);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(delegate.matches(any(), any())).thenAnswer(invocation -> {
+            started.countDown();
+            release.await();
+            return true;
+        });
+
+        callers.submit(() -> encoder.matches("a", "hash"));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        callers.submit(() -> encoder.matches("b", "hash"));
+        while (meterRegistry.get("executor.queued").tag("name", "auth.hashing").gauge().value() < 1) {
+            Thread.sleep(5);
+        }
+
+        ServiceUnavailableException e = assertThrows(ServiceUnavailableException.class,
+                () -> encoder.matches("c", "hash"));
+        assertEquals(2, e.getRetryAfterSeconds());
+        assertEquals(1, meterRegistry.get("auth.hashing.rejected").counter().count());
+
+        release.countDown();
+    }
+
+    @Test
+    void encode_shouldGiveUp_afterTimeout() {
+        encoder = new BoundedPasswordEncoder(delegate, 1, 1, 50, 3, meterRegistry);
+        when(delegate.encode(any())).thenAnswer(invocation -> {
+            Thread.sleep(5000);
+            return "hash";
+        });
+
+        ServiceUnavailableException e = assertThrows(ServiceUnavailableException.class, () -> encoder.encode("secret"));
+        assertEquals(3, e.getRetryAfterSeconds());
+        assertEquals(1, meterRegistry.get("auth.hashing.rejected").counter().count());
+    }
+
+    @Test
+    void upgradeEncoding_shouldDelegate() {
+        encoder = new BoundedPasswordEncoder(delegate, 1, 1, 1000, 2, meterRegistry);
+        when(delegate.upgradeEncoding("hash")).thenReturn(true);
+
+        assertTrue(encoder.upgradeEncoding("hash"));
+    }
+}
@@ -0,0 +1,87 @@
+package com.openclassrooms.starterjwt.unit.security.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CalibratedBCryptPasswordEncoderTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private CalibratedBCryptPasswordEncoder encoder;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        encoder = new CalibratedBCryptPasswordEncoder(5, meterRegistry);
+    }
+
+    // --------------------------------------------------------------------
+    // costOf()
+    // --------------------------------------------------------------------
+
+    @Test
+    void costOf_shouldReadTheCostOfABCryptHash() {
+        assertEquals(4, CalibratedBCryptPasswordEncoder.costOf(new BCryptPasswordEncoder(4).encode("secret")));
+        assertEquals(10, CalibratedBCryptPasswordEncoder.costOf(
+                "$2a$10$.Hsa/ZjUVaHqi0tp9xieMeewrnZxrZ5pQRzddUXE/WjDu2ZThe6Iq"));
+    }
+
+    @Test
+    void costOf_shouldReturnMinusOne_whenNotABCryptHash() {
+        assertEquals(-1, CalibratedBCryptPasswordEncoder.costOf(null));
+        assertEquals(-1, CalibratedBCryptPasswordEncoder.costOf("plain"));
+        assertEquals(-1, CalibratedBCryptPasswordEncoder.costOf("$2a$99$.Hsa/ZjUVaHqi0tp9xieMeewrnZxrZ5pQRzddUXE/WjDu2ZThe6Iq"));
+    }
+
+    // --------------------------------------------------------------------
+    // encode() / matches()
+    // --------------------------------------------------------------------
+
+    @Test
+    void encode_shouldUseTheConfiguredCost() {
+        assertEquals(5, CalibratedBCryptPasswordEncoder.costOf(encoder.encode("secret")));
+        assertEquals(5.0, meterRegistry.get("auth.bcrypt.strength").gauge().value());
+    }
+
+    @Test
+    void matches_shouldVerifyHashesOfAnyCostAndTimeThemPerCost() {
+        String legacy = new BCryptPasswordEncoder(4).encode("secret");
+        String current = encoder.encode("secret");
+
+        assertTrue(encoder.matches("secret", legacy));
+        assertTrue(encoder.matches("secret", current));
+        assertFalse(encoder.matches("wrong", current));
+
+        assertEquals(1, meterRegistry.get("auth.bcrypt.matches").tag("cost", "4").timer().count());
+        assertEquals(2, meterRegistry.get("auth.bcrypt.matches").tag("cost", "5").timer().count());
+    }
+
+    // --------------------------------------------------------------------
+    // upgradeEncoding()
+    // --------------------------------------------------------------------
+
+    @Test
+    void upgradeEncoding_shouldBeTrue_whenStoredCostDiffersEitherWay() {
+        assertTrue(encoder.upgradeEncoding(new BCryptPasswordEncoder(4).encode("secret")));
+        assertTrue(encoder.upgradeEncoding(new BCryptPasswordEncoder(6).encode("secret")));
+        assertFalse(encoder.upgradeEncoding(encoder.encode("secret")));
+    }
+
+    @Test
+    void upgradeEncoding_shouldBeFalse_whenNotABCryptHash() {
+        assertFalse(encoder.upgradeEncoding("plain"));
+    }
+
+    // --------------------------------------------------------------------
+    // calibrate()
+    // --------------------------------------------------------------------
+
+    @Test
+    void calibrate_shouldStayWithinBounds() {
+        assertEquals(4, CalibratedBCryptPasswordEncoder.calibrate(0, 4, 6));
+        assertEquals(6, CalibratedBCryptPasswordEncoder.calibrate(60_000, 4, 6));
+    }
+}
@@ -0,0 +1,98 @@
+package com.openclassrooms.starterjwt.unit.security.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PrincipalCacheTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private PrincipalCache cache;
+    private AtomicInteger loads;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        cache = new PrincipalCache(60, 100, meterRegistry);
+        loads = new AtomicInteger();
+    }
+
+    private Function<String, UserDetails> loader() {
+        return username -> {
+            loads.incrementAndGet();
+            return UserDetailsImpl.builder()
+                    .id(1L)
+                    .username(username)
+                    .firstName("John")
+                    .lastName("Doe")
+                    .admin(true)
+                    .password("hash")
+                    .build();
+        };
+    }
+
+    @Test
+    void get_shouldLoadOnceAndServeFromCache() {
+        cache.get("john@test.com", loader());
+        UserDetails second = cache.get("john@test.com", loader());
+
+        assertEquals(1, loads.get());
+        assertEquals("john@test.com", second.getUsername());
+        assertEquals(1.0, gets("hit"));
+        assertEquals(1.0, gets("miss"));
+    }
+
+    @Test
+    void get_shouldNotKeepPasswordHash() {
+        UserDetailsImpl cached = (UserDetailsImpl) cache.get("john@test.com", loader());
+
+        assertNull(cached.getPassword());
+        assertEquals(1L, cached.getId());
+        assertTrue(cached.getAdmin());
+    }
+
+    @Test
+    void evict_shouldForceReload() {
+        cache.get("john@test.com", loader());
+        cache.evict("john@test.com");
+        cache.get("john@test.com", loader());
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void get_shouldNotCacheUnknownUser() {
+        Function<String, UserDetails> failing = username -> {
+            loads.incrementAndGet();
+            throw new UsernameNotFoundException(username);
+        };
+
+        assertThrows(UsernameNotFoundException.class, () -> cache.get("ghost@test.com", failing));
+        assertThrows(UsernameNotFoundException.class, () -> cache.get("ghost@test.com", failing));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void metrics_shouldBeBoundToRegistry() {
+        cache.get("john@test.com", loader());
+        cache.get("john@test.com", loader());
+
+        assertEquals(1.0, gets("hit"));
+        assertEquals(1.0, meterRegistry.get("cache.size").tag("cache", PrincipalCache.CACHE_NAME).gauge().value());
+    }
+
+    private double gets(String result) {
+        return meterRegistry.get("cache.gets")
+                .tag("cache", PrincipalCache.CACHE_NAME)
+                .tag("result", result)
+                .functionCounter()
+                .count();
+    }
+}
@@ -0,0 +1,148 @@
+package com.openclassrooms.starterjwt.unit.security.services;
+
+import com.openclassrooms.starterjwt.repository.RefreshTokenRepository;
+import com.openclassrooms.starterjwt.unit.models.RefreshToken;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class RefreshTokenServiceTest {
+
+    private RefreshTokenRepository refreshTokenRepository;
+    private SimpleMeterRegistry meterRegistry;
+    private RefreshTokenService service;
+
+    @BeforeEach
+    void setUp() {
+        refreshTokenRepository = mock(RefreshTokenRepository.class);
+        meterRegistry = new SimpleMeterRegistry();
+        service = new RefreshTokenService(refreshTokenRepository, 60000, meterRegistry);
+    }
+
+    private RefreshToken stored(String refreshToken) {
+        RefreshToken stored = RefreshToken.builder()
+                .id(1L)
+                .tokenHash(RefreshTokenService.hash(refreshToken))
+                .familyId("family")
+                .userId(7L)
+                .createdAt(LocalDateTime.now())
+                .expiresAt(LocalDateTime.now().plusMinutes(1))
+                .build();
+        when(refreshTokenRepository.findByTokenHash(stored.getTokenHash())).thenReturn(Optional.of(stored));
+        return stored;
+    }
+
+    private double results(String result) {
+        return meterRegistry.get("auth.refresh").tag("result", result).counter().count();
+    }
+
+    // --------------------------------------------------------------------
+    // issue()
+    // --------------------------------------------------------------------
+
+    @Test
+    void issue_shouldStoreOnlyTheHashInANewFamily() {
+        String first = service.issue(7L);
+        String second = service.issue(7L);
+
+        ArgumentCaptor<RefreshToken> captor = ArgumentCaptor.forClass(RefreshToken.class);
+        verify(refreshTokenRepository, times(2)).save(captor.capture());
+        RefreshToken saved = captor.getAllValues().get(0);
+        assertEquals(RefreshTokenService.hash(first), saved.getTokenHash());
+        assertNotEquals(first, saved.getTokenHash());
+        assertEquals(64, saved.getTokenHash().length());
+        assertEquals(7L, saved.getUserId());
+        assertNotEquals(saved.getFamilyId(), captor.getAllValues().get(1).getFamilyId());
+        assertNotEquals(first, second);
+        // 256 bits, base64url without padding
+        assertEquals(43, first.length());
+    }
+
+    // --------------------------------------------------------------------
+    // rotate()
+    // --------------------------------------------------------------------
+
+    @Test
+    void rotate_shouldConsumeTheTokenAndIssueTheNextOneOfTheFamily() {
+        stored("current");
+        when(refreshTokenRepository.markUsed(eq(1L), any())).thenReturn(1);
+
+        RefreshTokenService.Rotation rotation = service.rotate("current");
+
+        assertNotNull(rotation);
+        assertEquals(7L, rotation.getUserId());
+        assertNotEquals("current", rotation.getRefreshToken());
+        ArgumentCaptor<RefreshToken> captor = ArgumentCaptor.forClass(RefreshToken.class);
+        verify(refreshTokenRepository).save(captor.capture());
+        assertEquals("family", captor.getValue().getFamilyId());
+        assertEquals(1, results("rotated"));
+    }
+
+    @Test
+    void rotate_shouldRevokeTheFamily_whenTokenWasAlreadyUsed() {
+        stored("current").setUsedAt(LocalDateTime.now());
+
+        assertNull(service.rotate("current"));
+
+        verify(refreshTokenRepository).revokeFamily(eq("family"), any());
+        verify(refreshTokenRepository, never()).save(any());
+        assertEquals(1, results("reused"));
+    }
+
+    @Test
+    void rotate_shouldRevokeTheFamily_whenAConcurrentRefreshWon() {
+        stored("current");
+        when(refreshTokenRepository.markUsed(eq(1L), any())).thenReturn(0);
+
+        assertNull(service.rotate("current"));
+
+        verify(refreshTokenRepository).revokeFamily(eq("family"), any());
+        assertEquals(1, results("reused"));
+    }
+
+    @Test
+    void rotate_shouldReject_whenTokenIsUnknownExpiredOrRevoked() {
+        when(refreshTokenRepository.findByTokenHash(anyString())).thenReturn(Optional.empty());
+        assertNull(service.rotate("unknown"));
+
+        stored("expired").setExpiresAt(LocalDateTime.now().minusSeconds(1));
+        assertNull(service.rotate("expired"));
+
+        stored("revoked").setRevokedAt(LocalDateTime.now());
+        assertNull(service.rotate("revoked"));
+
+        verify(refreshTokenRepository, never()).markUsed(any(), any());
+        assertEquals(1, results("unknown"));
+        assertEquals(1, results("expired"));
+        assertEquals(1, results("revoked"));
+    }
+
+    // --------------------------------------------------------------------
+    // revoke() / prune()
+    // --------------------------------------------------------------------
+
+    @Test
+    void revoke_shouldRevokeTheWholeFamily() {
+        stored("current");
+
+        service.revoke("current");
+
+        verify(refreshTokenRepository).revokeFamily(eq("family"), any());
+    }
+
+    @Test
+    void prune_shouldDeleteExpiredTokens() {
+        service.prune();
+
+        verify(refreshTokenRepository).deleteExpired(any());
+    }
+}
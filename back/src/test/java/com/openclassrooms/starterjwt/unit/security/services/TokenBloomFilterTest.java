@@ -0,0 +1,79 @@
+package com.openclassrooms.starterjwt.unit.security.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenBloomFilterTest {
+
+    // --------------------------------------------------------------------
+    // mightContain()
+    // --------------------------------------------------------------------
+
+    @Test
+    void mightContain_shouldNeverMissAnIdThatWasPut() {
+        TokenBloomFilter filter = new TokenBloomFilter(1000, 0.01);
+        String[] ids = new String[1000];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = UUID.randomUUID().toString();
+            filter.put(ids[i]);
+        }
+
+        for (String id : ids) {
+            assertTrue(filter.mightContain(id));
+        }
+    }
+
+    @Test
+    void mightContain_shouldStayNearTheConfiguredFalsePositiveRate() {
+        TokenBloomFilter filter = new TokenBloomFilter(1000, 0.01);
+        for (int i = 0; i < 1000; i++) {
+            filter.put(UUID.randomUUID().toString());
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < 10000; i++) {
+            if (filter.mightContain(UUID.randomUUID().toString())) {
+                falsePositives++;
+            }
+        }
+
+        assertTrue(falsePositives < 300, "false positives: " + falsePositives);
+        assertEquals(0.01, filter.expectedFalsePositiveRate(), 0.005);
+    }
+
+    // --------------------------------------------------------------------
+    // sizing and saturation
+    // --------------------------------------------------------------------
+
+    @Test
+    void constructor_shouldSizeForTheExpectedEntries() {
+        TokenBloomFilter filter = new TokenBloomFilter(100000, 0.001);
+
+        // ~14.4 bits and ~10 hashes per entry at 0.1%
+        assertTrue(filter.bitSize() >= 1437759 && filter.bitSize() < 1437759 + 64, "bits: " + filter.bitSize());
+        assertEquals(10, filter.hashCount());
+    }
+
+    @Test
+    void saturation_shouldGrowWithEntries() {
+        TokenBloomFilter filter = new TokenBloomFilter(100, 0.01);
+        assertEquals(0.0, filter.saturation());
+        assertFalse(filter.mightContain("anything"));
+
+        for (int i = 0; i < 100; i++) {
+            filter.put("token-" + i);
+        }
+
+        // an optimally filled filter has about half of its bits set
+        assertEquals(0.5, filter.saturation(), 0.1);
+    }
+
+    @Test
+    void constructor_shouldRejectInvalidParameters() {
+        assertThrows(IllegalArgumentException.class, () -> new TokenBloomFilter(0, 0.01));
+        assertThrows(IllegalArgumentException.class, () -> new TokenBloomFilter(10, 1));
+    }
+}
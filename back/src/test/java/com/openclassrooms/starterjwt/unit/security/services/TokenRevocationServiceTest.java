@@ -0,0 +1,146 @@
+package com.openclassrooms.starterjwt.unit.security.services;
+
+import com.openclassrooms.starterjwt.repository.RevokedTokenRepository;
+import com.openclassrooms.starterjwt.unit.models.RevokedToken;
+import com.openclassrooms.starterjwt.unit.security.jwt.JwtUtils;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.time.LocalDateTime;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class TokenRevocationServiceTest {
+
+    private static final long EXPIRATION_MS = 3600000;
+
+    private RevokedTokenRepository revokedTokenRepository;
+    private SimpleMeterRegistry meterRegistry;
+    private TokenRevocationService service;
+
+    @BeforeEach
+    void setUp() {
+        revokedTokenRepository = mock(RevokedTokenRepository.class);
+        meterRegistry = new SimpleMeterRegistry();
+        service = new TokenRevocationService(revokedTokenRepository, 1000, 0.001, EXPIRATION_MS, meterRegistry);
+    }
+
+    private Claims claims(String jti, Long userId) {
+        Claims claims = Jwts.claims().setId(jti).setSubject("john@example.com");
+        claims.put(JwtUtils.CLAIM_ID, userId);
+        return claims;
+    }
+
+    private double checks(String result) {
+        return meterRegistry.get("auth.revocation.checks").tag("result", result).counter().count();
+    }
+
+    // --------------------------------------------------------------------
+    // isRevoked()
+    // --------------------------------------------------------------------
+
+    @Test
+    void isRevoked_shouldAcceptUnknownTokenWithoutLookup() {
+        assertFalse(service.isRevoked(claims("jti-1", 1L)));
+
+        verify(revokedTokenRepository, never()).existsById(anyString());
+        assertEquals(2, checks("negative"));
+    }
+
+    @Test
+    void isRevoked_shouldConfirmFilterHitsAgainstTheStore() {
+        service.revoke("jti-1", 1L, new Date(System.currentTimeMillis() + 60000));
+        when(revokedTokenRepository.existsById("jti-1")).thenReturn(true);
+
+        assertTrue(service.isRevoked(claims("jti-1", 1L)));
+        assertFalse(service.isRevoked(claims("jti-2", 1L)));
+
+        assertEquals(1, checks("revoked"));
+    }
+
+    @Test
+    void isRevoked_shouldCountFalsePositives_whenTheStoreDisagrees() {
+        service.revoke("jti-1", 1L, new Date(System.currentTimeMillis() + 60000));
+        // pruned or revoked by a rolled back transaction: the filter still has it
+        when(revokedTokenRepository.existsById("jti-1")).thenReturn(false);
+
+        assertFalse(service.isRevoked(claims("jti-1", 1L)));
+
+        assertEquals(1, checks("false_positive"));
+    }
+
+    @Test
+    void isRevoked_shouldRejectEveryTokenOfARevokedUser() {
+        service.revokeUser(7L);
+        when(revokedTokenRepository.existsById("user:7")).thenReturn(true);
+
+        assertTrue(service.isRevoked(claims("any", 7L)));
+        assertFalse(service.isRevoked(claims("any", 8L)));
+    }
+
+    // --------------------------------------------------------------------
+    // revoke() / revokeUser()
+    // --------------------------------------------------------------------
+
+    @Test
+    void revoke_shouldPersistUntilTheTokenExpires() {
+        Date expiration = new Date(System.currentTimeMillis() + 60000);
+
+        service.revoke("jti-1", 1L, expiration);
+
+        ArgumentCaptor<RevokedToken> captor = ArgumentCaptor.forClass(RevokedToken.class);
+        verify(revokedTokenRepository).save(captor.capture());
+        assertEquals("jti-1", captor.getValue().getJti());
+        assertEquals(1L, captor.getValue().getUserId());
+        assertEquals(expiration.getTime() / 1000,
+                captor.getValue().getExpiresAt().atZone(java.time.ZoneId.systemDefault()).toEpochSecond());
+    }
+
+    @Test
+    void revokeUser_shouldPersistForTheLongestTokenLifetime() {
+        LocalDateTime before = LocalDateTime.now().plusSeconds(EXPIRATION_MS / 1000);
+
+        service.revokeUser(7L);
+
+        ArgumentCaptor<RevokedToken> captor = ArgumentCaptor.forClass(RevokedToken.class);
+        verify(revokedTokenRepository).save(captor.capture());
+        assertEquals("user:7", captor.getValue().getJti());
+        assertFalse(captor.getValue().getExpiresAt().isBefore(before));
+    }
+
+    // --------------------------------------------------------------------
+    // refresh()
+    // --------------------------------------------------------------------
+
+    @Test
+    void refresh_shouldPruneAndRebuildFromTheStore() {
+        service.revoke("pruned", 1L, new Date(System.currentTimeMillis() + 60000));
+        when(revokedTokenRepository.findActiveJtis(any())).thenReturn(List.of("from-another-node"));
+        when(revokedTokenRepository.existsById(anyString())).thenReturn(true);
+
+        service.refresh();
+
+        verify(revokedTokenRepository).deleteExpired(any());
+        assertTrue(service.isRevoked(claims("from-another-node", null)));
+        assertFalse(service.isRevoked(claims("pruned", null)));
+    }
+
+    @Test
+    void gauges_shouldReportFilterSaturation() {
+        assertEquals(0.0, meterRegistry.get("auth.revocation.filter.saturation").gauge().value());
+
+        service.revoke("jti-1", 1L, null);
+
+        assertTrue(meterRegistry.get("auth.revocation.filter.saturation").gauge().value() > 0);
+        assertTrue(meterRegistry.get("auth.revocation.filter.fpp").gauge().value() < 0.001);
+    }
+}
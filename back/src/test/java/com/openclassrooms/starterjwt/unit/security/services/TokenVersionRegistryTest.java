@@ -0,0 +1,84 @@
+package com.openclassrooms.starterjwt.unit.security.services;
+
+import com.openclassrooms.starterjwt.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class TokenVersionRegistryTest {
+
+    private UserRepository userRepository;
+    private TokenVersionRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        userRepository = mock(UserRepository.class);
+        registry = new TokenVersionRegistry(userRepository);
+    }
+
+    private UserRepository.TokenVersion version(Long id, int tokenVersion) {
+        UserRepository.TokenVersion version = mock(UserRepository.TokenVersion.class);
+        when(version.getId()).thenReturn(id);
+        when(version.getTokenVersion()).thenReturn(tokenVersion);
+        return version;
+    }
+
+    // --------------------------------------------------------------------
+    // load() / isCurrent()
+    // --------------------------------------------------------------------
+
+    @Test
+    void isCurrent_shouldAcceptVersionZero_forUnknownUsers() {
+        assertTrue(registry.isCurrent(1L, 0));
+    }
+
+    @Test
+    void load_shouldRestoreBumpedVersions() {
+        List<UserRepository.TokenVersion> bumped = List.of(version(3L, 2));
+        when(userRepository.findBumpedTokenVersions()).thenReturn(bumped);
+
+        registry.load();
+
+        assertFalse(registry.isCurrent(3L, 1));
+        assertTrue(registry.isCurrent(3L, 2));
+        assertTrue(registry.isCurrent(4L, 0));
+    }
+
+    // --------------------------------------------------------------------
+    // bump() / revoke()
+    // --------------------------------------------------------------------
+
+    @Test
+    void bump_shouldIncrementInDatabaseAndInvalidateOlderTokens() {
+        when(userRepository.findTokenVersionById(5L)).thenReturn(Optional.of(1));
+
+        registry.bump(5L);
+
+        verify(userRepository).incrementTokenVersion(5L);
+        assertFalse(registry.isCurrent(5L, 0));
+        assertTrue(registry.isCurrent(5L, 1));
+    }
+
+    @Test
+    void bump_shouldNeverMoveVersionBackwards() {
+        registry.revoke(5L);
+        when(userRepository.findTokenVersionById(5L)).thenReturn(Optional.of(1));
+
+        registry.bump(5L);
+
+        assertFalse(registry.isCurrent(5L, 1));
+    }
+
+    @Test
+    void revoke_shouldInvalidateEveryVersion() {
+        registry.revoke(6L);
+
+        assertFalse(registry.isCurrent(6L, 0));
+        assertFalse(registry.isCurrent(6L, 1000));
+    }
+}
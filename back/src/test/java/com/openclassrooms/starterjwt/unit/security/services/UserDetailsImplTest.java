@@ -38,6 +38,15 @@ class UserDetailsImplTest {
         assertTrue(authorities.isEmpty());
     }
 
+    @Test
+    void getAuthoritiesShouldContainRoleAdminForAdmins() {
+        UserDetailsImpl user = UserDetailsImpl.builder().admin(true).build();
+
+        assertEquals(1, user.getAuthorities().size());
+        assertEquals(UserDetailsImpl.ROLE_ADMIN, user.getAuthorities().iterator().next().getAuthority());
+        assertTrue(UserDetailsImpl.builder().admin(false).build().getAuthorities().isEmpty());
+    }
+
     @Test
     void securityMethodsShouldReturnTrue() {
         UserDetailsImpl user = UserDetailsImpl.builder().build();
@@ -22,12 +22,15 @@ class UserDetailsServiceImplTest {
     @Mock
     private UserRepository userRepository;
 
+    @Mock
+    private PrincipalCache principalCache;
+
     private UserDetailsServiceImpl service;
 
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
-        service = new UserDetailsServiceImpl(userRepository);
+        service = new UserDetailsServiceImpl(userRepository, principalCache);
     }
 
     @Test
@@ -38,6 +41,7 @@ class UserDetailsServiceImplTest {
         user.setFirstName("John");
         user.setLastName("Doe");
         user.setPassword("secret");
+        user.setAdmin(true);
 
         when(userRepository.findByEmail("john@example.com"))
                 .thenReturn(Optional.of(user));
@@ -53,6 +57,8 @@ class UserDetailsServiceImplTest {
         assertEquals(1L, details.getId());
         assertEquals("John", details.getFirstName());
         assertEquals("Doe", details.getLastName());
+        assertTrue(details.getAdmin());
+        assertEquals(1, details.getAuthorities().size());
 
         verify(userRepository, times(1)).findByEmail("john@example.com");
     }
@@ -88,4 +94,55 @@ class UserDetailsServiceImplTest {
 
         verify(userRepository).findByEmail("");
     }
+
+    @Test
+    void loadUserById_shouldReturnTheCurrentAccount() {
+        User user = new User();
+        user.setId(3L);
+        user.setEmail("john@example.com");
+        user.setAdmin(true);
+        user.setTokenVersion(2);
+        when(userRepository.findById(3L)).thenReturn(Optional.of(user));
+
+        UserDetailsImpl result = service.loadUserById(3L);
+
+        assertEquals("john@example.com", result.getUsername());
+        assertTrue(result.getAdmin());
+        assertEquals(2, result.getTokenVersion());
+    }
+
+    @Test
+    void loadUserById_shouldThrow_whenUserWasDeleted() {
+        when(userRepository.findById(3L)).thenReturn(Optional.empty());
+
+        assertThrows(UsernameNotFoundException.class, () -> service.loadUserById(3L));
+    }
+
+    @Test
+    void updatePassword_shouldStoreTheNewHashAndEvictThePrincipal() {
+        User user = new User();
+        user.setId(1L);
+        user.setEmail("john@example.com");
+        user.setPassword("old-hash");
+        UserDetails current = UserDetailsImpl.builder().id(1L).username("john@example.com").password("old-hash").build();
+
+        when(userRepository.findByEmail("john@example.com")).thenReturn(Optional.of(user));
+
+        UserDetails result = service.updatePassword(current, "new-hash");
+
+        assertEquals("new-hash", result.getPassword());
+        assertEquals("new-hash", user.getPassword());
+        verify(userRepository).save(user);
+        verify(principalCache).evict("john@example.com");
+    }
+
+    @Test
+    void updatePassword_shouldThrow_whenUserWasDeleted() {
+        UserDetails current = UserDetailsImpl.builder().id(1L).username("gone@example.com").password("old-hash").build();
+
+        when(userRepository.findByEmail("gone@example.com")).thenReturn(Optional.empty());
+
+        assertThrows(UsernameNotFoundException.class, () -> service.updatePassword(current, "new-hash"));
+        verify(userRepository, never()).save(any());
+    }
 }
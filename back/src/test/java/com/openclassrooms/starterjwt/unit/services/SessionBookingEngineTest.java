@@ -0,0 +1,181 @@
+package com.openclassrooms.starterjwt.unit.services;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SessionBookingEngineTest {
+
+    private SessionBookingEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        engine = new SessionBookingEngine();
+    }
+
+    @Test
+    void tryReserve_shouldAlwaysAdmitUnlimitedSession() {
+        for (int i = 0; i < 100; i++) {
+            assertTrue(engine.tryReserve(1L, null, () -> fail("unlimited sessions are never counted")));
+        }
+    }
+
+    @Test
+    void tryReserve_shouldSeedFromDatabaseOnceAndStopAtCapacity() {
+        AtomicInteger seeds = new AtomicInteger();
+
+        assertTrue(engine.tryReserve(1L, 3, () -> { seeds.incrementAndGet(); return 1; }));
+        assertTrue(engine.tryReserve(1L, 3, () -> { seeds.incrementAndGet(); return 1; }));
+        assertFalse(engine.tryReserve(1L, 3, () -> { seeds.incrementAndGet(); return 1; }));
+
+        assertEquals(1, seeds.get());
+    }
+
+    @Test
+    void release_shouldFreeASeat() {
+        assertTrue(engine.tryReserve(1L, 1, () -> 0));
+        assertFalse(engine.tryReserve(1L, 1, () -> 0));
+
+        engine.release(1L);
+
+        assertTrue(engine.tryReserve(1L, 1, () -> 0));
+    }
+
+    @Test
+    void resync_shouldReseedFromDatabase() {
+        assertFalse(engine.tryReserve(1L, 2, () -> 2));
+
+        assertEquals(-1, engine.resync(1L, () -> 1));
+
+        assertTrue(engine.tryReserve(1L, 2, () -> fail("already seeded")));
+        assertFalse(engine.tryReserve(1L, 2, () -> fail("already seeded")));
+    }
+
+    @Test
+    void resync_shouldKeepReservationsInFlight() {
+        assertTrue(engine.tryReserve(1L, 2, () -> 0));
+
+        // the reserved row is not inserted yet
+        engine.resync(1L, () -> 1);
+
+        assertFalse(engine.tryReserve(1L, 2, () -> 0));
+        engine.release(1L);
+        assertTrue(engine.tryReserve(1L, 2, () -> 0));
+    }
+
+    @Test
+    void resync_shouldNeverOverbookWhileReservationsAreInFlight() throws Exception {
+        int joiners = 1000;
+        int capacity = 50;
+        Set<Long> participate = ConcurrentHashMap.newKeySet();
+        ExecutorService pool = Executors.newFixedThreadPool(64);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean joining = new AtomicBoolean(true);
+
+        for (long user = 0; user < joiners; user++) {
+            long userId = user;
+            pool.execute(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                if (engine.tryReserve(1L, capacity, participate::size)) {
+                    // every tenth booking fails, like a user deleted meanwhile
+                    if (userId % 10 == 0) {
+                        engine.release(1L);
+                    } else {
+                        participate.add(userId);
+                        engine.confirm(1L);
+                    }
+                }
+            });
+        }
+        Thread updates = new Thread(() -> {
+            while (joining.get()) {
+                engine.resync(1L, participate::size);
+            }
+        });
+        updates.start();
+        start.countDown();
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+        joining.set(false);
+        updates.join();
+
+        assertTrue(participate.size() <= capacity);
+        // nothing is in flight any more: the counter matches the bookings
+        assertEquals(0, engine.resync(1L, participate::size));
+    }
+
+    @Test
+    void waitlist_shouldBeFifoAndRejectDuplicates() {
+        assertTrue(engine.enqueue(1L, 10L));
+        assertTrue(engine.enqueue(1L, 11L));
+        assertTrue(engine.enqueue(1L, 12L));
+        assertFalse(engine.enqueue(1L, 10L));
+
+        assertTrue(engine.leaveWaitlist(1L, 11L));
+        assertFalse(engine.leaveWaitlist(1L, 11L));
+
+        assertTrue(engine.hasWaiting(1L));
+        assertEquals(10L, engine.nextWaiting(1L));
+        assertEquals(12L, engine.nextWaiting(1L));
+        assertNull(engine.nextWaiting(1L));
+        assertFalse(engine.hasWaiting(1L));
+    }
+
+    @Test
+    void forget_shouldDropCounterAndWaitlist() {
+        engine.tryReserve(1L, 1, () -> 0);
+        engine.enqueue(1L, 10L);
+
+        engine.forget(1L);
+
+        assertFalse(engine.hasWaiting(1L));
+        assertNull(engine.nextWaiting(2L));
+        assertTrue(engine.tryReserve(1L, 1, () -> 0));
+    }
+
+    @Test
+    void tryReserve_shouldNeverOverbookUnderContention() throws Exception {
+        int joiners = 1000;
+        int capacity = 50;
+        ExecutorService pool = Executors.newFixedThreadPool(64);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger admitted = new AtomicInteger();
+        AtomicInteger waitlisted = new AtomicInteger();
+
+        for (long user = 0; user < joiners; user++) {
+            long userId = user;
+            pool.execute(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                if (engine.tryReserve(1L, capacity, () -> 0)) {
+                    admitted.incrementAndGet();
+                } else if (engine.enqueue(1L, userId)) {
+                    waitlisted.incrementAndGet();
+                }
+            });
+        }
+        start.countDown();
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(capacity, admitted.get());
+        assertEquals(joiners - capacity, waitlisted.get());
+    }
+}
@@ -0,0 +1,112 @@
+package com.openclassrooms.starterjwt.unit.services;
+
+import com.openclassrooms.starterjwt.dto.SessionDto;
+import com.openclassrooms.starterjwt.repository.TeacherRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.stubbing.OngoingStubbing;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.validation.Validation;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class SessionImportServiceTest {
+    private JdbcTemplate jdbcTemplate;
+    private SessionImportService sessionImportService;
+
+    // size of each batchUpdate call
+    private final List<Integer> batches = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        TeacherRepository teacherRepository = mock(TeacherRepository.class);
+        when(teacherRepository.findAllIds()).thenReturn(List.of(1L, 2L));
+        whenBatchUpdate().thenAnswer(invocation -> {
+            batches.add(((Collection<?>) invocation.getArgument(1)).size());
+            return new int[0][];
+        });
+
+        sessionImportService = new SessionImportService(jdbcTemplate, mock(PlatformTransactionManager.class),
+                teacherRepository, Validation.buildDefaultValidatorFactory().getValidator());
+        ReflectionTestUtils.setField(sessionImportService, "batchSize", 2);
+        ReflectionTestUtils.setField(sessionImportService, "maxErrors", 2);
+    }
+
+    private OngoingStubbing<int[][]> whenBatchUpdate() {
+        return when(jdbcTemplate.batchUpdate(eq(SessionImportService.INSERT),
+                ArgumentMatchers.<Collection<ImportRow<SessionDto>>>any(), anyInt(),
+                ArgumentMatchers.<ParameterizedPreparedStatementSetter<ImportRow<SessionDto>>>any()));
+    }
+
+    private static ImportRow<SessionDto> row(long row, String name, Long teacherId) {
+        return ImportRow.of(row, new SessionDto(null, name, new Date(), teacherId, "desc", null, null, null, null));
+    }
+
+    // ----------------------------------------------------
+    // importSessions()
+    // ----------------------------------------------------
+
+    @Test
+    void importSessions_shouldInsertValidRowsInBatches() {
+        SessionImportReport report = sessionImportService.importSessions(List.of(
+                row(1, "A", 1L), row(2, "B", 2L), row(3, "C", 1L), row(4, "D", 1L), row(5, "E", 2L)).iterator());
+
+        assertEquals(5, report.getImported());
+        assertEquals(0, report.getRejected());
+        assertEquals(List.of(2, 2, 1), batches);
+    }
+
+    @Test
+    void importSessions_shouldReportInvalidRowsAndGoOn() {
+        SessionImportReport report = sessionImportService.importSessions(List.of(
+                row(1, "", 1L),
+                row(2, "Unknown teacher", 9L),
+                ImportRow.<SessionDto>failed(3, "Unexpected end-of-input"),
+                row(4, "Valid", 1L)).iterator());
+
+        assertEquals(1, report.getImported());
+        assertEquals(3, report.getRejected());
+        // at most maxErrors are detailed
+        assertEquals(2, report.getErrors().size());
+        assertEquals(1, report.getErrors().get(0).getRow());
+        assertTrue(report.getErrors().get(0).getMessage().startsWith("name: "));
+        assertEquals("teacher_id: unknown teacher 9", report.getErrors().get(1).getMessage());
+        assertEquals(List.of(1), batches);
+    }
+
+    @Test
+    void importSessions_shouldRetryRowByRowWhenTheBatchFails() {
+        whenBatchUpdate().thenThrow(new DataIntegrityViolationException("batch"));
+        when(jdbcTemplate.update(eq(SessionImportService.INSERT), any(PreparedStatementSetter.class)))
+                .thenReturn(1)
+                .thenThrow(new DataIntegrityViolationException("Value too long for column DESCRIPTION"));
+
+        SessionImportReport report = sessionImportService.importSessions(List.of(row(1, "A", 1L), row(2, "B", 1L)).iterator());
+
+        assertEquals(1, report.getImported());
+        assertEquals(1, report.getRejected());
+        assertEquals(2, report.getErrors().get(0).getRow());
+        assertEquals("Value too long for column DESCRIPTION", report.getErrors().get(0).getMessage());
+    }
+
+    @Test
+    void importSessions_shouldNotInsertAnythingForAnEmptyBody() {
+        SessionImportReport report = sessionImportService.importSessions(List.<ImportRow<SessionDto>>of().iterator());
+
+        assertEquals(0, report.getImported());
+        verifyNoInteractions(jdbcTemplate);
+    }
+}
@@ -3,13 +3,20 @@ package com.openclassrooms.starterjwt.unit.services;
 import com.openclassrooms.starterjwt.exception.BadRequestException;
 import com.openclassrooms.starterjwt.exception.NotFoundException;
 import com.openclassrooms.starterjwt.unit.models.Session;
-import com.openclassrooms.starterjwt.unit.models.User;
+import com.openclassrooms.starterjwt.unit.models.SessionSummary;
 import com.openclassrooms.starterjwt.repository.SessionRepository;
 import com.openclassrooms.starterjwt.repository.UserRepository;
+import com.openclassrooms.starterjwt.unit.payload.request.SessionSearchRequest;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.test.util.ReflectionTestUtils;
 
+import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
 
 import static org.mockito.Mockito.*;
 import static org.junit.jupiter.api.Assertions.*;
@@ -18,13 +25,15 @@ class SessionServiceTest {
 
     private SessionRepository sessionRepository;
     private UserRepository userRepository;
+    private SessionBookingEngine bookingEngine;
     private SessionService sessionService;
 
     @BeforeEach
     void setUp() {
         sessionRepository = mock(SessionRepository.class);
         userRepository = mock(UserRepository.class);
-        sessionService = new SessionService(sessionRepository, userRepository);
+        bookingEngine = new SessionBookingEngine();
+        sessionService = new SessionService(sessionRepository, userRepository, bookingEngine);
     }
 
     @Test
@@ -38,6 +47,13 @@ class SessionServiceTest {
         verify(sessionRepository).save(session);
     }
 
+    private SessionRepository.SessionCapacity capacity(Long id, Integer capacity) {
+        SessionRepository.SessionCapacity projection = mock(SessionRepository.SessionCapacity.class);
+        when(projection.getId()).thenReturn(id);
+        when(projection.getCapacity()).thenReturn(capacity);
+        return projection;
+    }
+
     @Test
     void delete_shouldCallRepositoryDelete() {
         Long id = 1L;
@@ -58,6 +74,118 @@ class SessionServiceTest {
         verify(sessionRepository).findAll();
     }
 
+    // ----------------------------
+    // findPage()
+    // ----------------------------
+
+    @Test
+    void findPage_shouldReturnNoCursorWhenLastPage() {
+        SessionSearchRequest search = new SessionSearchRequest();
+        search.setSize(2);
+        List<SessionSummary> rows = Arrays.asList(sessionAt(1L, 1000L), sessionAt(2L, 2000L));
+
+        when(sessionRepository.findPage(search, null, 3)).thenReturn(rows);
+
+        SessionPage page = sessionService.findPage(search);
+
+        assertEquals(2, page.getSessions().size());
+        assertNull(page.getNextCursor());
+    }
+
+    @Test
+    void findPage_shouldTrimExtraRowAndReturnCursorOfLastSession() {
+        SessionSearchRequest search = new SessionSearchRequest();
+        search.setSize(2);
+        List<SessionSummary> rows = Arrays.asList(sessionAt(1L, 1000L), sessionAt(2L, 2000L), sessionAt(3L, 3000L));
+
+        when(sessionRepository.findPage(search, null, 3)).thenReturn(rows);
+
+        SessionPage page = sessionService.findPage(search);
+
+        assertEquals(2, page.getSessions().size());
+        SessionCursor cursor = SessionCursor.decode(page.getNextCursor());
+        assertEquals(2L, cursor.getId());
+        assertEquals(2000L, cursor.getDate().getTime());
+    }
+
+    @Test
+    void findPage_shouldResumeAfterCursorAndCapPageSize() {
+        SessionSearchRequest search = new SessionSearchRequest();
+        search.setSize(10_000);
+        search.setCursor(new SessionCursor(new Date(5000L), 7L).encode());
+
+        when(sessionRepository.findPage(eq(search), any(SessionCursor.class), eq(101))).thenReturn(Collections.emptyList());
+
+        SessionPage page = sessionService.findPage(search);
+
+        assertTrue(page.getSessions().isEmpty());
+        verify(sessionRepository).findPage(eq(search), argThat(c -> c.getId() == 7L && c.getDate().getTime() == 5000L), eq(101));
+    }
+
+    @Test
+    void findPage_shouldUseDefaultPageSize() {
+        SessionSearchRequest search = new SessionSearchRequest();
+        when(sessionRepository.findPage(search, null, 21)).thenReturn(Collections.emptyList());
+
+        sessionService.findPage(search);
+
+        verify(sessionRepository).findPage(search, null, 21);
+    }
+
+    @Test
+    void findPage_shouldRejectInvalidSizeOrCursor() {
+        SessionSearchRequest badSize = new SessionSearchRequest();
+        badSize.setSize(0);
+        SessionSearchRequest badCursor = new SessionSearchRequest();
+        badCursor.setCursor("not-a-cursor");
+
+        assertThrows(BadRequestException.class, () -> sessionService.findPage(badSize));
+        assertThrows(BadRequestException.class, () -> sessionService.findPage(badCursor));
+    }
+
+    private SessionSummary sessionAt(Long id, long time) {
+        return new SessionSummary(id, "Session " + id, new Date(time), "desc", 1L, null, 0, null, null);
+    }
+
+    // ----------------------------
+    // summaries
+    // ----------------------------
+
+    @Test
+    void findAllSummaries_shouldDelegateToRepository() {
+        List<SessionSummary> summaries = Collections.singletonList(sessionAt(1L, 1000L));
+        when(sessionRepository.findAllSummaries()).thenReturn(summaries);
+
+        assertEquals(summaries, sessionService.findAllSummaries());
+    }
+
+    @Test
+    void getSummaryById_shouldReturnNullWhenNotFound() {
+        when(sessionRepository.findSummaryById(1L)).thenReturn(Optional.empty());
+
+        assertNull(sessionService.getSummaryById(1L));
+    }
+
+    @Test
+    void findParticipantIds_shouldGroupPairsBySession() {
+        List<SessionSummary> summaries = Arrays.asList(sessionAt(1L, 1000L), sessionAt(2L, 2000L));
+        when(sessionRepository.findParticipantPairs(Arrays.asList(1L, 2L))).thenReturn(Arrays.asList(
+                new Object[]{1L, 10L},
+                new Object[]{1, 11},
+                new Object[]{2L, 10L}));
+
+        Map<Long, List<Long>> participants = sessionService.findParticipantIds(summaries);
+
+        assertEquals(Arrays.asList(10L, 11L), participants.get(1L));
+        assertEquals(Collections.singletonList(10L), participants.get(2L));
+    }
+
+    @Test
+    void findParticipantIds_shouldNotQueryForEmptyList() {
+        assertTrue(sessionService.findParticipantIds(Collections.emptyList()).isEmpty());
+        verify(sessionRepository, never()).findParticipantPairs(any());
+    }
+
     @Test
     void getById_shouldReturnSessionWhenFound() {
         Long id = 10L;
@@ -90,72 +218,113 @@ class SessionServiceTest {
         Long id = 5L;
         Session session = new Session();
 
-        when(sessionRepository.save(session)).thenReturn(session);
+        when(sessionRepository.saveAndFlush(session)).thenReturn(session);
 
         Session result = sessionService.update(id, session);
 
         assertEquals(id, session.getId());
         assertEquals(session, result);
-        verify(sessionRepository).save(session);
+        verify(sessionRepository).saveAndFlush(session);
+        verify(sessionRepository).touch(eq(id), any());
     }
 
-    // ----------------------------
-    // participate()
-    // ----------------------------
-
     @Test
-    void participate_shouldAddUserToSession() {
-        Long sessionId = 1L;
-        Long userId = 2L;
-
+    void update_shouldPromoteWaitlistedUsersWhenCapacityGrows() {
+        SessionRepository.SessionCapacity full = capacity(1L, 1);
+        when(sessionRepository.findCapacityById(1L)).thenReturn(Optional.of(full));
+        when(userRepository.existsById(anyLong())).thenReturn(true);
+        when(sessionRepository.countParticipants(1L)).thenReturn(1);
+        when(sessionRepository.addParticipantIfAbsent(eq(1L), anyLong())).thenReturn(1);
+        sessionService.participate(1L, 3L);
+        sessionService.participate(1L, 4L);
+        sessionService.participate(1L, 5L);
         Session session = new Session();
-        session.setId(sessionId);
-        session.setUsers(new ArrayList<>());
+        session.setCapacity(3);
 
-        User user = new User();
-        user.setId(userId);
+        sessionService.update(1L, session);
 
-        when(sessionRepository.findById(sessionId)).thenReturn(Optional.of(session));
-        when(userRepository.findById(userId)).thenReturn(Optional.of(user));
+        verify(sessionRepository).addParticipantIfAbsent(1L, 3L);
+        verify(sessionRepository).addParticipantIfAbsent(1L, 4L);
+        verify(sessionRepository, never()).addParticipantIfAbsent(1L, 5L);
+        assertTrue(bookingEngine.hasWaiting(1L));
+    }
 
-        sessionService.participate(sessionId, userId);
+    // ----------------------------
+    // participate()
+    // ----------------------------
 
-        assertEquals(1, session.getUsers().size());
-        assertEquals(user, session.getUsers().get(0));
-        verify(sessionRepository).save(session);
+    @Test
+    void participate_shouldInsertSingleParticipationRow() {
+        SessionRepository.SessionCapacity unlimited = capacity(1L, null);
+        when(sessionRepository.findCapacityById(1L)).thenReturn(Optional.of(unlimited));
+        when(userRepository.existsById(2L)).thenReturn(true);
+        when(sessionRepository.addParticipant(1L, 2L)).thenReturn(1);
+
+        assertEquals(Participation.BOOKED, sessionService.participate(1L, 2L));
+
+        verify(sessionRepository).addParticipant(1L, 2L);
+        verify(sessionRepository).touch(eq(1L), any());
+        verify(sessionRepository, never()).countParticipants(anyLong());
+        verify(sessionRepository, never()).findById(anyLong());
+        verify(sessionRepository, never()).save(any());
     }
 
     @Test
     void participate_shouldThrowNotFoundIfSessionNotFound() {
-        when(sessionRepository.findById(1L)).thenReturn(Optional.empty());
-        when(userRepository.findById(2L)).thenReturn(Optional.of(new User()));
+        when(sessionRepository.findCapacityById(1L)).thenReturn(Optional.empty());
+        when(userRepository.existsById(2L)).thenReturn(true);
 
         assertThrows(NotFoundException.class, () -> sessionService.participate(1L, 2L));
+        verify(sessionRepository, never()).addParticipant(anyLong(), anyLong());
     }
 
     @Test
     void participate_shouldThrowNotFoundIfUserNotFound() {
-        when(sessionRepository.findById(1L)).thenReturn(Optional.of(new Session()));
-        when(userRepository.findById(2L)).thenReturn(Optional.empty());
+        SessionRepository.SessionCapacity unlimited = capacity(1L, null);
+        when(sessionRepository.findCapacityById(1L)).thenReturn(Optional.of(unlimited));
+        when(userRepository.existsById(2L)).thenReturn(false);
 
         assertThrows(NotFoundException.class, () -> sessionService.participate(1L, 2L));
+        verify(sessionRepository, never()).addParticipant(anyLong(), anyLong());
     }
 
     @Test
-    void participate_shouldThrowBadRequestIfAlreadyParticipating() {
-        Long sessionId = 1L;
-        Long userId = 2L;
+    void participate_shouldThrowBadRequestAndReleaseSeatIfAlreadyParticipating() {
+        SessionRepository.SessionCapacity single = capacity(1L, 1);
+        when(sessionRepository.findCapacityById(1L)).thenReturn(Optional.of(single));
+        when(userRepository.existsById(2L)).thenReturn(true);
+        when(sessionRepository.addParticipant(1L, 2L)).thenThrow(new DataIntegrityViolationException("uk_participate_session_user"));
+
+        assertThrows(BadRequestException.class, () -> sessionService.participate(1L, 2L));
+        assertTrue(bookingEngine.tryReserve(1L, 1, () -> 0));
+    }
+
+    @Test
+    void participate_shouldWaitlistWhenSessionIsFull() {
+        SessionRepository.SessionCapacity full = capacity(1L, 2);
+        when(sessionRepository.findCapacityById(1L)).thenReturn(Optional.of(full));
+        when(userRepository.existsById(3L)).thenReturn(true);
+        when(sessionRepository.countParticipants(1L)).thenReturn(2);
 
-        User user = new User();
-        user.setId(userId);
+        assertEquals(Participation.WAITLISTED, sessionService.participate(1L, 3L));
 
-        Session session = new Session();
-        session.setUsers(new ArrayList<>(Collections.singletonList(user)));
+        verify(sessionRepository, never()).addParticipant(anyLong(), anyLong());
+        verify(sessionRepository, never()).touch(anyLong(), any());
+        assertTrue(bookingEngine.hasWaiting(1L));
+    }
+
+    @Test
+    void participate_shouldThrowBadRequestWhenFullAndAlreadyBookedOrWaiting() {
+        SessionRepository.SessionCapacity full = capacity(1L, 1);
+        when(sessionRepository.findCapacityById(1L)).thenReturn(Optional.of(full));
+        when(userRepository.existsById(anyLong())).thenReturn(true);
+        when(sessionRepository.countParticipants(1L)).thenReturn(1);
+        when(sessionRepository.countParticipation(1L, 2L)).thenReturn(1);
 
-        when(sessionRepository.findById(sessionId)).thenReturn(Optional.of(session));
-        when(userRepository.findById(userId)).thenReturn(Optional.of(user));
+        assertThrows(BadRequestException.class, () -> sessionService.participate(1L, 2L));
 
-        assertThrows(BadRequestException.class, () -> sessionService.participate(sessionId, userId));
+        sessionService.participate(1L, 3L);
+        assertThrows(BadRequestException.class, () -> sessionService.participate(1L, 3L));
     }
 
     // ----------------------------
@@ -163,41 +332,167 @@ class SessionServiceTest {
     // ----------------------------
 
     @Test
-    void noLongerParticipate_shouldRemoveUserFromSession() {
-        Long sessionId = 1L;
-        Long userId = 2L;
+    void noLongerParticipate_shouldDeleteSingleParticipationRow() {
+        SessionRepository.SessionCapacity unlimited = capacity(1L, null);
+        when(sessionRepository.findCapacityById(1L)).thenReturn(Optional.of(unlimited));
+        when(sessionRepository.removeParticipant(1L, 2L)).thenReturn(1);
 
-        User user = new User();
-        user.setId(userId);
+        sessionService.noLongerParticipate(1L, 2L);
 
-        Session session = new Session();
-        session.setUsers(new ArrayList<>(Collections.singletonList(user)));
+        verify(sessionRepository).removeParticipant(1L, 2L);
+        verify(sessionRepository).touch(eq(1L), any());
+        verify(sessionRepository, never()).addParticipant(anyLong(), anyLong());
+        verify(sessionRepository, never()).save(any());
+    }
 
-        when(sessionRepository.findById(sessionId)).thenReturn(Optional.of(session));
+    @Test
+    void noLongerParticipate_shouldPromoteFirstWaitingUser() {
+        SessionRepository.SessionCapacity full = capacity(1L, 1);
+        when(sessionRepository.findCapacityById(1L)).thenReturn(Optional.of(full));
+        when(userRepository.existsById(anyLong())).thenReturn(true);
+        when(sessionRepository.countParticipants(1L)).thenReturn(1);
+        when(sessionRepository.removeParticipant(1L, 2L)).thenReturn(1);
+        when(sessionRepository.addParticipantIfAbsent(1L, 3L)).thenReturn(0);
+        when(sessionRepository.addParticipantIfAbsent(1L, 4L)).thenReturn(1);
+
+        sessionService.participate(1L, 3L);
+        sessionService.participate(1L, 4L);
+        sessionService.noLongerParticipate(1L, 2L);
+
+        verify(sessionRepository).addParticipantIfAbsent(1L, 3L);
+        verify(sessionRepository).addParticipantIfAbsent(1L, 4L);
+        assertFalse(bookingEngine.hasWaiting(1L));
+        assertFalse(bookingEngine.tryReserve(1L, 1, () -> 0));
+    }
 
-        sessionService.noLongerParticipate(sessionId, userId);
+    @Test
+    void noLongerParticipate_shouldRestoreCounterAndRequeueWhenTransactionFails() {
+        SessionRepository.SessionCapacity full = capacity(1L, 1);
+        when(sessionRepository.findCapacityById(1L)).thenReturn(Optional.of(full));
+        when(userRepository.existsById(anyLong())).thenReturn(true);
+        when(sessionRepository.countParticipants(1L)).thenReturn(1);
+        when(sessionRepository.removeParticipant(1L, 2L)).thenReturn(1);
+        when(sessionRepository.addParticipantIfAbsent(1L, 3L)).thenThrow(new QueryTimeoutException("lock wait timeout"));
+        sessionService.participate(1L, 3L);
+
+        assertThrows(QueryTimeoutException.class, () -> sessionService.noLongerParticipate(1L, 2L));
+
+        assertEquals(3L, bookingEngine.nextWaiting(1L));
+        assertFalse(bookingEngine.tryReserve(1L, 1, () -> fail("already seeded")));
+    }
 
-        assertTrue(session.getUsers().isEmpty());
-        verify(sessionRepository).save(session);
+    @Test
+    void noLongerParticipate_shouldLeaveWaitlist() {
+        SessionRepository.SessionCapacity full = capacity(1L, 1);
+        when(sessionRepository.findCapacityById(1L)).thenReturn(Optional.of(full));
+        when(userRepository.existsById(3L)).thenReturn(true);
+        when(sessionRepository.countParticipants(1L)).thenReturn(1);
+        when(sessionRepository.removeParticipant(1L, 3L)).thenReturn(0);
+
+        sessionService.participate(1L, 3L);
+        sessionService.noLongerParticipate(1L, 3L);
+
+        assertFalse(bookingEngine.hasWaiting(1L));
     }
 
     @Test
     void noLongerParticipate_shouldThrowNotFoundIfSessionNotFound() {
-        when(sessionRepository.findById(1L)).thenReturn(Optional.empty());
+        when(sessionRepository.findCapacityById(1L)).thenReturn(Optional.empty());
 
         assertThrows(NotFoundException.class, () -> sessionService.noLongerParticipate(1L, 99L));
     }
 
     @Test
     void noLongerParticipate_shouldThrowBadRequestIfUserNotParticipating() {
-        Long sessionId = 1L;
-        Long userId = 2L;
+        SessionRepository.SessionCapacity unlimited = capacity(1L, null);
+        when(sessionRepository.findCapacityById(1L)).thenReturn(Optional.of(unlimited));
+        when(sessionRepository.removeParticipant(1L, 2L)).thenReturn(0);
 
-        Session session = new Session();
-        session.setUsers(new ArrayList<>()); // empty
+        assertThrows(BadRequestException.class, () -> sessionService.noLongerParticipate(1L, 2L));
+    }
 
-        when(sessionRepository.findById(sessionId)).thenReturn(Optional.of(session));
+    // ----------------------------
+    // getVersion() / getCollectionVersion()
+    // ----------------------------
+
+    @Test
+    void getVersion_shouldDeriveEtagFromRevision() {
+        SessionRepository.SessionVersion version = mock(SessionRepository.SessionVersion.class);
+        LocalDateTime updatedAt = LocalDateTime.of(2025, 1, 1, 10, 0);
+        when(version.getId()).thenReturn(1L);
+        when(version.getRevision()).thenReturn(4L);
+        when(version.getUpdatedAt()).thenReturn(updatedAt);
+        when(sessionRepository.findVersionById(1L)).thenReturn(Optional.of(version));
+
+        ResourceVersion first = sessionService.getVersion(1L);
+        // a second change within the same second: only the revision moves
+        when(version.getRevision()).thenReturn(5L);
+        ResourceVersion second = sessionService.getVersion(1L);
+
+        assertEquals(updatedAt, first.getLastModified());
+        assertNotEquals(first.getEtag(), second.getEtag());
+        verify(sessionRepository, never()).findSummaryById(anyLong());
+    }
+
+    @Test
+    void getVersion_shouldReturnNullWhenSessionMissing() {
+        when(sessionRepository.findVersionById(1L)).thenReturn(Optional.empty());
 
-        assertThrows(BadRequestException.class, () -> sessionService.noLongerParticipate(sessionId, userId));
+        assertNull(sessionService.getVersion(1L));
+    }
+
+    @Test
+    void getCollectionVersion_shouldChangeWhenASessionIsUpdatedWithinTheSameSecond() {
+        LocalDateTime lastModified = LocalDateTime.of(2025, 1, 1, 10, 0);
+        SessionRepository.SessionsVersion before = mock(SessionRepository.SessionsVersion.class);
+        when(before.getCount()).thenReturn(3L);
+        when(before.getMaxId()).thenReturn(3L);
+        when(before.getRevisions()).thenReturn(7L);
+        when(before.getLastModified()).thenReturn(lastModified);
+        SessionRepository.SessionsVersion after = mock(SessionRepository.SessionsVersion.class);
+        when(after.getCount()).thenReturn(3L);
+        when(after.getMaxId()).thenReturn(3L);
+        when(after.getRevisions()).thenReturn(8L);
+        when(after.getLastModified()).thenReturn(lastModified);
+        when(sessionRepository.findCollectionVersion()).thenReturn(before, after);
+
+        assertNotEquals(sessionService.getCollectionVersion().getEtag(), sessionService.getCollectionVersion().getEtag());
+    }
+
+    @Test
+    void getCollectionVersion_shouldChangeWhenASessionIsRemoved() {
+        LocalDateTime lastModified = LocalDateTime.of(2025, 1, 1, 10, 0);
+        SessionRepository.SessionsVersion before = mock(SessionRepository.SessionsVersion.class);
+        when(before.getCount()).thenReturn(3L);
+        when(before.getMaxId()).thenReturn(3L);
+        when(before.getLastModified()).thenReturn(lastModified);
+        SessionRepository.SessionsVersion after = mock(SessionRepository.SessionsVersion.class);
+        when(after.getCount()).thenReturn(2L);
+        when(after.getMaxId()).thenReturn(3L);
+        when(after.getLastModified()).thenReturn(lastModified);
+        when(sessionRepository.findCollectionVersion()).thenReturn(before, after);
+
+        assertNotEquals(sessionService.getCollectionVersion().getEtag(), sessionService.getCollectionVersion().getEtag());
+        verify(sessionRepository, never()).findAllSummaries();
+    }
+
+    // ----------------------------
+    // streamAllSummaries()
+    // ----------------------------
+
+    @Test
+    void streamAllSummaries_shouldHandOverBoundedChunksAndCloseCursor() throws Exception {
+        ReflectionTestUtils.setField(sessionService, "streamChunkSize", 2);
+        AtomicBoolean closed = new AtomicBoolean();
+        Stream<SessionSummary> cursor = Stream.of(1L, 2L, 3L, 4L, 5L)
+                .map(id -> sessionAt(id, id))
+                .onClose(() -> closed.set(true));
+        when(sessionRepository.streamAllSummaries()).thenReturn(cursor);
+
+        List<Integer> chunkSizes = new ArrayList<>();
+        sessionService.streamAllSummaries(chunk -> chunkSizes.add(chunk.size()));
+
+        assertEquals(Arrays.asList(2, 2, 1), chunkSizes);
+        assertTrue(closed.get());
     }
 }
@@ -1,15 +1,22 @@
 package com.openclassrooms.starterjwt.unit.services;
 
+import com.openclassrooms.starterjwt.dto.TeacherDto;
+import com.openclassrooms.starterjwt.unit.mapper.TeacherMapperImpl;
 import com.openclassrooms.starterjwt.unit.models.Teacher;
 import com.openclassrooms.starterjwt.repository.TeacherRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
 
+import javax.persistence.EntityManager;
+
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 import static org.mockito.Mockito.*;
 import static org.junit.jupiter.api.Assertions.*;
@@ -22,7 +29,7 @@ class TeacherServiceTest {
     @BeforeEach
     void setUp() {
         teacherRepository = Mockito.mock(TeacherRepository.class);
-        teacherService = new TeacherService(teacherRepository);
+        teacherService = new TeacherService(teacherRepository, new TeacherMapperImpl());
     }
 
     @Test
@@ -37,7 +44,7 @@ class TeacherServiceTest {
 
         when(teacherRepository.findAll()).thenReturn(mockList);
 
-        List<Teacher> result = teacherService.findAll();
+        List<TeacherDto> result = teacherService.findAll();
 
         assertNotNull(result);
         assertEquals(2, result.size());
@@ -50,7 +57,7 @@ class TeacherServiceTest {
     void findAll_shouldReturnEmptyListWhenNoTeachers() {
         when(teacherRepository.findAll()).thenReturn(Collections.emptyList());
 
-        List<Teacher> result = teacherService.findAll();
+        List<TeacherDto> result = teacherService.findAll();
 
         assertNotNull(result);
         assertTrue(result.isEmpty());
@@ -60,15 +67,16 @@ class TeacherServiceTest {
     @Test
     void findById_shouldReturnTeacherWhenFound() {
         Long id = 10L;
-        Teacher teacher = new Teacher();
-        teacher.setId(id);
+        Teacher teacher = Teacher.builder().id(id).firstName("Ada").lastName("Lovelace").build();
 
         when(teacherRepository.findById(id)).thenReturn(Optional.of(teacher));
 
-        Teacher result = teacherService.findById(id);
+        TeacherDto result = teacherService.findById(id);
 
         assertNotNull(result);
         assertEquals(id, result.getId());
+        assertEquals("Ada", result.getFirstName());
+        assertEquals("Lovelace", result.getLastName());
         verify(teacherRepository, times(1)).findById(id);
     }
 
@@ -78,9 +86,38 @@ class TeacherServiceTest {
 
         when(teacherRepository.findById(id)).thenReturn(Optional.empty());
 
-        Teacher result = teacherService.findById(id);
+        TeacherDto result = teacherService.findById(id);
 
         assertNull(result);
         verify(teacherRepository, times(1)).findById(id);
     }
+
+    @Test
+    void getReference_shouldNotLoadTheTeacher() {
+        Teacher reference = new Teacher();
+        when(teacherRepository.getById(10L)).thenReturn(reference);
+
+        assertSame(reference, teacherService.getReference(10L));
+        verify(teacherRepository, never()).findById(anyLong());
+    }
+
+    @Test
+    void streamAll_shouldDetachEachConsumedChunk() throws Exception {
+        EntityManager entityManager = Mockito.mock(EntityManager.class);
+        ReflectionTestUtils.setField(teacherService, "entityManager", entityManager);
+        ReflectionTestUtils.setField(teacherService, "streamChunkSize", 2);
+
+        Teacher t1 = Teacher.builder().id(1L).build();
+        Teacher t2 = Teacher.builder().id(2L).build();
+        Teacher t3 = Teacher.builder().id(3L).build();
+        when(teacherRepository.streamAll()).thenReturn(Stream.of(t1, t2, t3));
+
+        List<Integer> chunkSizes = new ArrayList<>();
+        teacherService.streamAll(chunk -> chunkSizes.add(chunk.size()));
+
+        assertEquals(Arrays.asList(2, 1), chunkSizes);
+        verify(entityManager).detach(t1);
+        verify(entityManager).detach(t2);
+        verify(entityManager).detach(t3);
+    }
 }
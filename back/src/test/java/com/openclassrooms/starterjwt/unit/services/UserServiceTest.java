@@ -2,10 +2,14 @@ package com.openclassrooms.starterjwt.unit.services;
 
 import com.openclassrooms.starterjwt.unit.models.User;
 import com.openclassrooms.starterjwt.repository.UserRepository;
+import com.openclassrooms.starterjwt.unit.security.services.PrincipalCache;
+import com.openclassrooms.starterjwt.unit.security.services.TokenRevocationService;
+import com.openclassrooms.starterjwt.unit.security.services.TokenVersionRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 
+import java.util.List;
 import java.util.Optional;
 
 import static org.mockito.Mockito.*;
@@ -13,12 +17,18 @@ import static org.junit.jupiter.api.Assertions.*;
 
 class UserServiceTest {
     private UserRepository userRepository;
+    private PrincipalCache principalCache;
+    private TokenVersionRegistry tokenVersions;
+    private TokenRevocationService tokenRevocations;
     private UserService userService;
 
     @BeforeEach
     void setUp() {
         userRepository = Mockito.mock(UserRepository.class);
-        userService = new UserService(userRepository);
+        principalCache = Mockito.mock(PrincipalCache.class);
+        tokenVersions = Mockito.mock(TokenVersionRegistry.class);
+        tokenRevocations = Mockito.mock(TokenRevocationService.class);
+        userService = new UserService(userRepository, principalCache, tokenVersions, tokenRevocations);
     }
 
     @Test
@@ -30,6 +40,27 @@ class UserServiceTest {
         verify(userRepository, times(1)).deleteById(userId);
     }
 
+    @Test
+    void delete_shouldEvictCachedPrincipal() {
+        User user = new User();
+        user.setId(4L);
+        user.setEmail("gone@test.com");
+        when(userRepository.findById(4L)).thenReturn(Optional.of(user));
+
+        userService.delete(4L);
+
+        verify(principalCache).evict("gone@test.com");
+        verify(userRepository).deleteById(4L);
+    }
+
+    @Test
+    void delete_shouldRevokeTokenClaims() {
+        userService.delete(5L);
+
+        verify(tokenVersions).revoke(5L);
+        verify(tokenRevocations).revokeUser(5L);
+    }
+
     @Test
     void findById_shouldReturnUserWhenFound() {
         Long userId = 2L;
@@ -56,4 +87,21 @@ class UserServiceTest {
         assertNull(result);
         verify(userRepository, times(1)).findById(userId);
     }
+
+    @Test
+    void findAllById_shouldLoadAllIdsInOneCall() {
+        User first = new User();
+        first.setId(1L);
+        User second = new User();
+        second.setId(2L);
+        List<Long> ids = List.of(1L, 2L);
+
+        when(userRepository.findAllById(ids)).thenReturn(List.of(first, second));
+
+        List<User> result = userService.findAllById(ids);
+
+        assertEquals(2, result.size());
+        verify(userRepository, times(1)).findAllById(ids);
+        verify(userRepository, never()).findById(any());
+    }
 }
@@ -8,7 +8,7 @@ import { AuthService } from './features/auth/services/auth.service';
 import { SessionService } from './services/session.service';
 
 import { AppComponent } from './app.component';
-import {of} from "rxjs";
+import {of, Subject, throwError} from "rxjs";
 
 
 describe('AppComponent', () => {
@@ -17,10 +17,13 @@ describe('AppComponent', () => {
   let mockRouter: jest.Mocked<Router>;
 
   beforeEach(async () => {
-    mockAuthService = {} as any;
+    mockAuthService = {
+      logout: jest.fn().mockReturnValue(of(undefined))
+    } as any;
 
     mockSessionService = {
       $isLogged: jest.fn().mockReturnValue(of(true)),
+      sessionInformation: { refreshToken: 'refresh' },
       logOut: jest.fn()
     } as any;
 
@@ -68,6 +71,29 @@ describe('AppComponent', () => {
 
     app.logout();
 
+    expect(mockAuthService.logout).toHaveBeenCalledWith('refresh');
+    expect(mockSessionService.logOut).toHaveBeenCalled();
+    expect(mockRouter.navigate).toHaveBeenCalledWith(['']);
+  });
+
+  it('should keep the session until the server has answered the logout call', () => {
+    const response = new Subject<void>();
+    mockAuthService.logout.mockReturnValue(response);
+    const app = TestBed.createComponent(AppComponent).componentInstance;
+
+    app.logout();
+    expect(mockSessionService.logOut).not.toHaveBeenCalled();
+
+    response.complete();
+    expect(mockSessionService.logOut).toHaveBeenCalled();
+  });
+
+  it('should still log out when the logout call fails', () => {
+    mockAuthService.logout.mockReturnValue(throwError(() => new Error('500')));
+    const app = TestBed.createComponent(AppComponent).componentInstance;
+
+    app.logout();
+
     expect(mockSessionService.logOut).toHaveBeenCalled();
     expect(mockRouter.navigate).toHaveBeenCalledWith(['']);
   });
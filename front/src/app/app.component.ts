@@ -1,6 +1,7 @@
 import { Component, OnInit } from '@angular/core';
 import { Router } from '@angular/router';
 import { Observable } from 'rxjs';
+import { finalize } from 'rxjs/operators';
 import { AuthService } from './features/auth/services/auth.service';
 import { SessionInformation } from './interfaces/sessionInformation.interface';
 import { SessionService } from './services/session.service';
@@ -22,7 +23,12 @@ export class AppComponent {
   }
 
   public logout(): void {
-    this.sessionService.logOut();
-    this.router.navigate([''])
+    // The session is cleared once the server has revoked the tokens, or failed to.
+    this.authService.logout(this.sessionService.sessionInformation?.refreshToken)
+      .pipe(finalize(() => {
+        this.sessionService.logOut();
+        this.router.navigate(['']);
+      }))
+      .subscribe({ error: () => {} });
   }
 }
@@ -11,7 +11,8 @@ import { MatIconModule } from '@angular/material/icon';
 
 import {MeComponent} from './me.component';
 import {User} from "../../interfaces/user.interface";
-import {of} from "rxjs";
+import {of, throwError} from "rxjs";
+import {AuthService} from "../../features/auth/services/auth.service";
 
 describe('MeComponent', () => {
   let component: MeComponent;
@@ -21,6 +22,7 @@ describe('MeComponent', () => {
   let mockUserService: jest.Mocked<UserService>;
   let mockSnackBar: jest.Mocked<MatSnackBar>;
   let mockSessionService: any;
+  let mockAuthService: jest.Mocked<AuthService>;
 
   beforeEach(async () => {
     mockRouter = {navigate: jest.fn()} as any;
@@ -32,9 +34,12 @@ describe('MeComponent', () => {
       open: jest.fn()
     } as any;
     mockSessionService = {
-      sessionInformation: {id: 1, admin: true},
+      sessionInformation: {id: 1, admin: true, refreshToken: 'refresh'},
       logOut: jest.fn()
     };
+    mockAuthService = {
+      logout: jest.fn().mockReturnValue(of(undefined))
+    } as any;
 
     await TestBed.configureTestingModule({
       declarations: [MeComponent],
@@ -50,6 +55,7 @@ describe('MeComponent', () => {
         {provide: UserService, useValue: mockUserService},
         {provide: MatSnackBar, useValue: mockSnackBar},
         {provide: Router, useValue: mockRouter},
+        {provide: AuthService, useValue: mockAuthService},
       ]
     }).compileComponents();
 
@@ -87,6 +93,17 @@ describe('MeComponent', () => {
     expect(mockUserService.delete).toHaveBeenCalledWith('1');
     expect(mockSnackBar.open)
       .toHaveBeenCalledWith('Your account has been deleted !', 'Close', { duration: 3000 });
+    expect(mockAuthService.logout).toHaveBeenCalledWith('refresh');
+    expect(mockSessionService.logOut).toHaveBeenCalled();
+    expect(mockRouter.navigate).toHaveBeenCalledWith(['/']);
+  });
+
+  it('should still log out when the logout call fails after deleting the account', () => {
+    mockUserService.delete.mockReturnValue(of({}));
+    mockAuthService.logout.mockReturnValue(throwError(() => new Error('401')));
+
+    component.delete();
+
     expect(mockSessionService.logOut).toHaveBeenCalled();
     expect(mockRouter.navigate).toHaveBeenCalledWith(['/']);
   });
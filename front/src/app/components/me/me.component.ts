@@ -1,6 +1,8 @@
 import { Component, OnInit } from '@angular/core';
 import { MatSnackBar } from '@angular/material/snack-bar';
 import { Router } from '@angular/router';
+import { finalize } from 'rxjs/operators';
+import { AuthService } from '../../features/auth/services/auth.service';
 import { User } from '../../interfaces/user.interface';
 import { SessionService } from '../../services/session.service';
 import { UserService } from '../../services/user.service';
@@ -18,7 +20,8 @@ export class MeComponent implements OnInit {
   constructor(private router: Router,
               private sessionService: SessionService,
               private matSnackBar: MatSnackBar,
-              private userService: UserService) {
+              private userService: UserService,
+              private authService: AuthService) {
   }
 
   public ngOnInit(): void {
@@ -36,8 +39,12 @@ export class MeComponent implements OnInit {
       .delete(this.sessionService.sessionInformation!.id.toString())
       .subscribe((_) => {
         this.matSnackBar.open("Your account has been deleted !", 'Close', { duration: 3000 });
-        this.sessionService.logOut();
-        this.router.navigate(['/']);
+        this.authService.logout(this.sessionService.sessionInformation?.refreshToken)
+          .pipe(finalize(() => {
+            this.sessionService.logOut();
+            this.router.navigate(['/']);
+          }))
+          .subscribe({ error: () => {} });
       })
   }
 
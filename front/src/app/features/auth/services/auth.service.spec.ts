@@ -67,4 +67,13 @@ describe('AuthService (with Jest)', () => {
     // Simule la réponse du backend
     req.flush(mockResponse);
   });
+
+  it('should call POST /api/auth/logout with the refresh token', () => {
+    service.logout('refresh').subscribe();
+
+    const req = httpMock.expectOne('http://localhost:8080/api/auth/logout');
+    expect(req.request.method).toBe('POST');
+    expect(req.request.body).toEqual({ refreshToken: 'refresh' });
+    req.flush({});
+  });
 });
@@ -21,4 +21,9 @@ export class AuthService {
   public login(loginRequest: LoginRequest): Observable<SessionInformation> {
     return this.httpClient.post<SessionInformation>(`${this.pathService}/login`, loginRequest);
   }
+
+  // Revokes the access token the interceptor sends along and the refresh token family.
+  public logout(refreshToken: string | undefined): Observable<void> {
+    return this.httpClient.post<void>(`${this.pathService}/logout`, { refreshToken });
+  }
 }
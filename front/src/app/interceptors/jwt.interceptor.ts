@@ -1,19 +1,63 @@
-import { HttpHandler, HttpInterceptor, HttpRequest } from "@angular/common/http";
+import { HttpErrorResponse, HttpEvent, HttpHandler, HttpInterceptor, HttpRequest, HttpResponse } from "@angular/common/http";
 import { Injectable } from "@angular/core";
+import { Observable, throwError } from 'rxjs';
+import { catchError, filter, finalize, map, share, switchMap } from 'rxjs/operators';
+import { SessionInformation } from '../interfaces/sessionInformation.interface';
 import { SessionService } from '../services/session.service';
 
 @Injectable({ providedIn: 'root' })
 export class JwtInterceptor implements HttpInterceptor {
+  private refreshUrl = 'http://localhost:8080/api/auth/refresh';
+
+  // Shared by the requests failing while a refresh is in flight: a refresh token can only be used once.
+  private refreshing: Observable<SessionInformation> | null = null;
+
   constructor(private sessionService: SessionService) {}
 
-  public intercept(request: HttpRequest<any>, next: HttpHandler) {
-    if (this.sessionService.isLogged) {
-      request = request.clone({
-        setHeaders: {
-          Authorization: `Bearer ${this.sessionService.sessionInformation!.token}`,
-        },
-      });
+  public intercept(request: HttpRequest<any>, next: HttpHandler): Observable<HttpEvent<any>> {
+    return next.handle(this.authorize(request)).pipe(
+      catchError((error) => {
+        // Login, refresh and logout failures are final: refreshing would only loop or resurrect the session.
+        if (!(error instanceof HttpErrorResponse) || error.status !== 401
+          || request.url.includes('/api/auth/') || !this.sessionService.isLogged) {
+          return throwError(() => error);
+        }
+        return this.refresh(next).pipe(
+          switchMap(() => next.handle(this.authorize(request)))
+        );
+      })
+    );
+  }
+
+  private authorize(request: HttpRequest<any>): HttpRequest<any> {
+    if (!this.sessionService.isLogged) {
+      return request;
+    }
+    return request.clone({
+      setHeaders: {
+        Authorization: `Bearer ${this.sessionService.sessionInformation!.token}`,
+      },
+    });
+  }
+
+  private refresh(next: HttpHandler): Observable<SessionInformation> {
+    if (!this.refreshing) {
+      const refreshToken = this.sessionService.sessionInformation!.refreshToken;
+      this.refreshing = next.handle(new HttpRequest<any>('POST', this.refreshUrl, { refreshToken })).pipe(
+        filter((event): event is HttpResponse<SessionInformation> => event instanceof HttpResponse),
+        map((response) => response.body!),
+        map((sessionInformation) => {
+          this.sessionService.logIn(sessionInformation);
+          return sessionInformation;
+        }),
+        catchError((error) => {
+          this.sessionService.logOut();
+          return throwError(() => error);
+        }),
+        finalize(() => this.refreshing = null),
+        share()
+      );
     }
-    return next.handle(request);
+    return this.refreshing;
   }
 }